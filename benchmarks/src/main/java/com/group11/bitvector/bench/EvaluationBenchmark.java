@@ -0,0 +1,99 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector.bench;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import techniques.PL.CNF;
+import techniques.PL.Conjunction;
+import techniques.PL.DenseInterpretation;
+import techniques.PL.Interpretation;
+import techniques.PL.PackedConjunction;
+import techniques.PL.Variable;
+
+/**
+ * {@code isSatisfied}, {@code getVariables} and {@code clone} on random
+ * 3-SAT instances around the phase transition, for both the object tree
+ * and the packed representation. The instances have a planted solution
+ * and are evaluated under it, so every clause gets looked at.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluationBenchmark {
+
+    @Param({"100", "1000"})
+    public int variables;
+
+    @Param({"3.5", "4.0", "4.26", "4.5", "5.0"})
+    public double ratio;
+
+    private Conjunction conjunction;
+    private PackedConjunction packed;
+    private Interpretation hashed;
+    private DenseInterpretation dense;
+
+    @Setup
+    public void setup() {
+        int clauses = (int) Math.round(ratio * variables);
+        String text = Instances.random3Sat(Instances.SEED, variables, clauses, true);
+        packed = CNF.parsePacked(text);
+        conjunction = packed.unpack();
+
+        hashed = new Interpretation();
+        dense = new DenseInterpretation();
+        Set vars = conjunction.getVariables();
+        for (Iterator i = vars.iterator(); i.hasNext();) {
+            Variable v = (Variable) i.next();
+            Boolean value = Instances.plantedValue(Integer.parseInt(v.toString().substring(1)));
+            hashed.put(v, value);
+            dense.put(v, value);
+        }
+        if (conjunction.isSatisfied(hashed) != Boolean.TRUE) {
+            throw new IllegalStateException("planted assignment does not satisfy the instance");
+        }
+    }
+
+    @Benchmark
+    public Boolean isSatisfied() {
+        return conjunction.isSatisfied(hashed);
+    }
+
+    @Benchmark
+    public Boolean isSatisfiedPacked() {
+        return packed.isSatisfied(hashed);
+    }
+
+    @Benchmark
+    public Boolean isSatisfiedPackedDense() {
+        return packed.isSatisfied(dense);
+    }
+
+    @Benchmark
+    public Set getVariables() {
+        return conjunction.getVariables();
+    }
+
+    @Benchmark
+    public Set getVariablesPacked() {
+        return packed.getVariables();
+    }
+
+    @Benchmark
+    public Object cloneConjunction() {
+        return conjunction.clone();
+    }
+
+    @Benchmark
+    public Object clonePacked() {
+        return packed.clone();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector.bench;
+
+import java.util.Random;
+
+/**
+ * Reproducible inputs for the benchmarks. Every instance is derived from
+ * a fixed seed, so two runs (or two commits) measure the same work.
+ */
+final class Instances {
+
+    static final long SEED = 20240611L;
+
+    private Instances() {
+    }
+
+    /**
+     * Returns a random 3-SAT instance in the syntax of {@code CNF.parse},
+     * over the variables {@code x0 .. x(vars-1)}. If {@code planted} is
+     * true, every clause is satisfied by the assignment
+     * {@link #plantedValue}, so evaluating it has to look at every clause.
+     */
+    static String random3Sat(long seed, int vars, int clauses, boolean planted) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(clauses * 20);
+        int[] var = new int[3];
+        boolean[] negated = new boolean[3];
+        for (int c = 0; c < clauses; c++) {
+            boolean satisfied;
+            do {
+                satisfied = false;
+                for (int i = 0; i < 3; i++) {
+                    var[i] = random.nextInt(vars);
+                    negated[i] = random.nextBoolean();
+                    satisfied |= plantedValue(var[i]) != negated[i];
+                }
+            } while (planted && !satisfied);
+
+            if (c > 0) {
+                sb.append(" ^\n");
+            }
+            sb.append('(');
+            for (int i = 0; i < 3; i++) {
+                if (i > 0) {
+                    sb.append(" v ");
+                }
+                if (negated[i]) {
+                    sb.append('~');
+                }
+                sb.append('x').append(var[i]);
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The planted assignment of {@link #random3Sat}: variable i is true
+     * when i is odd.
+     */
+    static boolean plantedValue(int var) {
+        return (var & 1) == 1;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import techniques.PL.CNF;
+import techniques.PL.ClauseArena;
+import techniques.PL.Conjunction;
+import techniques.PL.InstanceGenerator;
+import techniques.PL.PackedConjunction;
+
+/**
+ * Parsing CNF text, into {@code Disjunction} objects and into a packed
+ * clause arena, and generating random instances as text with
+ * {@code CNF.randInstance} and packed with {@code InstanceGenerator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int clauses;
+
+    private String text;
+
+    @Setup
+    public void setup() {
+        text = Instances.random3Sat(Instances.SEED, Math.max(26, clauses / 4), clauses, false);
+    }
+
+    @Benchmark
+    public Conjunction parse() {
+        return CNF.parse(text);
+    }
+
+    @Benchmark
+    public PackedConjunction parsePacked() {
+        return CNF.parsePacked(text);
+    }
+
+    @Benchmark
+    public String randInstance() {
+        return CNF.randInstance(clauses, Instances.SEED);
+    }
+
+    @Benchmark
+    public ClauseArena generate() {
+        return new InstanceGenerator(Math.max(26, clauses / 4), clauses, 3, Instances.SEED).generate();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import techniques.PL.CNF;
+import techniques.PL.ClauseArena;
+import techniques.PL.Solver;
+
+/**
+ * Solving random 3-SAT around the phase transition at a clause/variable
+ * ratio of about 4.26, where the hard instances are.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class Random3SatBenchmark {
+
+    @Param({"100", "150"})
+    public int variables;
+
+    @Param({"3.5", "4.0", "4.26", "4.5", "5.0"})
+    public double ratio;
+
+    private ClauseArena arena;
+
+    @Setup
+    public void setup() {
+        int clauses = (int) Math.round(ratio * variables);
+        arena = CNF.parsePacked(Instances.random3Sat(Instances.SEED, variables, clauses, false)).getArena();
+    }
+
+    @Benchmark
+    public Boolean solve() {
+        return new Solver(arena).solve();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector.bench;
+
+import com.group11.bitvector.BitBlaster;
+import com.group11.bitvector.Query;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import techniques.PL.ClauseArena;
+import techniques.PL.Solver;
+
+/**
+ * End to end: bit-blasting an equation of each formula and width and
+ * solving the clauses, as the GUI does for "CNF" then "Minisat". The
+ * operands come from a fixed seed and always admit a solution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SolveBenchmark {
+
+    @Param({"1", "2", "3"})
+    public int formula;
+
+    @Param({"4", "8", "12", "16", "24", "32"})
+    public int width;
+
+    private Query query;
+    private ClauseArena arena;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(Instances.SEED + 31 * formula + width);
+        long mask = Query.mask(width);
+        long a = random.nextLong() & mask;
+        long b = random.nextLong() & mask;
+        long x = random.nextLong() & mask;
+        long y = random.nextLong() & mask;
+        long c;
+        if (formula == 1) {
+            c = 0;
+            b = (x + a) & mask;
+        } else if (formula == 2) {
+            c = (a * x + b) & mask;
+        } else {
+            c = (a * x + b * y) & mask;
+        }
+        query = new Query(formula, width, a, b, c);
+        arena = BitBlaster.encode(query).getArena();
+    }
+
+    @Benchmark
+    public ClauseArena encode() {
+        return BitBlaster.encode(query).getArena();
+    }
+
+    @Benchmark
+    public Boolean solve() {
+        return new Solver(arena).solve();
+    }
+
+    @Benchmark
+    public Boolean encodeAndSolve() {
+        return new Solver(BitBlaster.encode(query).getArena()).solve();
+    }
+}
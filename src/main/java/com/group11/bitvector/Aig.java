@@ -0,0 +1,241 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.Arrays;
+
+/**
+ * An and-inverter graph: a circuit of two-input AND gates whose edges may
+ * be inverted. A literal is {@code 2 * node}, plus one if inverted; node 0
+ * is the constant, so {@link #FALSE} is 0 and {@link #TRUE} is 1.
+ *
+ * <p>
+ * Besides AND, the graph keeps XOR and three-input majority nodes, the
+ * two halves of a full adder: written as ANDs they would take 3 and 4
+ * gates, and their own CNF is smaller than that of those gates.
+ *
+ * <p>
+ * Gates are simplified as they are built. A gate with a constant input,
+ * repeated inputs or complementary inputs folds to a constant or to one
+ * of its inputs, and a gate that already exists with the same inputs is
+ * returned instead of a new one (structural hashing). Inverters cost
+ * nothing, so {@code xor(~a, b)} is the same node as {@code xor(a, b)}.
+ */
+public class Aig {
+
+    public static final int FALSE = 0;
+    public static final int TRUE = 1;
+
+    /**
+     * Node kinds.
+     */
+    public static final int CONSTANT = 0;
+    public static final int INPUT = 1;
+    public static final int AND = 2;
+    public static final int XOR = 3;
+    public static final int MAJORITY = 4;
+
+    private byte[] kinds = new byte[256];
+    private int[] fanins = new int[3 * 256];
+    private int size = 1;
+
+    // hash table of gate nodes, open addressing, 0 = empty
+    private int[] table = new int[1024];
+    private int gates = 0;
+
+    public Aig() {
+        kinds[0] = CONSTANT;
+    }
+
+    public static int not(int a) {
+        return a ^ 1;
+    }
+
+    public static int node(int literal) {
+        return literal >>> 1;
+    }
+
+    public static boolean isInverted(int literal) {
+        return (literal & 1) != 0;
+    }
+
+    public static boolean isConstant(int literal) {
+        return literal <= TRUE;
+    }
+
+    /**
+     * Adds an input and returns its positive literal.
+     */
+    public int input() {
+        return 2 * newNode(INPUT, 0, 0, 0);
+    }
+
+    public int and(int a, int b) {
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (a == FALSE || a == not(b)) {
+            return FALSE;
+        }
+        if (a == TRUE || a == b) {
+            return b;
+        }
+        return 2 * gate(AND, a, b, 0);
+    }
+
+    public int or(int a, int b) {
+        return not(and(not(a), not(b)));
+    }
+
+    public int xor(int a, int b) {
+        int inverted = (a ^ b) & 1;
+        a &= ~1;
+        b &= ~1;
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (a == b) {
+            return FALSE ^ inverted;
+        }
+        if (a == FALSE) {
+            return b ^ inverted;
+        }
+        return (2 * gate(XOR, a, b, 0)) ^ inverted;
+    }
+
+    /**
+     * Returns a literal equal to {@code a xor b xor c}.
+     */
+    public int xor3(int a, int b, int c) {
+        return xor(xor(a, b), c);
+    }
+
+    /**
+     * Returns a literal equal to the majority of a, b and c.
+     */
+    public int majority(int a, int b, int c) {
+        // sort, so that equal and complementary inputs are neighbours
+        if (node(a) > node(b)) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (node(b) > node(c)) {
+            int t = b;
+            b = c;
+            c = t;
+        }
+        if (node(a) > node(b)) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (a == b || b == c) {
+            return b;
+        }
+        if (a == not(b)) {
+            return c;
+        }
+        if (b == not(c)) {
+            return a;
+        }
+        if (a == FALSE) {
+            return and(b, c);
+        }
+        if (a == TRUE) {
+            return or(b, c);
+        }
+        // majority is self-dual: keep at most one input inverted
+        int inverted = 0;
+        if (((a & 1) + (b & 1) + (c & 1)) >= 2) {
+            a = not(a);
+            b = not(b);
+            c = not(c);
+            inverted = 1;
+        }
+        return (2 * gate(MAJORITY, a, b, c)) ^ inverted;
+    }
+
+    /**
+     * Returns the number of nodes, including the constant and the inputs.
+     */
+    public int numNodes() {
+        return size;
+    }
+
+    /**
+     * Returns the number of AND, XOR and majority nodes.
+     */
+    public int numGates() {
+        return gates;
+    }
+
+    public int kind(int node) {
+        return kinds[node];
+    }
+
+    /**
+     * Returns input {@code i} (0, 1 or 2) of gate {@code node}.
+     */
+    public int fanin(int node, int i) {
+        return fanins[3 * node + i];
+    }
+
+    private int gate(int kind, int a, int b, int c) {
+        int mask = table.length - 1;
+        int h = hash(kind, a, b, c) & mask;
+        for (int n = table[h]; n != 0; n = table[h = (h + 1) & mask]) {
+            if (kinds[n] == kind && fanins[3 * n] == a && fanins[3 * n + 1] == b
+                    && fanins[3 * n + 2] == c) {
+                return n;
+            }
+        }
+        int n = newNode(kind, a, b, c);
+        table[h] = n;
+        if (++gates * 2 > table.length) {
+            rehash();
+        }
+        return n;
+    }
+
+    private int newNode(int kind, int a, int b, int c) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, 2 * size);
+            fanins = Arrays.copyOf(fanins, 6 * size);
+        }
+        kinds[size] = (byte) kind;
+        fanins[3 * size] = a;
+        fanins[3 * size + 1] = b;
+        fanins[3 * size + 2] = c;
+        return size++;
+    }
+
+    private void rehash() {
+        table = new int[2 * table.length];
+        int mask = table.length - 1;
+        for (int n = 1; n < size; n++) {
+            if (kinds[n] >= AND) {
+                int h = hash(kinds[n], fanins[3 * n], fanins[3 * n + 1], fanins[3 * n + 2]) & mask;
+                while (table[h] != 0) {
+                    h = (h + 1) & mask;
+                }
+                table[h] = n;
+            }
+        }
+    }
+
+    private static int hash(int kind, int a, int b, int c) {
+        int h = kind;
+        h = h * 0x9E3779B1 + a;
+        h = h * 0x9E3779B1 + b;
+        h = h * 0x9E3779B1 + c;
+        return h ^ (h >>> 15);
+    }
+}
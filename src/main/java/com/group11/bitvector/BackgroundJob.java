@@ -0,0 +1,148 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+
+/**
+ * A piece of work run off the event dispatch thread, e.g. encoding or
+ * solving a query, that reports into a text area.
+ *
+ * <p>
+ * {@link #doInBackground()} runs on a {@link JobExecutor} thread and
+ * reports progress with {@link #log(String)}. The lines are appended to the
+ * text area on the event dispatch thread, in batches: all the lines logged
+ * since the last update go in with a single {@code append}. The outcome is
+ * handed to {@link #succeeded(Object)}, {@link #failed(Throwable)} or
+ * {@link #cancelled(boolean)}, also on the event dispatch thread.
+ *
+ * <p>
+ * A job is stopped by {@link #stop()} or by its timeout. That does not
+ * cancel the {@code SwingWorker}: the job is only over once
+ * {@link #doInBackground()} has returned, so nothing else touches its
+ * solver meanwhile. Solvers do not look at thread interrupts, so a job
+ * that runs one should override {@link #interruptWork()} to interrupt it,
+ * and long loops should check {@link #isStopped()}.
+ *
+ * @param <T> the result type
+ */
+public abstract class BackgroundJob<T> extends SwingWorker<T, String> {
+
+    private final JTextArea output;
+    private volatile boolean stopped = false;
+    private volatile boolean timedOut = false;
+    private volatile Future<?> timeout;
+
+    protected BackgroundJob(JTextArea output) {
+        this.output = output;
+    }
+
+    /**
+     * Queues a line for the text area. May be called from any thread.
+     */
+    protected void log(String line) {
+        publish(line);
+    }
+
+    @Override
+    protected void process(List<String> lines) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append('\n');
+        }
+        output.append(sb.toString());
+    }
+
+    /**
+     * Stops the job as soon as it can. May be called from any thread.
+     */
+    public void stop() {
+        stopped = true;
+        interruptWork();
+    }
+
+    /**
+     * Returns true once the job has been stopped or has timed out.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Sets the timer task that times the job out, to be cancelled when the
+     * job is done.
+     */
+    void setTimeout(Future<?> timeout) {
+        this.timeout = timeout;
+        if (isDone()) {
+            // xong truoc khi co hen gio
+            timeout.cancel(false);
+        }
+    }
+
+    void timeOut() {
+        if (!isDone()) {
+            timedOut = true;
+            stop();
+        }
+    }
+
+    /**
+     * Makes the work in {@link #doInBackground()} give up, e.g. by
+     * interrupting its solver. Called from any thread; does nothing by
+     * default.
+     */
+    protected void interruptWork() {
+    }
+
+    @Override
+    protected final void done() {
+        Future<?> t = timeout;
+        if (t != null) {
+            t.cancel(false);
+        }
+        try {
+            if (stopped || isCancelled()) {
+                cancelled(timedOut);
+            } else {
+                succeeded(get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException ex) {
+            cancelled(timedOut);
+        } catch (ExecutionException ex) {
+            failed(ex.getCause());
+        }
+    }
+
+    /**
+     * Called on the event dispatch thread with the result of
+     * {@link #doInBackground()}.
+     */
+    protected abstract void succeeded(T result);
+
+    /**
+     * Called on the event dispatch thread if {@link #doInBackground()}
+     * threw. Appends the error by default.
+     */
+    protected void failed(Throwable error) {
+        output.append("Lỗi: " + error + "\n");
+    }
+
+    /**
+     * Called on the event dispatch thread, instead of the other two, if the
+     * job was stopped or timed out.
+     */
+    protected void cancelled(boolean timedOut) {
+        output.append(timedOut ? "Hết thời gian\n" : "Đã hủy\n");
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import techniques.PL.Metrics;
+
+/**
+ * Solves bit-vector queries in batch, without any GUI: the entry point for
+ * servers and pipelines. Nothing here loads AWT or Swing.
+ *
+ * <p>
+ * Each input line is one query, {@code formula width a b [c]}, separated by
+ * blanks or commas; empty lines and lines starting with {@code #} are
+ * skipped. The queries are solved concurrently, each worker thread keeping
+ * one {@link QuerySolver} per formula and width, and repeated queries are
+ * answered from a shared {@link ResultCache}. Queries that the
+ * {@link WordSolver} settles never reach the CNF solvers; {@code -cnf} turns
+ * it off. One JSON object is written per query, in input order, as soon as
+ * it and the queries before it are done:
+ *
+ * <pre>
+ * {"line":3,"query":"5 * x + 2 = 7","formula":2,"width":8,"status":"SAT","x":1,"ms":0.4}
+ * </pre>
+ *
+ * Status is SAT (with x, and y for formula 3), UNSAT, UNKNOWN (when the
+ * conflict budget ran out) or ERROR (with a message). Operands and
+ * solutions are unsigned decimal numbers. With {@code -certify}, every
+ * UNSAT answer is also proved with a DRAT proof that is checked on the spot
+ * (see {@link QuerySolver#certify(Query, File)}), adding
+ * {@code "certified":true} or {@code "certified":false}.
+ *
+ * <p>
+ * Usage: {@code java com.group11.bitvector.BatchSolver [-threads n]
+ * [-budget conflicts] [-certify] [-cnf] [-metrics] [file]}, reading standard
+ * input without a file or with {@code -}. The solver {@link Metrics} are
+ * registered with JMX while the batch runs, and {@code -metrics} prints them,
+ * with the cache statistics, to standard error at the end.
+ */
+public class BatchSolver {
+
+    private final int threads;
+    private long conflictBudget = -1;
+    private boolean certify = false;
+    private boolean wordLevel = true;
+    private final ResultCache<Query, QueryResult> cache = new ResultCache<Query, QueryResult>(100000);
+
+    // bo giai cua tung luong, theo formula va width
+    private final ThreadLocal<Map<Integer, QuerySolver>> solvers = new ThreadLocal<Map<Integer, QuerySolver>>() {
+        @Override
+        protected Map<Integer, QuerySolver> initialValue() {
+            return new HashMap<Integer, QuerySolver>();
+        }
+    };
+
+    public BatchSolver(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of conflicts after which a query is given up as
+     * UNKNOWN; negative means no limit.
+     */
+    public void setConflictBudget(long conflicts) {
+        conflictBudget = conflicts;
+    }
+
+    /**
+     * Sets whether UNSAT answers are certified by a checked DRAT proof.
+     * Certifying solves every UNSAT query again from scratch, and
+     * answers from the cache are not certified.
+     */
+    public void setCertify(boolean certify) {
+        this.certify = certify;
+    }
+
+    /**
+     * Sets whether queries are first tried with {@link WordSolver}, which
+     * settles them without clauses; when not, every query is bit-blasted.
+     * Answers of the word level are not cached, as they cost less than a
+     * cache lookup.
+     */
+    public void setWordLevel(boolean wordLevel) {
+        this.wordLevel = wordLevel;
+    }
+
+    public ResultCache<Query, QueryResult> getCache() {
+        return cache;
+    }
+
+    /**
+     * Solves every query of {@code in} and writes the results to
+     * {@code out}. Returns the number of queries. Neither stream is closed.
+     */
+    public int run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "batch-solver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // ket qua dang cho, theo thu tu dong vao; gioi han de khong doc het dau vao
+        ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+        int window = 64 * threads;
+        int count = 0;
+        try {
+            String text;
+            int lineNumber = 0;
+            while ((text = in.readLine()) != null) {
+                lineNumber++;
+                final String line = text.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                final int number = lineNumber;
+                pending.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return solve(number, line);
+                    }
+                }));
+                count++;
+                if (pending.size() >= window) {
+                    write(pending.poll(), out);
+                }
+                if (!in.ready()) {
+                    // dau vao chua co them: tra het ket qua truoc khi doi
+                    while (!pending.isEmpty()) {
+                        write(pending.poll(), out);
+                    }
+                    out.flush();
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out);
+            }
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+        return count;
+    }
+
+    private static void write(Future<String> result, Writer out) throws IOException {
+        try {
+            out.write(result.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Solves the query on one input line and returns its JSON line.
+     */
+    String solve(int number, String line) {
+        StringBuilder json = new StringBuilder(160);
+        json.append("{\"line\":").append(number);
+        long start = System.nanoTime();
+        Query query;
+        try {
+            query = parse(line);
+        } catch (IllegalArgumentException ex) {
+            json.append(",\"status\":\"ERROR\",\"message\":");
+            quote(json, ex.getMessage());
+            return json.append('}').toString();
+        }
+        json.append(",\"query\":");
+        quote(json, query.equation());
+        json.append(",\"formula\":").append(query.getFormula());
+        json.append(",\"width\":").append(query.getWidth());
+
+        // muc tu nhanh hon ca bo nho dem, nen khong luu ket qua cua no
+        QueryResult result = wordLevel ? WordSolver.solve(query) : null;
+        boolean cached = false;
+        Boolean certified = null;
+        if (result != null) {
+            if (certify && !result.isSatisfiable()) {
+                certified = certify(solver(query), query);
+            }
+        } else {
+            result = cache.get(query);
+            cached = (result != null);
+        }
+        if (result == null) {
+            QuerySolver solver = solver(query);
+            Boolean status = solver.solve(query);
+            if (status == Boolean.TRUE) {
+                result = QueryResult.sat(query, solver.getX(), solver.getY());
+            } else if (status == Boolean.FALSE) {
+                result = QueryResult.unsat(query);
+                if (certify) {
+                    certified = certify(solver, query);
+                }
+            }
+            if (result != null) {
+                cache.put(query, result);
+            }
+        }
+
+        if (result == null) {
+            json.append(",\"status\":\"UNKNOWN\"");
+        } else if (result.isSatisfiable()) {
+            json.append(",\"status\":\"SAT\",\"x\":").append(Query.unsigned(result.getX()));
+            if (query.hasY()) {
+                json.append(",\"y\":").append(Query.unsigned(result.getY()));
+            }
+        } else {
+            json.append(",\"status\":\"UNSAT\"");
+        }
+        if (certified != null) {
+            json.append(",\"certified\":").append(certified);
+        }
+        if (cached) {
+            json.append(",\"cached\":true");
+        }
+        json.append(",\"ms\":").append(Math.round((System.nanoTime() - start) / 1e4) / 100.0);
+        return json.append('}').toString();
+    }
+
+    // bo giai CNF cua luong nay cho formula va width cua query
+    private QuerySolver solver(Query query) {
+        Map<Integer, QuerySolver> own = solvers.get();
+        Integer key = query.getFormula() * 100 + query.getWidth();
+        QuerySolver solver = own.get(key);
+        if (solver == null) {
+            solver = new QuerySolver(query.getFormula(), query.getWidth());
+            own.put(key, solver);
+        }
+        solver.getSolver().setConflictBudget(conflictBudget);
+        return solver;
+    }
+
+    // chung minh UNSAT bang DRAT, bang chung ghi vao file tam
+    private static boolean certify(QuerySolver solver, Query query) {
+        File proof = null;
+        try {
+            proof = File.createTempFile("bitvector", ".drat");
+            return solver.certify(query, proof);
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (proof != null) {
+                proof.delete();
+            }
+        }
+    }
+
+    /**
+     * Parses {@code formula width a b [c]}.
+     *
+     * @throws IllegalArgumentException if the line is not such a query
+     */
+    static Query parse(String line) {
+        String[] fields = line.split("[\\s,]+");
+        if (fields.length < 4 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected: formula width a b [c], got \"" + line + "\"");
+        }
+        int formula = Integer.parseInt(fields[0]);
+        int width = Integer.parseInt(fields[1]);
+        if (width < 1 || width > Query.MAX_WIDTH) {
+            throw new IllegalArgumentException("Width must be 1.." + Query.MAX_WIDTH + ": " + width);
+        }
+        if (formula != 1 && fields.length != 5) {
+            throw new IllegalArgumentException("Formula " + formula + " needs a, b and c");
+        }
+        long a = Query.parseOperand(fields[2], width);
+        long b = Query.parseOperand(fields[3], width);
+        long c = (fields.length == 5) ? Query.parseOperand(fields[4], width) : 0;
+        return new Query(formula, width, a, b, c);
+    }
+
+    private static void quote(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                json.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                json.append(String.format("\\u%04x", (int) ch));
+            } else {
+                json.append(ch);
+            }
+        }
+        json.append('"');
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        long budget = -1;
+        String file = "-";
+        boolean dumpMetrics = false;
+        boolean certify = false;
+        boolean wordLevel = true;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-budget") && i + 1 < args.length) {
+                    budget = Long.parseLong(args[++i]);
+                } else if (args[i].equals("-certify")) {
+                    certify = true;
+                } else if (args[i].equals("-cnf")) {
+                    wordLevel = false;
+                } else if (args[i].equals("-metrics")) {
+                    dumpMetrics = true;
+                } else if (args[i].startsWith("-") && !args[i].equals("-")) {
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+                } else {
+                    file = args[i];
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("usage: java com.group11.bitvector.BatchSolver [-threads n] [-budget conflicts] [-certify] [-cnf] [-metrics] [file]");
+            System.exit(2);
+        }
+
+        InputStream input = file.equals("-") ? System.in : new FileInputStream(file);
+        BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        Metrics.global().registerMBean("batch");
+        BatchSolver solver = new BatchSolver(threads);
+        solver.setConflictBudget(budget);
+        solver.setCertify(certify);
+        solver.setWordLevel(wordLevel);
+        try {
+            solver.run(in, out);
+        } finally {
+            in.close();
+        }
+        if (dumpMetrics) {
+            System.err.println("cache: " + solver.getCache());
+            System.err.print(Metrics.global().dump());
+        }
+    }
+}
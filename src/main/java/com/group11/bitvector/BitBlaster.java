@@ -0,0 +1,441 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import techniques.PL.ClauseArena;
+import techniques.PL.Metrics;
+import techniques.PL.PackedConjunction;
+import techniques.PL.Variable;
+
+/**
+ * Translates bit-vector circuits into CNF. The circuit is first built as
+ * an {@link Aig}, which folds constants and shares repeated gates; only
+ * the gates that an assertion depends on are then given a variable and
+ * Tseitin clauses, written straight into a {@link ClauseArena}. Gates
+ * that no assertion uses never reach the CNF.
+ *
+ * <p>
+ * Words are {@code int[]}s of circuit literals, least significant bit
+ * first; {@link #literal(int)} gives the CNF literal of a circuit literal.
+ * Addition is a ripple-carry adder (one XOR pair and one majority gate
+ * per bit); multiplication is a shift-and-add array truncated to the word
+ * width. With a constant operand most of these gates fold away.
+ */
+public class BitBlaster {
+
+    private final Aig aig = new Aig();
+    private final ClauseArena arena = new ClauseArena(1024, 4096);
+    private final Map<String, int[]> words = new HashMap<String, int[]>();
+    private String[] names = new String[64];
+    private int numVars = 0;
+    private final int trueLit;
+    // CNF literal of each circuit node, or -1 if it has none yet
+    private int[] cnf = new int[256];
+
+    public BitBlaster() {
+        trueLit = ClauseArena.literal(newVariable("one"), false);
+        clause(trueLit);
+        Arrays.fill(cnf, -1);
+        cnf[0] = not(trueLit); // node 0 is the constant false
+    }
+
+    /**
+     * Encodes the equation of {@code query}; the unknowns are the words
+     * named "x" and "y".
+     */
+    public static BitBlaster encode(Query query) {
+        long start = Metrics.global().beginPhase();
+        BitBlaster bb = new BitBlaster();
+        int w = query.getWidth();
+        int[] x = bb.newWord("x", w);
+        int[] a = bb.constant(query.getA(), w);
+        int[] b = bb.constant(query.getB(), w);
+        switch (query.getFormula()) {
+            case 1:
+                bb.assertEqual(bb.add(x, a), b);
+                break;
+            case 2:
+                bb.assertEqual(bb.add(bb.multiply(a, x), b), bb.constant(query.getC(), w));
+                break;
+            default:
+                int[] y = bb.newWord("y", w);
+                bb.assertEqual(bb.add(bb.multiply(a, x), bb.multiply(b, y)), bb.constant(query.getC(), w));
+                break;
+        }
+        Metrics.global().endPhase(Metrics.ENCODE, start);
+        return bb;
+    }
+
+    /**
+     * Allocates a circuit input with a CNF variable of its own, optionally
+     * named, and returns its literal.
+     */
+    public int newInput(String name) {
+        int input = aig.input();
+        ensureNodes();
+        cnf[Aig.node(input)] = ClauseArena.literal(newVariable(name), false);
+        return input;
+    }
+
+    /**
+     * Allocates a word of fresh inputs named {@code name0}, {@code name1},
+     * ...
+     */
+    public int[] newWord(String name, int width) {
+        int[] word = new int[width];
+        for (int i = 0; i < width; i++) {
+            word[i] = newInput(name + i);
+        }
+        words.put(name, word);
+        return word;
+    }
+
+    /**
+     * Returns the CNF literals of the word created by
+     * {@code newWord(name, ...)}, or null.
+     */
+    public int[] word(String name) {
+        int[] word = words.get(name);
+        if (word == null) {
+            return null;
+        }
+        int[] literals = new int[word.length];
+        for (int i = 0; i < word.length; i++) {
+            literals[i] = literal(word[i]);
+        }
+        return literals;
+    }
+
+    /**
+     * Returns a word holding the low {@code width} bits of {@code value}.
+     */
+    public int[] constant(long value, int width) {
+        int[] word = new int[width];
+        for (int i = 0; i < width; i++) {
+            word[i] = constant(((value >>> i) & 1) != 0);
+        }
+        return word;
+    }
+
+    /**
+     * Returns the literal that is always {@code value}.
+     */
+    public int constant(boolean value) {
+        return value ? Aig.TRUE : Aig.FALSE;
+    }
+
+    public int not(int a) {
+        return a ^ 1;
+    }
+
+    public int and(int a, int b) {
+        return aig.and(a, b);
+    }
+
+    public int or(int a, int b) {
+        return aig.or(a, b);
+    }
+
+    public int xor(int a, int b) {
+        return aig.xor(a, b);
+    }
+
+    /**
+     * Returns a literal equal to {@code a xor b xor c}.
+     */
+    public int xor3(int a, int b, int c) {
+        return aig.xor3(a, b, c);
+    }
+
+    /**
+     * Returns a literal equal to the majority of a, b and c.
+     */
+    public int majority(int a, int b, int c) {
+        return aig.majority(a, b, c);
+    }
+
+    /**
+     * Returns {@code a + b} modulo 2^width.
+     */
+    public int[] add(int[] a, int[] b) {
+        int[] sum = new int[a.length];
+        int carry = constant(false);
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = xor3(a[i], b[i], carry);
+            if (i + 1 < a.length) {
+                carry = majority(a[i], b[i], carry);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns {@code a * b} modulo 2^width.
+     */
+    public int[] multiply(int[] a, int[] b) {
+        int w = a.length;
+        int[] product = constant(0, w);
+        for (int i = 0; i < w; i++) {
+            int[] partial = new int[w];
+            for (int j = 0; j < w; j++) {
+                partial[j] = (j < i) ? constant(false) : and(a[j - i], b[i]);
+            }
+            product = add(product, partial);
+        }
+        return product;
+    }
+
+    /**
+     * Returns a literal that is true iff the two words are equal.
+     */
+    public int equal(int[] a, int[] b) {
+        int result = constant(true);
+        for (int i = 0; i < a.length; i++) {
+            result = and(result, not(xor(a[i], b[i])));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a literal that is true iff {@code a < b} as unsigned numbers.
+     */
+    public int lessThan(int[] a, int[] b) {
+        int less = constant(false);
+        for (int i = 0; i < a.length; i++) {
+            // from the least significant bit up: bit i decides unless equal
+            int bitLess = and(not(a[i]), b[i]);
+            int bitEqual = not(xor(a[i], b[i]));
+            less = or(bitLess, and(bitEqual, less));
+        }
+        return less;
+    }
+
+    /**
+     * Adds the constraint that two words are equal, at most two clauses
+     * per bit. Bits that are equal by construction cost nothing, and a
+     * bit equal to a constant becomes a unit.
+     */
+    public void assertEqual(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (Aig.isConstant(a[i])) {
+                assertTrue(a[i] == Aig.TRUE ? b[i] : not(b[i]));
+            } else if (Aig.isConstant(b[i])) {
+                assertTrue(b[i] == Aig.TRUE ? a[i] : not(a[i]));
+            } else if (a[i] != b[i]) {
+                int p = literal(a[i]);
+                int q = literal(b[i]);
+                clause(not(p), q);
+                clause(p, not(q));
+            }
+        }
+    }
+
+    /**
+     * Adds the constraint that {@code literal} is true. A true AND gate
+     * is asserted through its inputs, without a variable of its own.
+     */
+    public void assertTrue(int literal) {
+        ensureNodes();
+        IntStack stack = new IntStack();
+        stack.push(literal);
+        while (stack.size > 0) {
+            int lit = stack.pop();
+            int node = Aig.node(lit);
+            if (lit == Aig.TRUE) {
+                continue;
+            }
+            if (!Aig.isInverted(lit) && aig.kind(node) == Aig.AND && cnf[node] < 0) {
+                stack.push(aig.fanin(node, 0));
+                stack.push(aig.fanin(node, 1));
+            } else {
+                clause(literal(lit));
+            }
+        }
+    }
+
+    /**
+     * Returns the value of {@code word} under a model, where
+     * {@code model[v]} is the value of variable v.
+     */
+    public static long value(int[] word, boolean[] model) {
+        long value = 0;
+        for (int i = 0; i < word.length; i++) {
+            int lit = word[i];
+            if (model[ClauseArena.var(lit)] != ClauseArena.isNegated(lit)) {
+                value |= 1L << i;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the CNF literal of circuit literal {@code literal}, encoding
+     * the gates it depends on if that has not happened yet.
+     */
+    public int literal(int literal) {
+        ensureNodes();
+        int root = Aig.node(literal);
+        if (cnf[root] < 0) {
+            // post-order walk: a gate is encoded once its inputs are
+            IntStack stack = new IntStack();
+            stack.push(root);
+            while (stack.size > 0) {
+                int node = stack.top();
+                if (cnf[node] >= 0) {
+                    stack.pop();
+                    continue;
+                }
+                int arity = (aig.kind(node) == Aig.MAJORITY) ? 3 : 2;
+                boolean ready = true;
+                for (int i = 0; i < arity; i++) {
+                    int fanin = Aig.node(aig.fanin(node, i));
+                    if (cnf[fanin] < 0) {
+                        stack.push(fanin);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    stack.pop();
+                    encode(node);
+                }
+            }
+        }
+        return cnf[root] ^ (literal & 1);
+    }
+
+    /**
+     * Returns the circuit the gates are built in.
+     */
+    public Aig getAig() {
+        return aig;
+    }
+
+    /**
+     * Returns the clauses written so far. Gate variables are named
+     * {@code t<index>}.
+     */
+    public ClauseArena getArena() {
+        return arena;
+    }
+
+    public int numVariables() {
+        return numVars;
+    }
+
+    /**
+     * Returns the name of variable {@code var}.
+     */
+    public String name(int var) {
+        return (names[var] != null) ? names[var] : "t" + var;
+    }
+
+    /**
+     * Returns the clauses as a {@link PackedConjunction}. The conjunction
+     * shares the arena of this encoder.
+     */
+    public PackedConjunction toConjunction() {
+        Variable[] variables = new Variable[numVars];
+        for (int v = 0; v < numVars; v++) {
+            variables[v] = new Variable(name(v));
+        }
+        return new PackedConjunction(arena, variables);
+    }
+
+    private int newVariable(String name) {
+        if (numVars == names.length) {
+            names = Arrays.copyOf(names, 2 * numVars);
+        }
+        names[numVars] = name;
+        arena.ensureVariables(numVars + 1);
+        return numVars++;
+    }
+
+    private void ensureNodes() {
+        if (aig.numNodes() > cnf.length) {
+            int old = cnf.length;
+            cnf = Arrays.copyOf(cnf, Math.max(aig.numNodes(), 2 * old));
+            Arrays.fill(cnf, old, cnf.length, -1);
+        }
+    }
+
+    // gives gate node a variable and writes its Tseitin clauses; its
+    // inputs must have CNF literals already
+    private void encode(int node) {
+        ensureNodes();
+        int g = ClauseArena.literal(newVariable(null), false);
+        int a = cnf[Aig.node(aig.fanin(node, 0))] ^ (aig.fanin(node, 0) & 1);
+        int b = cnf[Aig.node(aig.fanin(node, 1))] ^ (aig.fanin(node, 1) & 1);
+        switch (aig.kind(node)) {
+            case Aig.AND:
+                clause(not(g), a);
+                clause(not(g), b);
+                clause(g, not(a), not(b));
+                break;
+            case Aig.XOR:
+                clause(not(g), a, b);
+                clause(not(g), not(a), not(b));
+                clause(g, not(a), b);
+                clause(g, a, not(b));
+                break;
+            default:
+                int c = cnf[Aig.node(aig.fanin(node, 2))] ^ (aig.fanin(node, 2) & 1);
+                clause(not(g), a, b);
+                clause(not(g), a, c);
+                clause(not(g), b, c);
+                clause(g, not(a), not(b));
+                clause(g, not(a), not(c));
+                clause(g, not(b), not(c));
+                break;
+        }
+        cnf[node] = g;
+    }
+
+    private void clause(int a) {
+        arena.beginClause();
+        arena.addLiteral(a);
+        arena.endClause();
+    }
+
+    private void clause(int a, int b) {
+        arena.beginClause();
+        arena.addLiteral(a);
+        arena.addLiteral(b);
+        arena.endClause();
+    }
+
+    private void clause(int a, int b, int c) {
+        arena.beginClause();
+        arena.addLiteral(a);
+        arena.addLiteral(b);
+        arena.addLiteral(c);
+        arena.endClause();
+    }
+
+    // a growable stack of ints for the graph walks
+    private static final class IntStack {
+
+        int[] data = new int[64];
+        int size = 0;
+
+        void push(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, 2 * size);
+            }
+            data[size++] = value;
+        }
+
+        int pop() {
+            return data[--size];
+        }
+
+        int top() {
+            return data[size - 1];
+        }
+    }
+}
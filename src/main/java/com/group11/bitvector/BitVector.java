@@ -5,6 +5,14 @@
  */
 package com.group11.bitvector;
 
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import techniques.PL.CNF;
+import techniques.PL.ClauseArena;
+import techniques.PL.Interpretation;
+import techniques.PL.PackedConjunction;
+import techniques.PL.Solver;
+
 /**
  *
  * @author Tho
@@ -14,6 +22,23 @@ public class BitVector extends javax.swing.JFrame {
     //bien luu loai cong thuc va do dai bit vector
     int formula;
     int bitLength;
+    //chi in CNF ra txtArea khi so menh de nho hon gioi han nay
+    static final int MAX_SHOWN_CLAUSES = 200;
+    //bieu thuc va bo ma hoa da xay dung, dua vao bo giai MiniSat
+    Query query;
+    BitBlaster blaster;
+    //bo giai giu lai giua cac lan giai cung loai cong thuc va do dai
+    QuerySolver querySolver;
+    //ket qua da giai, dung lai khi gap lai cung bieu thuc
+    static final ResultCache<Query, QueryResult> RESULTS = new ResultCache<Query, QueryResult>(10000);
+    //nghiem x, y tim duoc, null neu khong co
+    long[] solution;
+    //cong viec ma hoa/giai chay nen, khong chan EDT
+    static final JobExecutor JOBS = new JobExecutor(2, 4);
+    static final long TIMEOUT_MINUTES = 10;
+    //so xung dot giua hai lan bao tien do
+    static final long PROGRESS_CONFLICTS = 20000;
+    BackgroundJob<?> currentJob;
 
     /**
      * Creates new form BitVector
@@ -173,9 +198,19 @@ public class BitVector extends javax.swing.JFrame {
 
         btnMinisat.setFont(new java.awt.Font("Tahoma", 1, 18)); // NOI18N
         btnMinisat.setText("MiniSat");
+        btnMinisat.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnMinisatActionPerformed(evt);
+            }
+        });
 
         btnKetQua.setFont(new java.awt.Font("Tahoma", 1, 18)); // NOI18N
         btnKetQua.setText("Kết quả");
+        btnKetQua.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                btnKetQuaActionPerformed(evt);
+            }
+        });
 
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
@@ -290,8 +325,39 @@ public class BitVector extends javax.swing.JFrame {
     }//GEN-LAST:event_formula1ActionPerformed
 
     private void btnCNFActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnCNFActionPerformed
-        // TODO add your handling code here:
-        txtArea.setText("formula = " + formula);
+        //doc cac tham so va ma hoa bieu thuc thanh CNF
+        try {
+            query = readQuery();
+        } catch (IllegalArgumentException ex) {
+            txtArea.setText("Lỗi: " + ex.getMessage());
+            return;
+        }
+        final Query q = query;
+        txtArea.setText("Đang mã hóa " + q + "\n");
+        startJob(new BackgroundJob<BitBlaster>(txtArea) {
+            private String text;
+
+            @Override
+            protected BitBlaster doInBackground() {
+                BitBlaster bb = BitBlaster.encode(q);
+                StringBuilder sb = new StringBuilder();
+                sb.append("Biểu thức: ").append(q).append('\n');
+                sb.append("Số biến: ").append(bb.numVariables()).append('\n');
+                sb.append("Số mệnh đề: ").append(bb.getArena().numClauses()).append('\n');
+                if (bb.getArena().numClauses() <= MAX_SHOWN_CLAUSES) {
+                    sb.append(bb.toConjunction());
+                }
+                text = sb.toString();
+                return bb;
+            }
+
+            @Override
+            protected void succeeded(BitBlaster result) {
+                blaster = result;
+                solution = null;
+                txtArea.setText(text);
+            }
+        });
     }//GEN-LAST:event_btnCNFActionPerformed
 
     private void formula2ActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_formula2ActionPerformed
@@ -319,6 +385,253 @@ public class BitVector extends javax.swing.JFrame {
         bitLength = 12;
     }//GEN-LAST:event_length12ActionPerformed
 
+    private void btnMinisatActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnMinisatActionPerformed
+        //dang chay thi nut nay dung de huy
+        if (currentJob != null) {
+            currentJob.stop();
+            return;
+        }
+        if (blaster != null) {
+            //doc lai toan hang: chi can giai lai voi gia thiet moi
+            try {
+                query = readQuery();
+            } catch (IllegalArgumentException ex) {
+                txtArea.setText("Lỗi: " + ex.getMessage());
+                return;
+            }
+            //giai truoc o muc tu, chi bit-blast khi khong giai duoc
+            QueryResult word = WordSolver.solve(query);
+            if (word != null) {
+                solution = word.isSatisfiable() ? new long[]{word.getX(), word.getY()} : null;
+                txtArea.setText((word.isSatisfiable() ? "SAT" : "UNSAT") + " (giải ở mức từ)");
+                return;
+            }
+            QueryResult cached = RESULTS.get(query);
+            if (cached != null) {
+                solution = cached.isSatisfiable() ? new long[]{cached.getX(), cached.getY()} : null;
+                txtArea.setText((cached.isSatisfiable() ? "SAT" : "UNSAT")
+                        + " (kết quả đã lưu)\nBộ nhớ đệm: " + RESULTS);
+                return;
+            }
+            solveQuery(query);
+            return;
+        }
+
+        //neu chua xay dung CNF thi doc CNF tu txtArea
+        final String text = txtArea.getText();
+        txtArea.setText("Đang giải CNF\n");
+        startJob(new BackgroundJob<Interpretation>(txtArea) {
+            private final Solver solver = new Solver();
+            private boolean solved;
+
+            @Override
+            protected Interpretation doInBackground() {
+                PackedConjunction packed;
+                try {
+                    packed = PackedConjunction.pack(CNF.parse(text));
+                } catch (RuntimeException ex) {
+                    throw new IllegalArgumentException("Chưa có CNF để giải: " + ex.getMessage(), ex);
+                }
+                ClauseArena arena = packed.getArena();
+                for (int c = 0; c < arena.numClauses(); c++) {
+                    solver.addClause(arena.clause(c));
+                }
+                solved = (solveInSlices(this, solver, null, null) == Boolean.TRUE);
+                return solved ? solver.getInterpretation(packed) : null;
+            }
+
+            @Override
+            protected void interruptWork() {
+                solver.interrupt();
+            }
+
+            @Override
+            protected void succeeded(Interpretation interpretation) {
+                txtArea.setText(solved ? "SAT\n" + interpretation : "UNSAT");
+            }
+
+            @Override
+            protected void failed(Throwable error) {
+                txtArea.setText(error.getMessage());
+            }
+        });
+    }//GEN-LAST:event_btnMinisatActionPerformed
+
+    private void btnKetQuaActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnKetQuaActionPerformed
+        //giai ma nghiem x, y tu ket qua cua MiniSat
+        if (blaster == null) {
+            txtArea.setText("Chưa xây dựng CNF");
+            return;
+        }
+        if (solution == null) {
+            txtArea.setText(query + "\nKhông có nghiệm (hoặc chưa chạy MiniSat)");
+            return;
+        }
+        long x = solution[0];
+        long y = solution[1];
+        StringBuilder sb = new StringBuilder();
+        sb.append(query).append('\n');
+        sb.append("x = ").append(Query.unsigned(x)).append('\n');
+        if (query.hasY()) {
+            sb.append("y = ").append(Query.unsigned(y)).append('\n');
+        }
+        sb.append(query.check(x, y) ? "Kiểm tra: đúng" : "Kiểm tra: sai");
+        txtArea.setText(sb.toString());
+    }//GEN-LAST:event_btnKetQuaActionPerformed
+
+    /**
+     * Runs {@code job} in the background; until it is over the MiniSat
+     * button cancels it and the other buttons are disabled.
+     */
+    private void startJob(final BackgroundJob<?> job) {
+        currentJob = job;
+        btnMinisat.setText("Hủy");
+        btnCNF.setEnabled(false);
+        btnKetQua.setEnabled(false);
+        job.addPropertyChangeListener(new java.beans.PropertyChangeListener() {
+            @Override
+            public void propertyChange(java.beans.PropertyChangeEvent evt) {
+                if ("state".equals(evt.getPropertyName()) && job.isDone()) {
+                    jobFinished(job);
+                }
+            }
+        });
+        try {
+            JOBS.submit(job, TIMEOUT_MINUTES, TimeUnit.MINUTES);
+        } catch (RejectedExecutionException ex) {
+            txtArea.append("Quá nhiều công việc đang chạy, thử lại sau\n");
+            jobFinished(job);
+        }
+    }
+
+    private void jobFinished(BackgroundJob<?> job) {
+        if (currentJob == job) {
+            currentJob = null;
+            btnMinisat.setText("MiniSat");
+            btnCNF.setEnabled(true);
+            btnKetQua.setEnabled(true);
+        }
+    }
+
+    /**
+     * Solves {@code q} in the background with the incremental solver of
+     * its formula and width.
+     */
+    private void solveQuery(final Query q) {
+        final QuerySolver reused = (querySolver != null && querySolver.accepts(q)) ? querySolver : null;
+        txtArea.setText("Đang giải " + q + "\n");
+        startJob(new BackgroundJob<Boolean>(txtArea) {
+            private volatile QuerySolver qs = reused;
+            private String summary;
+
+            @Override
+            protected Boolean doInBackground() {
+                if (qs == null) {
+                    log("Đang mã hóa mạch cho " + q.getWidth() + " bit");
+                    qs = new QuerySolver(q.getFormula(), q.getWidth());
+                }
+                if (isStopped()) {
+                    return null;
+                }
+                qs.clearInterrupt();
+                Solver solver = qs.getSolver();
+                long conflicts = solver.getConflicts();
+                long decisions = solver.getDecisions();
+                long start = System.nanoTime();
+                Boolean status = solveInSlices(this, solver, qs, q);
+                long time = (System.nanoTime() - start) / 1000000;
+
+                StringBuilder sb = new StringBuilder();
+                if (status == Boolean.TRUE) {
+                    sb.append("SAT");
+                } else if (status == Boolean.FALSE) {
+                    sb.append("UNSAT\nCác bit toán hạng gây mâu thuẫn:");
+                    sb.append(" a = ").append(Long.toBinaryString(qs.getCore("a")));
+                    sb.append(" b = ").append(Long.toBinaryString(qs.getCore("b")));
+                    if (q.getFormula() != 1) {
+                        sb.append(" c = ").append(Long.toBinaryString(qs.getCore("c")));
+                    }
+                }
+                sb.append("\nSố mệnh đề: ").append(qs.numClauses());
+                sb.append("\nSố xung đột: ").append(solver.getConflicts() - conflicts);
+                sb.append("\nSố quyết định: ").append(solver.getDecisions() - decisions);
+                sb.append("\nThời gian: ").append(time).append(" ms");
+                summary = sb.toString();
+                return status;
+            }
+
+            @Override
+            protected void interruptWork() {
+                QuerySolver s = qs;
+                if (s != null) {
+                    s.interrupt();
+                }
+            }
+
+            @Override
+            protected void succeeded(Boolean status) {
+                querySolver = qs;
+                solution = null;
+                if (status) {
+                    solution = new long[]{qs.getX(), qs.getY()};
+                    RESULTS.put(q, QueryResult.sat(q, solution[0], solution[1]));
+                } else {
+                    RESULTS.put(q, QueryResult.unsat(q));
+                }
+                txtArea.setText(summary);
+            }
+
+            @Override
+            protected void cancelled(boolean timedOut) {
+                //bo giai van dung duoc cho lan sau
+                querySolver = qs;
+                super.cancelled(timedOut);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code solver}, or {@code qs} on {@code q} if not null, a slice
+     * of conflicts at a time, logging progress between slices, until it is
+     * done or {@code job} is stopped.
+     */
+    private static Boolean solveInSlices(BackgroundJob<?> job, Solver solver, QuerySolver qs, Query q) {
+        solver.setConflictBudget(PROGRESS_CONFLICTS);
+        long start = System.nanoTime();
+        Boolean status = null;
+        try {
+            while (!job.isStopped()) {
+                status = (qs != null) ? qs.solve(q) : solver.solve();
+                if (status != null) {
+                    break;
+                }
+                job.log("Số xung đột: " + solver.getConflicts() + " sau "
+                        + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+        } finally {
+            solver.setConflictBudget(-1);
+        }
+        return status;
+    }
+
+    /**
+     * Reads the formula type, bit length and operands from the form.
+     *
+     * @throws IllegalArgumentException if something is missing or invalid
+     */
+    private Query readQuery() {
+        if (formula == 0) {
+            throw new IllegalArgumentException("Chưa chọn loại biểu thức");
+        }
+        if (bitLength == 0) {
+            throw new IllegalArgumentException("Chưa chọn độ dài bit vector");
+        }
+        long a = Query.parseOperand(txtA.getText(), bitLength);
+        long b = Query.parseOperand(txtB.getText(), bitLength);
+        long c = (formula == 1) ? 0 : Query.parseOperand(txtC.getText(), bitLength);
+        return new Query(formula, bitLength, a, b, c);
+    }
+
     /**
      * @param args the command line arguments
      */
@@ -0,0 +1,110 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import techniques.PL.ClauseArena;
+
+/**
+ * A cache key for a set of clauses, equal for two arenas with the same
+ * clauses over the same variables, whatever the order of the clauses and
+ * of the literals in them, and whatever duplicates they have.
+ *
+ * <p>
+ * The canonical form is kept, so that two keys with the same 64-bit hash
+ * are still told apart.
+ */
+public final class CnfKey {
+
+    // clauses sorted and deduplicated, each as its size then its sorted literals
+    private final int[] canonical;
+    private final int numVariables;
+    private final long hash;
+
+    public CnfKey(ClauseArena arena) {
+        int[][] clauses = new int[arena.numClauses()][];
+        for (int c = 0; c < clauses.length; c++) {
+            int[] clause = arena.clause(c);
+            Arrays.sort(clause);
+            // bo literal trung lap trong menh de
+            int n = 0;
+            for (int i = 0; i < clause.length; i++) {
+                if (n == 0 || clause[i] != clause[n - 1]) {
+                    clause[n++] = clause[i];
+                }
+            }
+            clauses[c] = Arrays.copyOf(clause, n);
+        }
+        Arrays.sort(clauses, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                for (int i = 0; i < a.length && i < b.length; i++) {
+                    if (a[i] != b[i]) {
+                        return (a[i] < b[i]) ? -1 : 1;
+                    }
+                }
+                return a.length - b.length;
+            }
+        });
+
+        int[] form = new int[arena.numLiterals() + clauses.length];
+        int size = 0;
+        long h = arena.numVariables();
+        for (int c = 0; c < clauses.length; c++) {
+            if (c > 0 && Arrays.equals(clauses[c], clauses[c - 1])) {
+                continue;
+            }
+            form[size++] = clauses[c].length;
+            h = mix(h, clauses[c].length);
+            for (int lit : clauses[c]) {
+                form[size++] = lit;
+                h = mix(h, lit);
+            }
+        }
+        canonical = Arrays.copyOf(form, size);
+        numVariables = arena.numVariables();
+        hash = h;
+    }
+
+    private static long mix(long h, int value) {
+        h = (h ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Returns the 64-bit hash of the canonical form.
+     */
+    public long hash64() {
+        return hash;
+    }
+
+    /**
+     * Returns the number of ints the key holds, for a
+     * {@link ResultCache.Weigher}.
+     */
+    public int weight() {
+        return canonical.length;
+    }
+
+    public int numVariables() {
+        return numVariables;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CnfKey)) {
+            return false;
+        }
+        CnfKey k = (CnfKey) o;
+        return hash == k.hash && numVariables == k.numVariables && Arrays.equals(canonical, k.canonical);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link BackgroundJob}s on a bounded pool of daemon threads, with a
+ * bounded queue: when both are full, {@link #submit} refuses the job
+ * instead of letting work pile up. Each job can have a timeout, after
+ * which it is stopped.
+ */
+public class JobExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Constructs an executor with {@code threads} threads and room for
+     * {@code queued} waiting jobs.
+     */
+    public JobExecutor(int threads, int queued) {
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queued), daemonThreads("job"),
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        timer = new ScheduledThreadPoolExecutor(1, daemonThreads("job-timer"));
+        // huy hen gio thi bo khoi hang doi ngay, khong giu job den het han
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Starts {@code job}, stopping it after {@code timeout} unless it is
+     * done by then; a timeout of 0 means no limit. The time spent waiting
+     * in the queue counts. The timeout is cancelled as soon as the job is
+     * done, so the timer does not keep finished jobs reachable.
+     *
+     * @throws RejectedExecutionException if too many jobs are running or
+     * waiting
+     */
+    public void submit(final BackgroundJob<?> job, long timeout, TimeUnit unit) {
+        executor.execute(job);
+        if (timeout > 0) {
+            job.setTimeout(timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    job.timeOut();
+                }
+            }, timeout, unit));
+        }
+    }
+
+    /**
+     * Returns the number of jobs running or waiting.
+     */
+    public int pending() {
+        return executor.getActiveCount() + executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.math.BigInteger;
+
+/**
+ * One bit-vector equation of the form, e.g. {@code a * x + b = c} with
+ * concrete operands a, b, c and unknowns x (and y). All arithmetic is
+ * modulo 2^width, like machine words of that width.
+ *
+ * <ul>
+ * <li>formula 1: {@code x + a = b}</li>
+ * <li>formula 2: {@code a * x + b = c}</li>
+ * <li>formula 3: {@code a * x + b * y = c}</li>
+ * </ul>
+ *
+ * Formula 1 only uses a and b.
+ */
+public final class Query {
+
+    public static final int MAX_WIDTH = 64;
+
+    private final int formula;
+    private final int width;
+    private final long a;
+    private final long b;
+    private final long c;
+
+    public Query(int formula, int width, long a, long b, long c) {
+        if (formula < 1 || formula > 3) {
+            throw new IllegalArgumentException("Unknown formula: " + formula);
+        }
+        if (width < 1 || width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Width must be 1.." + MAX_WIDTH + ": " + width);
+        }
+        this.formula = formula;
+        this.width = width;
+        this.a = a & mask(width);
+        this.b = b & mask(width);
+        this.c = (formula == 1) ? 0 : c & mask(width);
+    }
+
+    /**
+     * Parses an unsigned decimal operand that must fit in {@code width}
+     * bits.
+     *
+     * @throws NumberFormatException if the text is not such a number
+     */
+    public static long parseOperand(String text, int width) {
+        BigInteger value = new BigInteger(text.trim());
+        if (value.signum() < 0 || value.bitLength() > width) {
+            throw new NumberFormatException("\"" + text.trim() + "\" does not fit in " + width + " bits");
+        }
+        return value.longValue();
+    }
+
+    /**
+     * Returns a mask of the low {@code width} bits.
+     */
+    public static long mask(int width) {
+        return (width == 64) ? -1L : (1L << width) - 1;
+    }
+
+    public int getFormula() {
+        return formula;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public long getA() {
+        return a;
+    }
+
+    public long getB() {
+        return b;
+    }
+
+    public long getC() {
+        return c;
+    }
+
+    /**
+     * Returns true if the formula has a second unknown y.
+     */
+    public boolean hasY() {
+        return formula == 3;
+    }
+
+    /**
+     * Checks whether x (and y) solve this equation.
+     */
+    public boolean check(long x, long y) {
+        long m = mask(width);
+        switch (formula) {
+            case 1:
+                return ((x + a) & m) == b;
+            case 2:
+                return ((a * x + b) & m) == c;
+            default:
+                return ((a * x + b * y) & m) == c;
+        }
+    }
+
+    /**
+     * Returns the equation with the operands filled in.
+     */
+    public String equation() {
+        switch (formula) {
+            case 1:
+                return "x + " + unsigned(a) + " = " + unsigned(b);
+            case 2:
+                return unsigned(a) + " * x + " + unsigned(b) + " = " + unsigned(c);
+            default:
+                return unsigned(a) + " * x + " + unsigned(b) + " * y = " + unsigned(c);
+        }
+    }
+
+    static String unsigned(long value) {
+        if (value >= 0) {
+            return Long.toString(value);
+        }
+        return BigInteger.valueOf(value).add(BigInteger.ONE.shiftLeft(64)).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Query)) {
+            return false;
+        }
+        Query q = (Query) o;
+        return formula == q.formula && width == q.width && a == q.a && b == q.b && c == q.c;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = formula;
+        h = h * 31 + width;
+        h = h * 31 + a;
+        h = h * 31 + b;
+        h = h * 31 + c;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return equation() + " (" + width + " bit)";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+/**
+ * The answer to a {@link Query}: a solution x (and y), or none.
+ */
+public final class QueryResult {
+
+    private final Query query;
+    private final boolean satisfiable;
+    private final long x;
+    private final long y;
+
+    private QueryResult(Query query, boolean satisfiable, long x, long y) {
+        this.query = query;
+        this.satisfiable = satisfiable;
+        this.x = x;
+        this.y = y;
+    }
+
+    public static QueryResult sat(Query query, long x, long y) {
+        return new QueryResult(query, true, x, y);
+    }
+
+    public static QueryResult unsat(Query query) {
+        return new QueryResult(query, false, 0, 0);
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public boolean isSatisfiable() {
+        return satisfiable;
+    }
+
+    /**
+     * Returns x, or 0 if there is no solution.
+     */
+    public long getX() {
+        return x;
+    }
+
+    /**
+     * Returns y, or 0 if there is no solution or no y.
+     */
+    public long getY() {
+        return y;
+    }
+
+    @Override
+    public String toString() {
+        if (!satisfiable) {
+            return query + ": UNSAT";
+        }
+        return query + ": x = " + Query.unsigned(x) + (query.hasY() ? ", y = " + Query.unsigned(y) : "");
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.io.File;
+import java.io.IOException;
+import techniques.PL.ClauseArena;
+import techniques.PL.DratChecker;
+import techniques.PL.DratWriter;
+import techniques.PL.Metrics;
+import techniques.PL.Preprocessor;
+import techniques.PL.Solver;
+
+/**
+ * Solves many queries of one formula and width with a single solver. The
+ * circuit is encoded once with the operands a, b and c as inputs, like the
+ * unknowns; each query then fixes the operand bits by assumptions. The
+ * clauses, and everything the solver learns about the circuit, are kept
+ * from one query to the next, so only the first query pays for the
+ * encoding and a cold start.
+ *
+ * <p>
+ * When a query has no solution, {@link #getCore(String)} tells which
+ * operand bits the solver needed to prove it, and
+ * {@link #certify(Query, File)} double-checks the answer with a DRAT proof.
+ *
+ * <p>
+ * Not thread safe: use one instance per thread.
+ */
+public class QuerySolver {
+
+    private static final String[] OPERANDS = {"a", "b", "c"};
+
+    private final int formula;
+    private final int width;
+    private final BitBlaster blaster;
+    private final Preprocessor preprocessor;
+    private final Solver solver;
+    private final int numOperands;
+
+    // CNF literals of the operand bits, by operand and bit
+    private final int[][] operands;
+    private boolean[] model;
+    private long[] core = new long[OPERANDS.length];
+
+    /**
+     * Encodes {@code formula} at {@code width} bits.
+     */
+    public QuerySolver(int formula, int width) {
+        // kiem tra formula va width
+        new Query(formula, width, 0, 0, 0);
+        this.formula = formula;
+        this.width = width;
+        numOperands = (formula == 1) ? 2 : 3;
+
+        long start = Metrics.global().beginPhase();
+        blaster = new BitBlaster();
+        int[] x = blaster.newWord("x", width);
+        int[] a = blaster.newWord("a", width);
+        int[] b = blaster.newWord("b", width);
+        switch (formula) {
+            case 1:
+                blaster.assertEqual(blaster.add(x, a), b);
+                break;
+            case 2:
+                blaster.assertEqual(blaster.add(blaster.multiply(a, x), b), blaster.newWord("c", width));
+                break;
+            default:
+                int[] y = blaster.newWord("y", width);
+                blaster.assertEqual(blaster.add(blaster.multiply(a, x), blaster.multiply(b, y)),
+                        blaster.newWord("c", width));
+                break;
+        }
+
+        operands = new int[numOperands][];
+        for (int i = 0; i < numOperands; i++) {
+            operands[i] = blaster.word(OPERANDS[i]);
+        }
+        Metrics.global().endPhase(Metrics.ENCODE, start);
+
+        // don gian hoa CNF, giu lai cac bit toan hang de dat gia thiet
+        preprocessor = new Preprocessor(blaster.getArena());
+        for (int i = 0; i < numOperands; i++) {
+            for (int lit : operands[i]) {
+                preprocessor.freeze(ClauseArena.var(lit));
+            }
+        }
+        preprocessor.run();
+        solver = new Solver(preprocessor.getArena());
+    }
+
+    public int getFormula() {
+        return formula;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    // literal gan gia tri cua tung bit toan hang
+    private int[] assumptions(Query query) {
+        long[] values = {query.getA(), query.getB(), query.getC()};
+        int[] assumptions = new int[numOperands * width];
+        for (int i = 0; i < numOperands; i++) {
+            for (int bit = 0; bit < width; bit++) {
+                int lit = operands[i][bit];
+                assumptions[i * width + bit] = (((values[i] >>> bit) & 1) != 0) ? lit : ClauseArena.negate(lit);
+            }
+        }
+        return assumptions;
+    }
+
+    /**
+     * Returns true if this solver can answer {@code query}.
+     */
+    public boolean accepts(Query query) {
+        return query.getFormula() == formula && query.getWidth() == width;
+    }
+
+    /**
+     * Solves {@code query}. Returns {@code Boolean.TRUE} if it has a
+     * solution (see {@link #getX()}), {@code Boolean.FALSE} if not, and
+     * null if the solver was interrupted.
+     *
+     * @throws IllegalArgumentException if the query has another formula or
+     * width
+     */
+    public Boolean solve(Query query) {
+        if (!accepts(query)) {
+            throw new IllegalArgumentException("Expected formula " + formula + " at " + width
+                    + " bits, got " + query);
+        }
+        model = null;
+        core = new long[OPERANDS.length];
+        Boolean status = solver.solve(assumptions(query));
+        if (status == Boolean.TRUE) {
+            model = preprocessor.extend(solver.getModel());
+        } else if (status == Boolean.FALSE) {
+            // tim lai bit toan hang cua tung gia thiet trong core
+            for (int lit : solver.getConflict()) {
+                for (int i = 0; i < numOperands; i++) {
+                    for (int bit = 0; bit < width; bit++) {
+                        if (ClauseArena.var(operands[i][bit]) == ClauseArena.var(lit)) {
+                            core[i] |= 1L << bit;
+                        }
+                    }
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Checks that {@code query} has no solution, independently of
+     * {@link #solve(Query)}: a fresh solver, with nothing learned and no
+     * preprocessing, refutes the encoded circuit with the operand bits
+     * fixed by unit clauses, writing a binary DRAT proof to {@code proof},
+     * and {@link DratChecker} checks the proof against those clauses.
+     * Returns true if the proof checked, and false if the query has a
+     * solution, the proof failed or the conflict budget of
+     * {@link #getSolver()} ran out.
+     *
+     * @throws IOException if the proof could not be written or read
+     */
+    public boolean certify(Query query, File proof) throws IOException {
+        if (!accepts(query)) {
+            throw new IllegalArgumentException("Expected formula " + formula + " at " + width
+                    + " bits, got " + query);
+        }
+        ClauseArena circuit = blaster.getArena();
+        ClauseArena fixed = new ClauseArena(circuit.numClauses() + numOperands * width,
+                circuit.numLiterals() + numOperands * width);
+        fixed.ensureVariables(circuit.numVariables());
+        for (int c = 0; c < circuit.numClauses(); c++) {
+            fixed.addClause(circuit.clause(c));
+        }
+        for (int lit : assumptions(query)) {
+            fixed.addClause(new int[]{lit});
+        }
+
+        Solver fresh = new Solver();
+        fresh.setConflictBudget(solver.getConflictBudget());
+        DratWriter writer = new DratWriter(proof);
+        Boolean status;
+        try {
+            fresh.setProof(writer);
+            for (int c = 0; c < fixed.numClauses(); c++) {
+                fresh.addClause(fixed.clause(c));
+            }
+            status = fresh.solve();
+        } finally {
+            writer.close();
+        }
+        return status == Boolean.FALSE && new DratChecker(fixed).check(proof);
+    }
+
+    /**
+     * Returns x in the solution found by the last {@link #solve(Query)}.
+     */
+    public long getX() {
+        return BitBlaster.value(blaster.word("x"), model);
+    }
+
+    /**
+     * Returns y in the solution found by the last {@link #solve(Query)}, or
+     * 0 if the formula has no y.
+     */
+    public long getY() {
+        return (formula == 3) ? BitBlaster.value(blaster.word("y"), model) : 0;
+    }
+
+    /**
+     * Returns a mask of the bits of operand {@code name} ("a", "b" or "c")
+     * that the last unsatisfiable {@link #solve(Query)} depended on: the
+     * query has no solution as long as these bits keep their values,
+     * whatever the others are.
+     */
+    public long getCore(String name) {
+        for (int i = 0; i < OPERANDS.length; i++) {
+            if (OPERANDS[i].equals(name)) {
+                return core[i];
+            }
+        }
+        throw new IllegalArgumentException("Unknown operand: " + name);
+    }
+
+    /**
+     * Asks a running {@link #solve(Query)} to give up. May be called from
+     * any thread; later queries return null until
+     * {@link #clearInterrupt()}.
+     */
+    public void interrupt() {
+        solver.interrupt();
+    }
+
+    public void clearInterrupt() {
+        solver.clearInterrupt();
+    }
+
+    /**
+     * Returns the solver, e.g. for its statistics.
+     */
+    public Solver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Returns the number of clauses the solver started with.
+     */
+    public int numClauses() {
+        return preprocessor.numClauses();
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, thread-safe cache of solver results, evicting the least
+ * recently used entries first.
+ *
+ * <p>
+ * The keys are spread over a power-of-two number of stripes by hash, each
+ * stripe being an access-ordered {@link LinkedHashMap} with its own lock
+ * and an equal share of the capacity; threads working on different keys
+ * rarely wait for each other. Entries have a weight, given by a
+ * {@link Weigher}, and a stripe evicts from its least recently used end
+ * until its entries weigh no more than its share. An entry heavier than a
+ * whole share is not cached at all.
+ *
+ * @param <K> the key type, with value-based equals and hashCode, e.g.
+ * {@link Query} or {@link CnfKey}
+ * @param <V> the cached result type
+ */
+public class ResultCache<K, V> {
+
+    /**
+     * Gives the weight of an entry, e.g. the number of ints it holds.
+     */
+    public interface Weigher<K, V> {
+
+        long weigh(K key, V value);
+    }
+
+    private static final Weigher<Object, Object> ONE = new Weigher<Object, Object>() {
+        @Override
+        public long weigh(Object key, Object value) {
+            return 1;
+        }
+    };
+
+    private final Stripe<K, V>[] stripes;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maxWeight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Stripe<K, V> {
+
+        final ReentrantLock lock = new ReentrantLock();
+        // access order: the least recently used entry comes first
+        final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+        long weight = 0;
+    }
+
+    private static final class Entry<V> {
+
+        final V value;
+        final long weight;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Constructs a cache of at most {@code maxEntries} entries, each of
+     * weight one.
+     */
+    @SuppressWarnings("unchecked")
+    public ResultCache(int maxEntries) {
+        this(maxEntries, defaultStripes(), (Weigher<? super K, ? super V>) (Weigher<?, ?>) ONE);
+    }
+
+    /**
+     * Constructs a cache whose entries weigh at most {@code maxWeight} in
+     * total, split over {@code stripes} stripes (rounded up to a power of
+     * two).
+     */
+    @SuppressWarnings("unchecked")
+    public ResultCache(long maxWeight, int stripes, Weigher<? super K, ? super V> weigher) {
+        if (maxWeight < 1 || stripes < 1) {
+            throw new IllegalArgumentException("Need a positive capacity and number of stripes");
+        }
+        int n = Integer.highestOneBit(stripes);
+        if (n < stripes) {
+            n <<= 1;
+        }
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            this.stripes[i] = new Stripe<K, V>();
+        }
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
+    private static int defaultStripes() {
+        return 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns the result cached for {@code key}, or null, and counts a hit
+     * or a miss.
+     */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        Entry<V> entry;
+        stripe.lock.lock();
+        try {
+            entry = stripe.map.get(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+        V value = (entry != null) ? entry.value : null;
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    /**
+     * Caches {@code value} for {@code key}, replacing any earlier result,
+     * and evicts old entries as needed.
+     */
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Cannot cache null for " + key);
+        }
+        long w = weigher.weigh(key, value);
+        Stripe<K, V> stripe = stripe(key);
+        long share = Math.max(1, maxWeight / stripes.length);
+        stripe.lock.lock();
+        try {
+            remove(stripe, key);
+            if (w > share) {
+                return;
+            }
+            stripe.map.put(key, new Entry<V>(value, w));
+            stripe.weight += w;
+            Iterator<Entry<V>> eldest = stripe.map.values().iterator();
+            while (stripe.weight > share) {
+                stripe.weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the result cached for {@code key}, if any.
+     */
+    public void invalidate(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            remove(stripe, key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.map.clear();
+                stripe.weight = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached entries.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.map.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total weight of the cached entries.
+     */
+    public long weight() {
+        long weight = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                weight += stripe.weight;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the fraction of lookups that were hits, or 0 before the
+     * first lookup.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + " misses=" + getMisses() + " evictions=" + getEvictions()
+                + " entries=" + size() + " weight=" + weight() + "/" + maxWeight;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    private static <K, V> void remove(Stripe<K, V> stripe, K key) {
+        Entry<V> entry = stripe.map.remove(key);
+        if (entry != null) {
+            stripe.weight -= entry.weight;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.group11.bitvector;
+
+/**
+ * Solves a {@link Query} at the word level, with {@code long} arithmetic
+ * instead of clauses. The operands of a query are concrete, so each formula
+ * reduces to one linear equation modulo 2^width:
+ *
+ * <ul>
+ * <li>{@code x + a = b} has the solution {@code x = b - a};</li>
+ * <li>{@code a * x = d} is solvable exactly when the low bits that
+ * {@code a * x} must have as zero (as many as {@code a} has trailing
+ * zeros) are zero in {@code d}; then {@code x} is {@code d} shifted right
+ * by that much times the inverse of the odd part of {@code a};</li>
+ * <li>{@code a * x + b * y = c} is solvable exactly when the operand with
+ * fewer trailing zeros solves it alone, the other unknown being 0.</li>
+ * </ul>
+ *
+ * So every query is settled in a few dozen instructions, without encoding
+ * the circuit. {@link #solve(Query)} returns null for queries it cannot
+ * settle, which should then go to a {@link QuerySolver}; with the three
+ * formulas of {@link Query} there are none.
+ */
+public final class WordSolver {
+
+    private WordSolver() {
+    }
+
+    /**
+     * Returns the answer to {@code query}, or null if it must be
+     * bit-blasted. A solution returned is the smallest x (and y = 0 unless
+     * x alone cannot solve formula 3).
+     */
+    public static QueryResult solve(Query query) {
+        int width = query.getWidth();
+        long m = Query.mask(width);
+        long a = query.getA();
+        long b = query.getB();
+        long c = query.getC();
+        switch (query.getFormula()) {
+            case 1:
+                return QueryResult.sat(query, (b - a) & m, 0);
+            case 2: {
+                long d = (c - b) & m;
+                if (!divides(a, d)) {
+                    return QueryResult.unsat(query);
+                }
+                return QueryResult.sat(query, quotient(a, d, width), 0);
+            }
+            case 3:
+                if (Long.numberOfTrailingZeros(a) <= Long.numberOfTrailingZeros(b)) {
+                    if (!divides(a, c)) {
+                        return QueryResult.unsat(query);
+                    }
+                    return QueryResult.sat(query, quotient(a, c, width), 0);
+                }
+                if (!divides(b, c)) {
+                    return QueryResult.unsat(query);
+                }
+                return QueryResult.sat(query, 0, quotient(b, c, width));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns true if {@code a * x = d} has a solution modulo 2^width, for
+     * {@code a} and {@code d} of that width: {@code a} has no more trailing
+     * zeros than {@code d}. This also covers {@code a = 0}, which only
+     * solves {@code d = 0}.
+     */
+    static boolean divides(long a, long d) {
+        return Long.numberOfTrailingZeros(a) <= Long.numberOfTrailingZeros(d);
+    }
+
+    /**
+     * Returns the smallest x with {@code a * x = d} modulo 2^width; there
+     * must be one (see {@link #divides(long, long)}).
+     */
+    static long quotient(long a, long d, int width) {
+        if (a == 0) {
+            return 0;
+        }
+        int k = Long.numberOfTrailingZeros(a);
+        return ((d >>> k) * inverse(a >>> k)) & Query.mask(width - k);
+    }
+
+    /**
+     * Returns the inverse of odd {@code a} modulo 2^64.
+     */
+    static long inverse(long a) {
+        // Newton: moi buoc gap doi so bit dung, a dung san 3 bit
+        long inv = a;
+        for (int i = 0; i < 5; i++) {
+            inv *= 2 - a * inv;
+        }
+        return inv;
+    }
+}
@@ -2,6 +2,7 @@ package techniques.PL;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /** A set of utilities for dealing with propositional logic sentences
  *  in conjunctive normal form (CNF). */
@@ -12,30 +13,50 @@ public final class CNF {
   static char wedge = '^';
   static char neg = '~';
 
-  /** Parses a <code>String</code> into a <code>Conjunction</code>. This
-	  Parser does very little error checking.  Unparsable sentences
-	  will either produce garbage or a runtime <code>Exception</code>.
-	  Whitespace is insignificant. */
+  /** Parses a <code>String</code> into a <code>Conjunction</code>.
+	  Unparsable sentences cause a runtime <code>Exception</code>
+	  whose message gives the position of the error.  Whitespace is
+	  insignificant.  Variable names are a letter followed by letters,
+	  digits or underscores, except the lowercase letter
+	  <code>v</code>, which always means disjunction. */
   public static Conjunction parse(String sentence){
-	return parseConjunction(sentence);
+	return parsePacked(sentence).unpack();
+  }
+
+  /** Parses a <code>CharSequence</code> like <code>parse()</code>,
+	  but keeps the clauses in a <code>ClauseArena</code> instead of
+	  building <code>Disjunction</code> objects.  Parsing takes time
+	  linear in the length of <code>sentence</code>. */
+  public static PackedConjunction parsePacked(CharSequence sentence){
+	long start = Metrics.global().beginPhase();
+	PackedConjunction result = new Parser(sentence).parse();
+	Metrics.global().endPhase(Metrics.PARSE, start);
+	return result;
   }
 	
   /** Parses a textfile into a <code>Conjunction</code>. If there is an
 	  IO Error, this method will print an error message and returns
-	  null.  Otherwise, this Parser does very little error checking.
-	  Unparsable sentences will either produce garbage or a runtime
+	  null.  Otherwise, unparsable sentences cause a runtime
 	  <code>Exception</code>.  Whitespace in the file is
-	  insignificant. */
+	  insignificant.  Large files in DIMACS format should be read with
+	  <code>Dimacs.read()</code> instead. */
   public static Conjunction parse(File infile){
 	try{/* read in the file */
 
-	  StringBuffer sb = new StringBuffer();
+	  StringBuilder sb = new StringBuilder((int) Math.min(infile.length(),
+														  Integer.MAX_VALUE - 8));
 	  Reader reader = new BufferedReader(new FileReader(infile));
-	  int c = -1;
+	  char[] buffer = new char[8192];
+	  int n = -1;
 
-	  while((c = reader.read()) != -1)
-		sb.append((char) c);
-	  return parse(sb.toString());
+	  try{
+		while((n = reader.read(buffer)) != -1)
+		  sb.append(buffer, 0, n);
+	  }
+	  finally{
+		reader.close();
+	  }
+	  return parsePacked(sb).unpack();
 	}
 	catch(IOException e){
 	  System.out.println("Error reading file: " + infile);
@@ -43,104 +64,6 @@ public final class CNF {
 	}
   }
 
-  /* attempts to parse a conjunction. */
-  private static Conjunction parseConjunction(String sentence) {
-	sentence = trimParens(sentence);
-	List list = new ArrayList();
-	int index = sentence.indexOf(wedge);
-	
-	if (index == -1){
-	  list.add(parseDisjunction(sentence));
-	  sentence = "";
-	}
-
-	while(index != -1){
-	  list.add(parseDisjunction(sentence.substring(0, index)));
-	  sentence = trimParens(sentence.substring(index+1));
-	  index = sentence.indexOf(wedge);
-	}
-
-	if (!(sentence.length() == 0))
-	  list.add(parseDisjunction(sentence));
-	
-	return new Conjunction(list);
-  }
-	
-  /* attempts to parse a disjunction. */
-  private static Sentence parseDisjunction(String sentence) {
-	sentence = trimParens(sentence);
-	List list = new ArrayList();
-	int index = sentence.indexOf(vee);
-	
-	if (index == -1){
-	  list.add(parseLiteral(sentence));
-	  sentence = "";
-	}
-
-	while(index != -1){
-	  list.add(parseLiteral(sentence.substring(0, index)));
-	  sentence = trimParens(sentence.substring(index+1));
-	  index = sentence.indexOf(vee);
-	}
-
-	if (!(sentence.length() == 0))
-	  list.add(parseLiteral(sentence));
-
-	return new Disjunction(list);
-  }
-
-  /* attempts to parse a Literal.  If none is present, causes a 
-   * runtime exception. */
-  private static Sentence parseLiteral(String sentence){
-	sentence = trimParens(sentence);
-
-	/* error check */
-	if(sentence.length() == 0)
-	  throw new RuntimeException("Parse Error: Missing Variable.");
-	
-	boolean negated = (sentence.charAt(0) == neg);
-
-	if(negated)
-	  sentence = trimParens(sentence.substring(1));
-
-	if(sentence.length() != 1 || !Character.isLetter(sentence.charAt(0)))
-	  throw new RuntimeException("Parse Error: unexpected literal " 
-								 + sentence);
-
-	Variable v = new Variable(sentence.charAt(0));
-	if(negated)
-	  return new Negation(v);
-	else
-	  return v;
-  }
-
-  private static String trimParens(String input){
-	input = input.trim();
-
-	while(input.startsWith("(") && input.endsWith(")")){
-	  int depth = 1;
-	  boolean matched = true;
-	  for(int i = 1; i < input.length()-1; i++){
-		char c = input.charAt(i); 
-		if(c == '(')
-		  depth++;
-		else if (c == ')')
-		  depth--;
-		if(depth == 0)
-		  matched = false;
-	  }
-	  
-	  if(depth == 1 && matched)
-		input = input.substring(1, input.length()-1).trim();
-	  else if (depth == 1)
-		break;
-	  else if (depth != 1)
-		throw new RuntimeException("Parse Error: Parenthesis Mismatch.");
-	}
-
-	return input;
-  }
-
   private static final int NUMVARS = 26;
 
   /** A command-line accessible version of the
@@ -186,13 +109,35 @@ public final class CNF {
   }
 
   /** Returns a randomly generated 3-SAT instance, as a String.  All
-	 sentences are drawn from a world of 26 variables, A-Z.
+	 sentences are drawn from a world of 26 variables, A-Z, and the
+	 three variables of a clause are distinct.
 	 <code>numClauses</code> is the number of disjunctive clauses to
 	 generate. */
   public static String randInstance(int numClauses){
-	StringBuffer sb = new StringBuffer(randDisjunction());
-	for(int i = 1; i < numClauses; i++)
-	  sb.append(" " + CNF.wedge + "\n" + randDisjunction());
+	return randInstance(numClauses, ThreadLocalRandom.current().nextLong());
+  }
+
+  /** Like <code>randInstance(numClauses)</code>, but always returns
+	 the same instance for the same <code>seed</code>.  See
+	 <code>InstanceGenerator</code> for other sizes, planted
+	 solutions and DIMACS output. */
+  public static String randInstance(int numClauses, long seed){
+	ClauseArena arena = new InstanceGenerator(NUMVARS, numClauses, 3, seed).generate();
+	int[] literals = arena.literals();
+	StringBuilder sb = new StringBuilder(numClauses * 16);
+	for(int c = 0; c < numClauses; c++){
+	  if(c > 0)
+		sb.append(' ').append(CNF.wedge).append('\n');
+	  sb.append('(');
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		if(i > arena.clauseStart(c))
+		  sb.append(' ').append(CNF.vee).append(' ');
+		if(ClauseArena.isNegated(literals[i]))
+		  sb.append(CNF.neg);
+		sb.append((char) ('A' + ClauseArena.var(literals[i])));
+	  }
+	  sb.append(')');
+	}
 	return sb.toString();
   }
 
@@ -212,12 +157,12 @@ public final class CNF {
 
   /** Returns true with probability 0.5. */
   public static boolean coinFlip(){
-	return (Math.random() < 0.5);
+	return ThreadLocalRandom.current().nextBoolean();
   }
 
   /** returns a random integer between a and b, inclusive. */
   public static int randInt(int a, int b) {
-	return((int)(Math.floor(Math.random()*(b-a+1))+a));
+	return ThreadLocalRandom.current().nextInt(a, b + 1);
   }
 
 }
@@ -0,0 +1,244 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** A primitive clause database.  All literals are stored as
+    <code>int</code>s in one contiguous array, and a clause is just a
+    range of that array, so a literal costs four bytes instead of a
+    <code>Variable</code> or <code>Negation</code> object.
+
+    <p>Variables are numbered densely from 0.  The positive literal of
+    variable <code>v</code> is encoded as <code>2*v</code> and the
+    negative one as <code>2*v + 1</code>; use <code>literal()</code>,
+    <code>var()</code> and <code>isNegated()</code> rather than relying
+    on the encoding directly.
+
+    <p>Clauses are either added whole with <code>addClause()</code> or
+    streamed with <code>beginClause()</code>, <code>addLiteral()</code>
+    and <code>endClause()</code>, which lets encoders and parsers emit
+    clauses without building intermediate objects.
+
+    <p>For clause sets too large for the heap, see
+    <code>MappedClauseStore</code>. */
+public final class ClauseArena implements ClauseStore, ClauseSink, Cloneable {
+
+  /* the largest array length that is safe to allocate */
+  private static final int MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+  private int[] literals;
+  private int size = 0;
+
+  /* starts[i] is the offset of clause i.  starts[numClauses] is
+   * always equal to size, so clause i ends at starts[i+1]. */
+  private int[] starts;
+  private int numClauses = 0;
+
+  private int numVariables = 0;
+  private boolean open = false;
+
+  /** Constructs an empty arena. */
+  public ClauseArena(){
+	this(16, 64);
+  }
+
+  /** Constructs an empty arena with room for <code>clauses</code>
+      clauses and <code>literals</code> literals before it has to
+      grow. */
+  public ClauseArena(int clauses, int literals){
+	this.literals = new int[Math.max(1, literals)];
+	this.starts = new int[Math.max(1, clauses) + 1];
+  }
+
+  /** Returns an arena whose clauses are the consecutive runs of
+      <code>width</code> literals of <code>literals</code>, with at
+      least <code>variables</code> variables.  The array becomes the
+      backing array of the arena; it is not copied. */
+  public static ClauseArena fixedWidth(int[] literals, int width, int variables){
+	if(width < 1 || literals.length % width != 0)
+	  throw new IllegalArgumentException("Bad clause width: " + width);
+	ClauseArena arena = new ClauseArena(literals.length / width, 1);
+	arena.literals = literals;
+	arena.size = literals.length;
+	arena.numClauses = literals.length / width;
+	for(int c = 1; c <= arena.numClauses; c++)
+	  arena.starts[c] = c * width;
+	int max = variables;
+	for(int i = 0; i < literals.length; i++){
+	  if(literals[i] < 0)
+		throw new IllegalArgumentException("Bad literal: " + literals[i]);
+	  max = Math.max(max, var(literals[i]) + 1);
+	}
+	arena.numVariables = max;
+	return arena;
+  }
+
+  /** Returns the literal of variable <code>var</code>, negated if
+      <code>negated</code> is true. */
+  public static int literal(int var, boolean negated){
+	return (var << 1) | (negated ? 1 : 0);
+  }
+
+  /** Returns the variable of <code>literal</code>. */
+  public static int var(int literal){
+	return literal >>> 1;
+  }
+
+  /** Returns true if <code>literal</code> is a negated variable. */
+  public static boolean isNegated(int literal){
+	return (literal & 1) != 0;
+  }
+
+  /** Returns the complement of <code>literal</code>. */
+  public static int negate(int literal){
+	return literal ^ 1;
+  }
+
+  /** Appends a clause made of all of <code>clause</code> and returns
+      its index. */
+  public int addClause(int[] clause){
+	return addClause(clause, 0, clause.length);
+  }
+
+  /** Appends a clause made of <code>length</code> literals of
+      <code>clause</code> starting at <code>from</code>, and returns
+      its index. */
+  public int addClause(int[] clause, int from, int length){
+	beginClause();
+	ensureLiterals((long) size + length);
+	for(int i = from; i < from + length; i++)
+	  addLiteral(clause[i]);
+	return endClause();
+  }
+
+  /** Starts a new clause.  Literals are appended with
+      <code>addLiteral()</code> until <code>endClause()</code> is
+      called. */
+  public void beginClause(){
+	if(open)
+	  throw new IllegalStateException("Clause already open.");
+	open = true;
+  }
+
+  /** Appends <code>literal</code> to the clause under construction. */
+  public void addLiteral(int literal){
+	if(!open)
+	  throw new IllegalStateException("No open clause.");
+	if(literal < 0)
+	  throw new IllegalArgumentException("Bad literal: " + literal);
+	if(size == literals.length)
+	  ensureLiterals(size + 1);
+	literals[size++] = literal;
+	if(var(literal) >= numVariables)
+	  numVariables = var(literal) + 1;
+  }
+
+  /** Closes the clause under construction and returns its index. */
+  public int endClause(){
+	if(!open)
+	  throw new IllegalStateException("No open clause.");
+	open = false;
+	if(numClauses + 2L > starts.length)
+	  starts = Arrays.copyOf(starts, grow(starts.length, numClauses + 2L, "clauses"));
+	starts[++numClauses] = size;
+	return numClauses - 1;
+  }
+
+  /** Makes sure that variables <code>0</code> to <code>n-1</code> are
+      part of this arena, even if they do not occur in any clause. */
+  public void ensureVariables(int n){
+	numVariables = Math.max(numVariables, n);
+  }
+
+  /** Returns the number of clauses. */
+  public int numClauses(){
+	return numClauses;
+  }
+
+  /** Returns the total number of literals over all clauses. */
+  public int numLiterals(){
+	return starts[numClauses];
+  }
+
+  /** Returns the number of variables, i.e. one more than the largest
+      variable seen so far. */
+  public int numVariables(){
+	return numVariables;
+  }
+
+  /** Returns the offset of the first literal of <code>clause</code>. */
+  public int clauseStart(int clause){
+	return starts[clause];
+  }
+
+  /** Returns the offset just past the last literal of
+      <code>clause</code>. */
+  public int clauseEnd(int clause){
+	return starts[clause + 1];
+  }
+
+  /** Returns the number of literals of <code>clause</code>. */
+  public int clauseSize(int clause){
+	return starts[clause + 1] - starts[clause];
+  }
+
+  public int clauseLiteral(int clause, int i){
+	return literals[starts[clause] + i];
+  }
+
+  /** Returns the literal stored at offset <code>index</code>. */
+  public int literalAt(int index){
+	return literals[index];
+  }
+
+  /** Returns the backing literal array.  Only the offsets below
+      <code>numLiterals()</code> are meaningful.  NOTE: the array is
+      shared, not copied, and it is replaced when the arena grows. */
+  public int[] literals(){
+	return literals;
+  }
+
+  /** Returns the literals of <code>clause</code> as a new array. */
+  public int[] clause(int clause){
+	return Arrays.copyOfRange(literals, starts[clause], starts[clause + 1]);
+  }
+
+  /** Returns an estimate of the heap used by this arena, in bytes. */
+  public long bytes(){
+	return 4L * (literals.length + starts.length);
+  }
+
+  /** Shrinks the backing arrays to the current contents. */
+  public void trimToSize(){
+	literals = Arrays.copyOf(literals, Math.max(1, size));
+	starts = Arrays.copyOf(starts, numClauses + 1);
+  }
+
+  private void ensureLiterals(long capacity){
+	if(capacity > literals.length)
+	  literals = Arrays.copyOf(literals, grow(literals.length, capacity, "literals"));
+  }
+
+  /* the new length of an array of length that must hold needed ints:
+   * twice as long, computed without overflow and capped at the largest
+   * array the VM allows. */
+  private static int grow(int length, long needed, String what){
+	if(needed > MAX_ARRAY)
+	  throw new IllegalStateException("Too many " + what + " for an arena: " + needed);
+	return (int) Math.min(MAX_ARRAY, Math.max(needed, 2L * length));
+  }
+
+  public Object clone(){
+	if(open)
+	  throw new IllegalStateException("Clause still open.");
+	try{
+	  ClauseArena newArena = (ClauseArena) super.clone();
+	  newArena.literals = Arrays.copyOf(literals, Math.max(1, size));
+	  newArena.starts = Arrays.copyOf(starts, numClauses + 1);
+	  return newArena;
+	}
+	catch(CloneNotSupportedException e){
+	  return null; // won't happen
+	}
+  }
+
+}
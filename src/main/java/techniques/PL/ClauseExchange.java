@@ -0,0 +1,76 @@
+package techniques.PL;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/** A lock-free ring buffer through which solvers working on the same
+    clauses share short learned clauses.
+
+    <p>Publishing claims a sequence number with one atomic increment
+    and stores the clause in the slot of that number.  Each consumer
+    remembers how far it has read.  A consumer that falls more than
+    the capacity behind simply loses the oldest clauses, which is
+    harmless: shared clauses only speed the search up. */
+public class ClauseExchange {
+
+  private final AtomicReferenceArray slots;
+  private final int capacity;
+  private final AtomicLong next = new AtomicLong(0);
+  private final AtomicLong published = new AtomicLong(0);
+
+  /* what goes into a slot */
+  private static final class Shared {
+	final long sequence;
+	final int producer;
+	final int[] clause;
+
+	Shared(long sequence, int producer, int[] clause){
+	  this.sequence = sequence;
+	  this.producer = producer;
+	  this.clause = clause;
+	}
+  }
+
+  /** Constructs an exchange keeping the last <code>capacity</code>
+      clauses. */
+  public ClauseExchange(int capacity){
+	this.capacity = capacity;
+	this.slots = new AtomicReferenceArray(capacity);
+  }
+
+  /** Shares <code>clause</code>, which must not be modified
+      afterwards, on behalf of solver <code>producer</code>. */
+  public void publish(int producer, int[] clause){
+	long sequence = next.getAndIncrement();
+	slots.set((int) (sequence % capacity), new Shared(sequence, producer, clause));
+	published.incrementAndGet();
+  }
+
+  /** Adds to <code>out</code> the clauses published by other solvers
+      since <code>cursor</code>, and returns the cursor to pass next
+      time.  Start with a cursor of 0. */
+  public long collect(int consumer, long cursor, List out){
+	long end = next.get();
+	if(end - cursor > capacity)
+	  cursor = end - capacity;
+	for(; cursor < end; cursor++){
+	  Shared shared = (Shared) slots.get((int) (cursor % capacity));
+	  if(shared == null || shared.sequence != cursor){
+		/* not written yet: stop here and retry later, unless it
+		 * has been overwritten already */
+		if(shared == null || shared.sequence < cursor)
+		  break;
+		continue;
+	  }
+	  if(shared.producer != consumer)
+		out.add(shared.clause);
+	}
+	return cursor;
+  }
+
+  /** Returns the number of clauses published so far. */
+  public long getPublished(){
+	return published.get();
+  }
+
+}
@@ -0,0 +1,18 @@
+package techniques.PL;
+
+import java.io.*;
+
+/* Something clauses can be streamed into, a literal at a time:
+ * ClauseArena on the heap, or a MappedClauseStore.Writer on disk.
+ * The DIMACS reader fills either. */
+interface ClauseSink {
+
+  void beginClause() throws IOException;
+
+  void addLiteral(int literal) throws IOException;
+
+  int endClause() throws IOException;
+
+  void ensureVariables(int n);
+
+}
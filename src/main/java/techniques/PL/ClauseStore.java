@@ -0,0 +1,33 @@
+package techniques.PL;
+
+/** Read access to a set of clauses in the literal encoding of
+    <code>ClauseArena</code>, wherever they are kept: on the heap in a
+    <code>ClauseArena</code>, or off the heap in a
+    <code>MappedClauseStore</code>.  <code>Solver</code> and
+    <code>StoredConjunction</code> read their clauses through it.
+
+    <p>Clauses are numbered from 0 to <code>numClauses()-1</code>. */
+public interface ClauseStore {
+
+  /** Returns the number of variables, i.e. one more than the largest
+      variable of any clause, or more. */
+  int numVariables();
+
+  /** Returns the number of clauses. */
+  int numClauses();
+
+  /** Returns the number of literals of <code>clause</code>. */
+  int clauseSize(int clause);
+
+  /** Returns literal <code>i</code> of <code>clause</code>, for
+      <code>i &lt; clauseSize(clause)</code>. */
+  int clauseLiteral(int clause, int i);
+
+  /** Returns the literals of <code>clause</code> as a new array. */
+  int[] clause(int clause);
+
+  /** Returns an estimate of the memory holding the clauses, in
+      bytes. */
+  long bytes();
+
+}
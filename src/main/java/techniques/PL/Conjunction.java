@@ -15,26 +15,30 @@ public class Conjunction extends Sentence {
   
   /** Returns the clauses of this Conjunction. NOTE: mutating the
       returned List will mutate this Conjunction!  Be sure you
-      understand what you are doing if you choose to do this. */
+      understand what you are doing if you choose to do this.  To share
+      clauses without copying, see <code>ImmutableConjunction</code>. */
   public List getClauses(){
 	return clauses;
   }
 
   /** Returns the set of variables used in this Conjunction. */
   public Set getVariables(){
-    Set props = new HashSet();
+	return new VariableSet.Builder().addAll(this).build();
+  }
 
-    Iterator i = clauses.iterator();
+  /* the clauses can be changed through getClauses(), so the set is
+   * not cached; it is built in one pass, without a set per clause. */
+  void collectVariables(VariableSet.Builder builder){
+	Iterator i = clauses.iterator();
 	while(i.hasNext())
-	  props.addAll(((Sentence)i.next()).getVariables());
-	return props;
+	  ((Sentence) i.next()).collectVariables(builder);
   }
   
   public Boolean isSatisfied(Interpretation interpretation){
 	boolean undetermined = false;
 	boolean result = true;
     Iterator i = clauses.iterator();
-	while(i.hasNext()){
+	while(i.hasNext() && result){
 	  Boolean subResult = ((Sentence)i.next()).isSatisfied(interpretation);
 	  if (subResult == null)
 		undetermined |= true;
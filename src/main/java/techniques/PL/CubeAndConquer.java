@@ -0,0 +1,335 @@
+package techniques.PL;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Solves one set of clauses by cube-and-conquer on a pool of worker
+    JVMs on the local machine.  A <code>Cuber</code> first splits the
+    clauses into cubes; the workers (see <code>CubeWorker</code>) then
+    solve the cubes as independent sub-problems, talking to this
+    coordinator over their standard input and output.
+
+    <p>Workers take the next cube as soon as they are done with the
+    last, so fast workers naturally take over the work of slow ones.
+    Each cube is solved under a conflict budget; a cube that exhausts
+    it is split again and its halves go to the front of the queue,
+    where idle workers steal them.  The first satisfiable cube ends the
+    whole search and kills the workers; the clauses are unsatisfiable
+    once every cube has been refuted. */
+public class CubeAndConquer {
+
+  private final ClauseArena arena;
+  private final int workers;
+  private int depth;
+  private int conflictBudget = 20000;
+  private String javaCommand;
+  private String classPath;
+
+  /* shared state of a running solve(), guarded by this */
+  private final LinkedList queue = new LinkedList();
+  private int running = 0;
+  private int liveWorkers = 0;
+  private boolean done = false;
+  private Boolean status;
+  private boolean[] model;
+  private IOException failure;
+  private int nextId = 0;
+  private Process[] processes = new Process[0];
+
+  /* statistics */
+  private int cubesGenerated = 0;
+  private int cubesRefuted = 0;
+  private int splits = 0;
+
+  /* a cube waiting in the queue or being solved */
+  private static final class Cube {
+	final int[] literals;
+	final int budget;
+
+	Cube(int[] literals, int budget){
+	  this.literals = literals;
+	  this.budget = budget;
+	}
+  }
+
+  /** Constructs a coordinator for the clauses of <code>arena</code>
+      with one worker per available processor. */
+  public CubeAndConquer(ClauseArena arena){
+	this(arena, Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Constructs a coordinator for the clauses of <code>arena</code>
+      with <code>workers</code> worker processes.  The arena must not
+      change while <code>solve()</code> runs. */
+  public CubeAndConquer(ClauseArena arena, int workers){
+	if(workers < 1)
+	  throw new IllegalArgumentException("Need at least one worker: " + workers);
+	this.arena = arena;
+	this.workers = workers;
+	/* about eight cubes per worker to start with */
+	this.depth = 3 + 32 - Integer.numberOfLeadingZeros(workers);
+	this.javaCommand = System.getProperty("java.home") + File.separator
+	  + "bin" + File.separator + "java";
+	this.classPath = System.getProperty("java.class.path");
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code>, or <code>null</code> if it is
+      unsatisfiable, using one worker per available processor. */
+  public static Interpretation solve(Conjunction conjunction) throws IOException{
+	PackedConjunction packed = PackedConjunction.pack(conjunction);
+	CubeAndConquer solver = new CubeAndConquer(packed.getArena());
+	if(solver.solve() != Boolean.TRUE)
+	  return null;
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = packed.ids();
+	boolean[] model = solver.getModel();
+	for(int v = 0; v < packed.numVariables(); v++)
+	  interpretation.set(ids[v], model[v]);
+	return interpretation;
+  }
+
+  /** Sets the number of splits of the initial cubes. */
+  public void setDepth(int depth){
+	this.depth = depth;
+  }
+
+  /** Sets the number of conflicts a worker spends on a fresh cube
+      before it is split again.  Each split doubles the budget of the
+      halves. */
+  public void setConflictBudget(int conflicts){
+	conflictBudget = conflicts;
+  }
+
+  /** Sets the <code>java</code> executable and the class path used to
+      start the workers.  By default they are those of this JVM. */
+  public void setWorkerCommand(String javaCommand, String classPath){
+	this.javaCommand = javaCommand;
+	this.classPath = classPath;
+  }
+
+  /** Solves the clauses.  Returns <code>Boolean.TRUE</code> if they
+      are satisfiable (see <code>getModel()</code>),
+      <code>Boolean.FALSE</code> if not, and <code>null</code> if
+      interrupted. */
+  public Boolean solve() throws IOException{
+	return solve(0, TimeUnit.MILLISECONDS);
+  }
+
+  /** Like <code>solve()</code>, but also gives up with
+      <code>null</code> after <code>timeout</code>; a timeout of 0 means
+      no limit. */
+  public Boolean solve(long timeout, TimeUnit unit) throws IOException{
+	long deadline = (timeout > 0) ? System.nanoTime() + unit.toNanos(timeout)
+	  : Long.MAX_VALUE;
+	Cuber cuber = new Cuber(arena);
+	List cubes = cuber.cubes(new int[0], depth);
+	synchronized(this){
+	  queue.clear();
+	  running = 0;
+	  done = false;
+	  status = null;
+	  model = null;
+	  failure = null;
+	  cubesGenerated = cubes.size();
+	  cubesRefuted = 0;
+	  splits = 0;
+	  for(int i = 0; i < cubes.size(); i++)
+		queue.add(new Cube((int[]) cubes.get(i), conflictBudget));
+	  if(queue.isEmpty())
+		return Boolean.FALSE; // refuted by the lookahead alone
+	}
+
+	File file = File.createTempFile("cube", ".cnf");
+	try{
+	  Dimacs.write(arena, file);
+	  int n = Math.min(workers, cubes.size());
+	  synchronized(this){
+		processes = new Process[n];
+		liveWorkers = n;
+	  }
+	  for(int i = 0; i < n; i++){
+		ProcessBuilder builder = new ProcessBuilder(javaCommand, "-cp", classPath,
+													CubeWorker.class.getName(),
+													file.getAbsolutePath());
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Process process = builder.start();
+		synchronized(this){
+		  processes[i] = process;
+		}
+		final Cuber own = (i == 0) ? cuber : null;
+		Thread thread = new Thread("cube-coordinator-" + i){
+			public void run(){
+			  serve(process, own);
+			}
+		  };
+		thread.setDaemon(true);
+		thread.start();
+	  }
+
+	  synchronized(this){
+		while(!done){
+		  long left = deadline - System.nanoTime();
+		  if(left <= 0)
+			break;
+		  try{
+			TimeUnit.NANOSECONDS.timedWait(this, left);
+		  }
+		  catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			break;
+		  }
+		}
+		done = true;
+		notifyAll();
+		if(status == null && failure != null)
+		  throw failure;
+		return status;
+	  }
+	}
+	finally{
+	  stopWorkers();
+	  file.delete();
+	}
+  }
+
+  /** Asks a running <code>solve()</code> to give up as soon as
+      possible.  May be called from any thread. */
+  public synchronized void interrupt(){
+	done = true;
+	notifyAll();
+  }
+
+  /** Returns a copy of the model found by the last successful
+      <code>solve()</code>, indexed by arena variable. */
+  public synchronized boolean[] getModel(){
+	return model.clone();
+  }
+
+  /** Returns the number of cubes the lookahead produced at first. */
+  public synchronized int getCubesGenerated(){
+	return cubesGenerated;
+  }
+
+  /** Returns the number of cubes the workers refuted. */
+  public synchronized int getCubesRefuted(){
+	return cubesRefuted;
+  }
+
+  /** Returns the number of cubes that had to be split again. */
+  public synchronized int getSplits(){
+	return splits;
+  }
+
+  /* feeds one worker until the search is over.  Each worker thread
+   * splits the cubes its worker gives up on with its own Cuber. */
+  private void serve(Process process, Cuber cuber){
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+	DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+	Cube cube = null;
+	try{
+	  while(true){
+		int id;
+		synchronized(this){
+		  while(queue.isEmpty() && !done)
+			wait();
+		  if(done)
+			break;
+		  cube = (Cube) queue.removeFirst();
+		  id = nextId++;
+		  running++;
+		}
+
+		out.writeInt(CubeWorker.CUBE);
+		out.writeInt(id);
+		out.writeInt(cube.budget);
+		out.writeInt(cube.literals.length);
+		for(int i = 0; i < cube.literals.length; i++)
+		  out.writeInt(cube.literals[i]);
+		out.flush();
+
+		if(in.readInt() != id)
+		  throw new IOException("Cube worker answered out of order");
+		int answer = in.readInt();
+		boolean[] found = null;
+		List halves = null;
+		if(answer == CubeWorker.SAT){
+		  found = new boolean[in.readInt()];
+		  byte[] packed = new byte[(found.length + 7) / 8];
+		  in.readFully(packed);
+		  for(int v = 0; v < found.length; v++)
+			found[v] = (packed[v >> 3] & (1 << (v & 7))) != 0;
+		}
+		else if(answer == CubeWorker.UNKNOWN){
+		  if(cuber == null)
+			cuber = new Cuber(arena);
+		  halves = cuber.split(cube.literals);
+		}
+
+		synchronized(this){
+		  running--;
+		  if(found != null){
+			status = Boolean.TRUE;
+			model = found;
+			done = true;
+		  }
+		  else if(halves == null || halves.isEmpty())
+			cubesRefuted++;
+		  else if(halves.size() == 1
+				  && ((int[]) halves.get(0)).length == cube.literals.length)
+			/* nothing left to split on: let the worker finish it */
+			queue.addFirst(new Cube(cube.literals, -1));
+		  else{
+			splits++;
+			int budget = (cube.budget < 0) ? -1 : 2 * cube.budget;
+			for(int i = halves.size() - 1; i >= 0; i--)
+			  queue.addFirst(new Cube((int[]) halves.get(i), budget));
+		  }
+		  cube = null;
+		  if(!done && queue.isEmpty() && running == 0){
+			status = Boolean.FALSE;
+			done = true;
+		  }
+		  notifyAll();
+		}
+	  }
+	  out.writeInt(CubeWorker.STOP);
+	  out.flush();
+	}
+	catch(IOException e){
+	  workerFailed(cube, e);
+	}
+	catch(InterruptedException e){
+	  workerFailed(cube, null);
+	}
+  }
+
+  /* puts the cube of a dead worker back for the others, and gives up
+   * when no worker is left. */
+  private synchronized void workerFailed(Cube cube, IOException e){
+	liveWorkers--;
+	if(done)
+	  return;
+	if(cube != null){
+	  running--;
+	  queue.addFirst(cube);
+	}
+	if(liveWorkers == 0){
+	  failure = (e != null) ? e : new IOException("All cube workers stopped");
+	  done = true;
+	}
+	notifyAll();
+  }
+
+  private void stopWorkers(){
+	Process[] all;
+	synchronized(this){
+	  all = processes;
+	}
+	for(int i = 0; i < all.length; i++)
+	  if(all[i] != null)
+		all[i].destroy();
+  }
+
+}
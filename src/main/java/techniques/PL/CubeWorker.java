@@ -0,0 +1,80 @@
+package techniques.PL;
+
+import java.io.*;
+
+/** The worker process of <code>CubeAndConquer</code>.  It reads the
+    clauses from the DIMACS file named on its command line, then solves
+    the cubes the coordinator sends on standard input one at a time and
+    answers each on standard output.  One <code>Solver</code> is kept
+    for all cubes, so what it learns on one cube speeds up the next.
+
+    <p>Every message is a sequence of big-endian ints.  The coordinator
+    sends either <code>CUBE id budget n lit1 ... litn</code>, where the
+    budget is a conflict limit (negative for none), or
+    <code>STOP</code>.  The worker answers <code>id status</code>, and
+    for <code>SAT</code> follows it with the number of variables and
+    the model packed eight variables to a byte. */
+public class CubeWorker {
+
+  /** Message codes from the coordinator. */
+  static final int CUBE = 1;
+  static final int STOP = 2;
+
+  /** Answers of the worker. */
+  static final int UNSAT = 0;
+  static final int SAT = 1;
+  static final int UNKNOWN = 2;
+
+  private CubeWorker(){
+  }
+
+  public static void main(String[] args) throws IOException{
+	if(args.length != 1){
+	  System.err.println("usage: CubeWorker file.cnf");
+	  System.exit(2);
+	}
+	Solver solver = new Solver(Dimacs.readArena(new File(args[0])));
+	DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(System.out));
+
+	while(true){
+	  int op;
+	  try{
+		op = in.readInt();
+	  }
+	  catch(EOFException e){
+		return; // the coordinator went away
+	  }
+	  if(op == STOP)
+		return;
+	  if(op != CUBE)
+		throw new IOException("Unknown message " + op);
+
+	  int id = in.readInt();
+	  int budget = in.readInt();
+	  int[] cube = new int[in.readInt()];
+	  for(int i = 0; i < cube.length; i++)
+		cube[i] = in.readInt();
+
+	  solver.setConflictBudget(budget);
+	  Boolean result = solver.solve(cube);
+	  out.writeInt(id);
+	  if(result == null)
+		out.writeInt(UNKNOWN);
+	  else if(result == Boolean.FALSE)
+		out.writeInt(UNSAT);
+	  else{
+		out.writeInt(SAT);
+		boolean[] model = solver.getModel();
+		byte[] packed = new byte[(model.length + 7) / 8];
+		for(int v = 0; v < model.length; v++)
+		  if(model[v])
+			packed[v >> 3] |= (byte) (1 << (v & 7));
+		out.writeInt(model.length);
+		out.write(packed);
+	  }
+	  out.flush();
+	}
+  }
+
+}
@@ -0,0 +1,299 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** Splits the clauses of a <code>ClauseArena</code> into cubes: sets
+    of literals such that every satisfying assignment extends at least
+    one of them.  Each cube is an independent sub-problem that can be
+    handed to <code>Solver.solve(int[])</code> as assumptions.
+
+    <p>The cubes are chosen by lookahead.  At each node the most
+    frequent free variables are tried both ways with unit propagation,
+    and the one whose two branches assign the most variables becomes
+    the next split.  A branch that propagates to a conflict is a failed
+    literal: its opposite is added to the cube instead of a split, and
+    if both branches fail the node is dropped.  So the cubes come out
+    balanced and already pruned.
+
+    <p>A <code>Cuber</code> is not safe for use by several threads at
+    once. */
+public class Cuber {
+
+  /* literal values, indexed by literal */
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+  private static final byte UNDEF = 0;
+
+  /** The number of free variables tried at each node. */
+  public static final int CANDIDATES = 32;
+
+  private final int numVars;
+  /* the clauses without repeated literals or tautologies */
+  private final ClauseArena clauses;
+  /* clauses of literal p are occurs[occursStart[p] .. occursStart[p+1]) */
+  private final int[] occursStart;
+  private final int[] occurs;
+
+  private final byte[] values;
+  private final int[] trueCount;
+  private final int[] falseCount;
+  private final int[] trail;
+  private int trailSize = 0;
+  private int qhead = 0;
+  /* true if the clauses propagate to a conflict on their own */
+  private boolean refuted = false;
+
+  /** Constructs a cuber for the clauses of <code>arena</code>.  The
+      arena is copied. */
+  public Cuber(ClauseArena arena){
+	numVars = arena.numVariables();
+	clauses = new ClauseArena(arena.numClauses(), arena.numLiterals());
+	clauses.ensureVariables(numVars);
+	int[] stamp = new int[2 * numVars];
+	int[] lits = new int[16];
+	for(int c = 0; c < arena.numClauses(); c++){
+	  if(lits.length < arena.clauseSize(c))
+		lits = new int[arena.clauseSize(c)];
+	  int n = 0;
+	  boolean tautology = false;
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		int p = arena.literalAt(i);
+		if(stamp[ClauseArena.negate(p)] == c + 1)
+		  tautology = true;
+		if(stamp[p] != c + 1){
+		  stamp[p] = c + 1;
+		  lits[n++] = p;
+		}
+	  }
+	  if(!tautology)
+		clauses.addClause(lits, 0, n);
+	}
+	clauses.trimToSize();
+
+	occursStart = new int[2 * numVars + 1];
+	int[] literals = clauses.literals();
+	for(int i = 0; i < clauses.numLiterals(); i++)
+	  occursStart[literals[i] + 1]++;
+	for(int p = 0; p < 2 * numVars; p++)
+	  occursStart[p + 1] += occursStart[p];
+	occurs = new int[clauses.numLiterals()];
+	int[] fill = Arrays.copyOf(occursStart, 2 * numVars);
+	for(int c = 0; c < clauses.numClauses(); c++)
+	  for(int i = clauses.clauseStart(c); i < clauses.clauseEnd(c); i++)
+		occurs[fill[literals[i]]++] = c;
+
+	values = new byte[2 * numVars];
+	trueCount = new int[clauses.numClauses()];
+	falseCount = new int[clauses.numClauses()];
+	trail = new int[numVars];
+
+	/* the unit clauses hold at the root */
+	for(int c = 0; c < clauses.numClauses() && !refuted; c++){
+	  if(clauses.clauseSize(c) == 0)
+		refuted = true;
+	  else if(clauses.clauseSize(c) == 1){
+		int p = literals[clauses.clauseStart(c)];
+		if(values[p] == FALSE)
+		  refuted = true;
+		else if(values[p] == UNDEF)
+		  assign(p);
+	  }
+	}
+	refuted = refuted || !propagate();
+  }
+
+  /** Returns cubes of at most <code>depth</code> splits that extend
+      <code>base</code> and together cover all its satisfying
+      assignments.  Each cube starts with the literals of
+      <code>base</code>.  An empty list means that <code>base</code>
+      cannot be satisfied; a single cube equal to <code>base</code>
+      means that there was nothing left to split on. */
+  public List cubes(int[] base, int depth){
+	List result = new ArrayList();
+	if(refuted)
+	  return result;
+	int root = trailSize;
+	IntVec path = new IntVec();
+	boolean consistent = true;
+	for(int i = 0; i < base.length && consistent; i++){
+	  path.push(base[i]);
+	  consistent = assume(base[i]);
+	}
+	if(consistent)
+	  split(depth, path, result);
+	undo(root);
+	return result;
+  }
+
+  /** Splits <code>cube</code> once, into at most two cubes. */
+  public List split(int[] cube){
+	return cubes(cube, 1);
+  }
+
+  /* adds the cubes below the current node to result. */
+  private void split(int depth, IntVec path, List result){
+	int mark = trailSize;
+	int pathSize = path.size();
+	int best = -1;
+
+	while(depth > 0){
+	  /* look ahead on the candidates; a failed literal fixes its
+	   * variable and starts the round over */
+	  int[] candidates = candidates();
+	  best = -1;
+	  long bestScore = -1;
+	  boolean fixed = false;
+	  for(int i = 0; i < candidates.length && !fixed; i++){
+		int v = candidates[i];
+		if(values[2 * v] != UNDEF)
+		  continue;
+		int positive = lookahead(ClauseArena.literal(v, false));
+		int negative = lookahead(ClauseArena.literal(v, true));
+		if(positive < 0 && negative < 0){
+		  restore(path, pathSize, mark);
+		  return; // refuted
+		}
+		if(positive < 0 || negative < 0){
+		  int p = ClauseArena.literal(v, positive < 0);
+		  path.push(p);
+		  if(!assume(p)){
+			restore(path, pathSize, mark);
+			return;
+		  }
+		  fixed = true;
+		}
+		else{
+		  long score = (long) (positive + 1) * (negative + 1);
+		  if(score > bestScore){
+			bestScore = score;
+			best = v;
+		  }
+		}
+	  }
+	  if(!fixed)
+		break;
+	}
+
+	if(best == -1)
+	  result.add(path.toArray());
+	else{
+	  for(int side = 0; side < 2; side++){
+		int p = ClauseArena.literal(best, side == 1);
+		int branchMark = trailSize;
+		path.push(p);
+		if(assume(p))
+		  split(depth - 1, path, result);
+		path.shrink(path.size() - 1);
+		undo(branchMark);
+	  }
+	}
+	restore(path, pathSize, mark);
+  }
+
+  private void restore(IntVec path, int pathSize, int mark){
+	path.shrink(pathSize);
+	undo(mark);
+  }
+
+  /* returns the number of variables assigning p implies, or -1 if it
+   * leads to a conflict.  Leaves the assignment unchanged. */
+  private int lookahead(int p){
+	int mark = trailSize;
+	boolean consistent = assume(p);
+	int implied = trailSize - mark;
+	undo(mark);
+	return consistent ? implied : -1;
+  }
+
+  /* the free variables occurring most often in clauses that are not
+   * yet satisfied, at most CANDIDATES of them. */
+  private int[] candidates(){
+	int[] score = new int[numVars];
+	int[] literals = clauses.literals();
+	for(int c = 0; c < clauses.numClauses(); c++){
+	  if(trueCount[c] > 0)
+		continue;
+	  for(int i = clauses.clauseStart(c); i < clauses.clauseEnd(c); i++)
+		if(values[literals[i]] == UNDEF)
+		  score[ClauseArena.var(literals[i])]++;
+	}
+	/* a small bounded selection instead of sorting every variable */
+	int[] best = new int[CANDIDATES];
+	int n = 0;
+	for(int v = 0; v < numVars; v++){
+	  if(score[v] == 0)
+		continue;
+	  if(n == best.length && score[best[n - 1]] >= score[v])
+		continue;
+	  int k = (n < best.length) ? n++ : n - 1;
+	  while(k > 0 && score[best[k - 1]] < score[v]){
+		best[k] = best[k - 1];
+		k--;
+	  }
+	  best[k] = v;
+	}
+	return Arrays.copyOf(best, n);
+  }
+
+  /* assigns p and propagates.  Returns false on a conflict, leaving
+   * the partial assignment for undo() to take back. */
+  private boolean assume(int p){
+	if(values[p] == TRUE)
+	  return true;
+	if(values[p] == FALSE)
+	  return false;
+	assign(p);
+	return propagate();
+  }
+
+  private void assign(int p){
+	values[p] = TRUE;
+	values[ClauseArena.negate(p)] = FALSE;
+	trail[trailSize++] = p;
+	for(int i = occursStart[p]; i < occursStart[p + 1]; i++)
+	  trueCount[occurs[i]]++;
+	int q = ClauseArena.negate(p);
+	for(int i = occursStart[q]; i < occursStart[q + 1]; i++)
+	  falseCount[occurs[i]]++;
+  }
+
+  private boolean propagate(){
+	int[] literals = clauses.literals();
+	while(qhead < trailSize){
+	  int q = ClauseArena.negate(trail[qhead++]);
+	  for(int i = occursStart[q]; i < occursStart[q + 1]; i++){
+		int c = occurs[i];
+		if(trueCount[c] > 0)
+		  continue;
+		int free = clauses.clauseSize(c) - falseCount[c];
+		if(free == 0){
+		  qhead = trailSize;
+		  return false;
+		}
+		if(free == 1){
+		  for(int k = clauses.clauseStart(c); k < clauses.clauseEnd(c); k++)
+			if(values[literals[k]] == UNDEF){
+			  assign(literals[k]);
+			  break;
+			}
+		}
+	  }
+	}
+	return true;
+  }
+
+  private void undo(int mark){
+	while(trailSize > mark){
+	  int p = trail[--trailSize];
+	  values[p] = UNDEF;
+	  values[ClauseArena.negate(p)] = UNDEF;
+	  for(int i = occursStart[p]; i < occursStart[p + 1]; i++)
+		trueCount[occurs[i]]--;
+	  int q = ClauseArena.negate(p);
+	  for(int i = occursStart[q]; i < occursStart[q + 1]; i++)
+		falseCount[occurs[i]]--;
+	}
+	qhead = Math.min(qhead, trailSize);
+  }
+
+}
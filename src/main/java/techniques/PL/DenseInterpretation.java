@@ -0,0 +1,370 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** An <code>Interpretation</code> backed by a byte array indexed by
+    <code>Variable.getId()</code> instead of a hash table.  Looking up
+    a variable is an array access and values are never boxed beyond
+    the shared <code>Boolean.TRUE</code> and
+    <code>Boolean.FALSE</code>.
+
+    <p>It still obeys the <code>Map</code> interface, with the same
+    rules as <code>Interpretation</code>: keys must be
+    <code>Variable</code>s and values must be <code>Boolean</code>s or
+    <code>null</code>.  The views returned by <code>keySet()</code>,
+    <code>values()</code> and <code>entrySet()</code> support removal
+    but are not backed by the array for additions. */
+public class DenseInterpretation extends Interpretation {
+
+  /** Values returned by <code>value()</code>. */
+  public static final byte UNASSIGNED = 0;
+  public static final byte FALSE = 1;
+  public static final byte TRUE = 2;
+  /* mapped, but to null */
+  private static final byte NULL = 3;
+
+  private byte[] values;
+  private int size = 0;
+
+  /** Constructs an empty interpretation. */
+  public DenseInterpretation(){
+	values = new byte[Math.max(16, Variable.numIds())];
+  }
+
+  /** Constructs an interpretation with the mappings of
+      <code>m</code>. */
+  public DenseInterpretation(Map m){
+	this();
+	putAll(m);
+  }
+
+  /** Returns <code>TRUE</code>, <code>FALSE</code> or
+      <code>UNASSIGNED</code> for the variable with id
+      <code>id</code>.  A variable mapped to <code>null</code> counts
+      as unassigned. */
+  public byte value(int id){
+	if(id >= values.length)
+	  return UNASSIGNED;
+	byte b = values[id];
+	return (b == NULL) ? UNASSIGNED : b;
+  }
+
+  /** Assigns <code>value</code> to the variable with id
+      <code>id</code>. */
+  public void set(int id, boolean value){
+	ensure(id);
+	if(values[id] == UNASSIGNED)
+	  size++;
+	values[id] = value ? TRUE : FALSE;
+  }
+
+  /** Removes the variable with id <code>id</code>. */
+  public void unset(int id){
+	if(id < values.length && values[id] != UNASSIGNED){
+	  values[id] = UNASSIGNED;
+	  size--;
+	}
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* java.util.Map */
+
+  public int size(){
+	return size;
+  }
+
+  public boolean isEmpty(){
+	return size == 0;
+  }
+
+  public boolean containsKey(Object key){
+	if(!(key instanceof Variable))
+	  return false;
+	int id = ((Variable) key).getId();
+	return id < values.length && values[id] != UNASSIGNED;
+  }
+
+  public boolean containsValue(Object value){
+	byte wanted = encode(value);
+	for(int id = 0; id < values.length; id++)
+	  if(values[id] == wanted)
+		return true;
+	return false;
+  }
+
+  public Object get(Object key){
+	if(!(key instanceof Variable))
+	  return null;
+	int id = ((Variable) key).getId();
+	return (id < values.length) ? decode(values[id]) : null;
+  }
+
+  public Object put(Object key, Object value){
+	int id = ((Variable) key).getId();
+	byte b = encode(value);
+	ensure(id);
+	Object old = decode(values[id]);
+	if(values[id] == UNASSIGNED)
+	  size++;
+	values[id] = b;
+	return old;
+  }
+
+  public Object remove(Object key){
+	if(!containsKey(key))
+	  return null;
+	int id = ((Variable) key).getId();
+	Object old = decode(values[id]);
+	values[id] = UNASSIGNED;
+	size--;
+	return old;
+  }
+
+  public void putAll(Map m){
+	Iterator i = m.entrySet().iterator();
+	while(i.hasNext()){
+	  Map.Entry e = (Map.Entry) i.next();
+	  put(e.getKey(), e.getValue());
+	}
+  }
+
+  public void clear(){
+	Arrays.fill(values, UNASSIGNED);
+	size = 0;
+  }
+
+  public Object getOrDefault(Object key, Object defaultValue){
+	return containsKey(key) ? get(key) : defaultValue;
+  }
+
+  public Object putIfAbsent(Object key, Object value){
+	Object old = get(key);
+	if(old == null)
+	  put(key, value);
+	return old;
+  }
+
+  public boolean remove(Object key, Object value){
+	if(!containsKey(key) || !eq(get(key), value))
+	  return false;
+	remove(key);
+	return true;
+  }
+
+  public boolean replace(Object key, Object oldValue, Object newValue){
+	if(!containsKey(key) || !eq(get(key), oldValue))
+	  return false;
+	put(key, newValue);
+	return true;
+  }
+
+  public Object replace(Object key, Object value){
+	return containsKey(key) ? put(key, value) : null;
+  }
+
+  public Object computeIfAbsent(Object key,
+								java.util.function.Function function){
+	Object value = get(key);
+	if(value == null){
+	  value = function.apply(key);
+	  if(value != null)
+		put(key, value);
+	}
+	return value;
+  }
+
+  public Object computeIfPresent(Object key,
+								 java.util.function.BiFunction function){
+	Object value = get(key);
+	if(value == null)
+	  return null;
+	return store(key, function.apply(key, value));
+  }
+
+  public Object compute(Object key, java.util.function.BiFunction function){
+	return store(key, function.apply(key, get(key)));
+  }
+
+  public Object merge(Object key, Object value,
+					  java.util.function.BiFunction function){
+	Object old = get(key);
+	return store(key, (old == null) ? value : function.apply(old, value));
+  }
+
+  public void forEach(java.util.function.BiConsumer action){
+	for(int id = 0; id < values.length; id++)
+	  if(values[id] != UNASSIGNED)
+		action.accept(Variable.forId(id), decode(values[id]));
+  }
+
+  public void replaceAll(java.util.function.BiFunction function){
+	for(int id = 0; id < values.length; id++)
+	  if(values[id] != UNASSIGNED)
+		values[id] = encode(function.apply(Variable.forId(id),
+										   decode(values[id])));
+  }
+
+  public Set keySet(){
+	return new AbstractSet(){
+		public Iterator iterator(){
+		  return new Ids(){
+			  Object next(int id){
+				return Variable.forId(id);
+			  }
+			};
+		}
+		public int size(){
+		  return size;
+		}
+		public boolean contains(Object o){
+		  return containsKey(o);
+		}
+		public boolean remove(Object o){
+		  boolean present = containsKey(o);
+		  DenseInterpretation.this.remove(o);
+		  return present;
+		}
+	  };
+  }
+
+  public Collection values(){
+	return new AbstractCollection(){
+		public Iterator iterator(){
+		  return new Ids(){
+			  Object next(int id){
+				return decode(values[id]);
+			  }
+			};
+		}
+		public int size(){
+		  return size;
+		}
+	  };
+  }
+
+  public Set entrySet(){
+	return new AbstractSet(){
+		public Iterator iterator(){
+		  return new Ids(){
+			  Object next(int id){
+				return new Entry(id);
+			  }
+			};
+		}
+		public int size(){
+		  return size;
+		}
+	  };
+  }
+
+  public Object clone(){
+	DenseInterpretation newInterpretation = (DenseInterpretation) super.clone();
+	newInterpretation.values = values.clone();
+	return newInterpretation;
+  }
+
+  /* ---------------------------------------------------------------- */
+
+  /* puts value, or removes key if value is null, as compute() does. */
+  private Object store(Object key, Object value){
+	if(value == null)
+	  remove(key);
+	else
+	  put(key, value);
+	return value;
+  }
+
+  private void ensure(int id){
+	if(id >= values.length)
+	  values = Arrays.copyOf(values, Math.max(id + 1, 2 * values.length));
+  }
+
+  private static byte encode(Object value){
+	if(value == null)
+	  return NULL;
+	return ((Boolean) value).booleanValue() ? TRUE : FALSE;
+  }
+
+  private static Boolean decode(byte b){
+	if(b == TRUE)
+	  return Boolean.TRUE;
+	return (b == FALSE) ? Boolean.FALSE : null;
+  }
+
+  private static boolean eq(Object a, Object b){
+	return (a == null) ? b == null : a.equals(b);
+  }
+
+  /* iterates over the assigned ids. */
+  private abstract class Ids implements Iterator {
+	private int next = advance(0);
+	private int last = -1;
+
+	abstract Object next(int id);
+
+	private int advance(int id){
+	  while(id < values.length && values[id] == UNASSIGNED)
+		id++;
+	  return id;
+	}
+
+	public boolean hasNext(){
+	  return next < values.length;
+	}
+
+	public Object next(){
+	  if(!hasNext())
+		throw new NoSuchElementException();
+	  last = next;
+	  next = advance(next + 1);
+	  return next(last);
+	}
+
+	public void remove(){
+	  if(last < 0 || values[last] == UNASSIGNED)
+		throw new IllegalStateException();
+	  unset(last);
+	}
+  }
+
+  private class Entry implements Map.Entry {
+	private final int id;
+
+	Entry(int id){
+	  this.id = id;
+	}
+
+	public Object getKey(){
+	  return Variable.forId(id);
+	}
+
+	public Object getValue(){
+	  return decode(values[id]);
+	}
+
+	public Object setValue(Object value){
+	  Object old = getValue();
+	  if(values[id] == UNASSIGNED)
+		size++;
+	  values[id] = encode(value);
+	  return old;
+	}
+
+	public boolean equals(Object o){
+	  if(!(o instanceof Map.Entry))
+		return false;
+	  Map.Entry e = (Map.Entry) o;
+	  return getKey().equals(e.getKey()) && eq(getValue(), e.getValue());
+	}
+
+	public int hashCode(){
+	  Object value = getValue();
+	  return getKey().hashCode() ^ ((value == null) ? 0 : value.hashCode());
+	}
+
+	public String toString(){
+	  return getKey() + "=" + getValue();
+	}
+  }
+
+}
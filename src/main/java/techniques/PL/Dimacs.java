@@ -0,0 +1,346 @@
+package techniques.PL;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/** Reads and writes sentences in the DIMACS CNF format used by SAT
+    competitions:
+
+    <pre>
+    c a comment
+    p cnf 3 2
+    1 -3 0
+    2 3 -1 0
+    </pre>
+
+    <p>Unlike <code>CNF.parse(File)</code>, the reader works on raw
+    bytes and turns the numbers straight into <code>ClauseArena</code>
+    literals, so its running time is linear in the size of the input
+    and it creates no <code>String</code>s.  Files are read through a
+    memory mapping, one window at a time, so files larger than 2GB can
+    be read as well.  DIMACS variable <code>n</code> becomes arena
+    variable <code>n-1</code>, named <code>xn</code>. */
+public final class Dimacs {
+
+  /* size of the mapped windows and of the streaming buffers */
+  private static final long WINDOW = 1L << 28;
+  private static final int BUFFER = 1 << 16;
+
+  private Dimacs(){
+  }
+
+  /** Reads a DIMACS file into a <code>PackedConjunction</code>. */
+  public static PackedConjunction read(File file) throws IOException{
+	return conjunction(readArena(file));
+  }
+
+  /** Reads DIMACS from a stream into a
+      <code>PackedConjunction</code>.  The stream is not closed. */
+  public static PackedConjunction read(InputStream in) throws IOException{
+	return conjunction(readArena(Channels.newChannel(in)));
+  }
+
+  /** Reads a DIMACS file into a <code>ClauseArena</code> through a
+      memory mapping. */
+  public static ClauseArena readArena(File file) throws IOException{
+	long start = Metrics.global().beginPhase();
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try{
+	  FileChannel channel = raf.getChannel();
+	  ClauseArena arena = newArena(channel.size());
+	  read(channel, arena);
+	  arena.trimToSize();
+	  return arena;
+	}
+	finally{
+	  raf.close();
+	  Metrics.global().endPhase(Metrics.PARSE, start);
+	}
+  }
+
+  /** Reads a DIMACS file into a new <code>MappedClauseStore</code> in
+      <code>store</code>, without holding the clauses on the heap.  The
+      store can later be reopened with
+      <code>MappedClauseStore.open()</code> instead of parsing the
+      DIMACS file again. */
+  public static MappedClauseStore readStore(File file, File store) throws IOException{
+	long start = Metrics.global().beginPhase();
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	MappedClauseStore.Writer writer = new MappedClauseStore.Writer(store);
+	try{
+	  read(raf.getChannel(), writer);
+	  return writer.finish();
+	}
+	finally{
+	  writer.close();
+	  raf.close();
+	  Metrics.global().endPhase(Metrics.PARSE, start);
+	}
+  }
+
+  /* feeds the whole of channel to sink, a mapped window at a time. */
+  private static void read(FileChannel channel, ClauseSink sink) throws IOException{
+	long size = channel.size();
+	ByteParser parser = new ByteParser(sink);
+	for(long position = 0; position < size && !parser.done; position += WINDOW){
+	  long length = Math.min(WINDOW, size - position);
+	  parser.feed(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+	}
+	parser.finish();
+  }
+
+  /* an arena sized for a DIMACS file of sizeHint bytes: a literal
+   * takes at least two bytes, about 3.5 per clause. */
+  private static ClauseArena newArena(long sizeHint){
+	int literals = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, sizeHint / 4));
+	return new ClauseArena(Math.max(16, literals / 4), literals);
+  }
+
+  /** Reads DIMACS from <code>channel</code> into a
+      <code>ClauseArena</code>.  The channel is not closed. */
+  public static ClauseArena readArena(ReadableByteChannel channel)
+	throws IOException{
+	long start = Metrics.global().beginPhase();
+	ClauseArena arena = newArena(0);
+	ByteParser parser = new ByteParser(arena);
+	ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER);
+	while(!parser.done && channel.read(buffer) != -1){
+	  buffer.flip();
+	  parser.feed(buffer);
+	  buffer.clear();
+	}
+	parser.finish();
+	arena.trimToSize();
+	Metrics.global().endPhase(Metrics.PARSE, start);
+	return arena;
+  }
+
+  /** Writes <code>conjunction</code> to <code>file</code> in DIMACS
+      format.  Variables are numbered as in
+      <code>PackedConjunction.pack()</code>. */
+  public static void write(Conjunction conjunction, File file)
+	throws IOException{
+	write(PackedConjunction.pack(conjunction).getArena(), file);
+  }
+
+  /** Writes the clauses of <code>arena</code> to <code>file</code> in
+      DIMACS format. */
+  public static void write(ClauseArena arena, File file) throws IOException{
+	FileOutputStream out = new FileOutputStream(file);
+	try{
+	  write(arena, out.getChannel());
+	}
+	finally{
+	  out.close();
+	}
+  }
+
+  /** Writes the clauses of <code>arena</code> to <code>out</code> in
+      DIMACS format.  The stream is not closed. */
+  public static void write(ClauseArena arena, OutputStream out)
+	throws IOException{
+	write(arena, Channels.newChannel(out));
+	out.flush();
+  }
+
+  /** Writes the clauses of <code>arena</code> to <code>channel</code>
+      in DIMACS format.  The channel is not closed. */
+  public static void write(ClauseArena arena, WritableByteChannel channel)
+	throws IOException{
+	ByteBuffer buffer = ByteBuffer.allocate(BUFFER);
+	buffer.put(("p cnf " + arena.numVariables() + " "
+				+ arena.numClauses() + "\n").getBytes("US-ASCII"));
+	int[] literals = arena.literals();
+	for(int c = 0; c < arena.numClauses(); c++){
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		if(buffer.remaining() < 16)
+		  drain(buffer, channel);
+		int lit = literals[i];
+		int n = ClauseArena.var(lit) + 1;
+		putInt(buffer, ClauseArena.isNegated(lit) ? -n : n);
+		buffer.put((byte) ' ');
+	  }
+	  if(buffer.remaining() < 16)
+		drain(buffer, channel);
+	  buffer.put((byte) '0');
+	  buffer.put((byte) '\n');
+	}
+	drain(buffer, channel);
+  }
+
+  /** Returns the DIMACS number of <code>literal</code>. */
+  public static int toDimacs(int literal){
+	int n = ClauseArena.var(literal) + 1;
+	return ClauseArena.isNegated(literal) ? -n : n;
+  }
+
+  /** Returns the arena literal of DIMACS number <code>n</code>, which
+      must not be 0. */
+  public static int fromDimacs(int n){
+	return (n < 0) ? ClauseArena.literal(-n - 1, true)
+	  : ClauseArena.literal(n - 1, false);
+  }
+
+  private static PackedConjunction conjunction(ClauseArena arena){
+	Variable[] variables = new Variable[arena.numVariables()];
+	for(int v = 0; v < variables.length; v++)
+	  variables[v] = new Variable("x" + (v + 1));
+	return new PackedConjunction(arena, variables);
+  }
+
+  private static void drain(ByteBuffer buffer, WritableByteChannel channel)
+	throws IOException{
+	buffer.flip();
+	while(buffer.hasRemaining())
+	  channel.write(buffer);
+	buffer.clear();
+  }
+
+  /* writes n in decimal without going through a String. */
+  static void putInt(ByteBuffer buffer, int n){
+	if(n < 0){
+	  buffer.put((byte) '-');
+	  n = -n;
+	}
+	int digits = 1;
+	for(int m = n; m >= 10; m /= 10)
+	  digits *= 10;
+	for(; digits > 0; digits /= 10)
+	  buffer.put((byte) ('0' + (n / digits) % 10));
+  }
+
+  /* A byte-at-a-time DIMACS state machine.  Its state survives
+   * between calls of feed(), so numbers may span buffers. */
+  private static final class ByteParser {
+
+	private static final int SPACE = 0;
+	private static final int NUMBER = 1;
+	private static final int COMMENT = 2;
+	private static final int HEADER = 3;
+
+	private final ClauseSink sink;
+	private int state = SPACE;
+	private long value = 0;
+	private boolean negative = false;
+	private boolean open = false;
+	private long offset = 0;
+	boolean done = false;
+
+	/* the header line is tiny: "p cnf <vars> <clauses>" */
+	private StringBuffer header = null;
+
+	ByteParser(ClauseSink sink){
+	  this.sink = sink;
+	}
+
+	void feed(ByteBuffer buffer) throws IOException{
+	  while(buffer.hasRemaining() && !done){
+		byte b = buffer.get();
+		switch(state){
+		case COMMENT:
+		  if(b == '\n')
+			state = SPACE;
+		  break;
+		case HEADER:
+		  if(b == '\n')
+			header();
+		  else
+			header.append((char) b);
+		  break;
+		case NUMBER:
+		  if(b >= '0' && b <= '9'){
+			value = 10 * value + (b - '0');
+			if(value > Integer.MAX_VALUE)
+			  throw error("Variable number too large");
+			break;
+		  }
+		  literal();
+		  space(b);
+		  break;
+		case SPACE:
+		  space(b);
+		  break;
+		}
+		offset++;
+	  }
+	}
+
+	/* handles a byte between tokens, including the one that ended a number. */
+	private void space(byte b) throws IOException{
+	  state = SPACE;
+	  if(b == ' ' || b == '\n' || b == '\t' || b == '\r')
+		return;
+	  else if(b == '-' || (b >= '0' && b <= '9')){
+		negative = (b == '-');
+		value = negative ? 0 : b - '0';
+		state = NUMBER;
+	  }
+	  else if(b == 'c')
+		state = COMMENT;
+	  else if(b == 'p' && header == null){
+		header = new StringBuffer("p");
+		state = HEADER;
+	  }
+	  else if(b == '%')
+		done = true;
+	  else
+		throw error("Unexpected character '" + (char) b + "'");
+	}
+
+	void finish() throws IOException{
+	  if(state == NUMBER)
+		literal();
+	  else if(state == HEADER)
+		header();
+	  if(open)
+		sink.endClause();
+	}
+
+	/* adds the literal just read to the sink, reporting an arena that
+	 * cannot grow any more as a parse error. */
+	private void literal() throws IOException{
+	  try{
+		addLiteral();
+	  }
+	  catch(IllegalStateException e){
+		throw error(e.getMessage());
+	  }
+	}
+
+	private void addLiteral() throws IOException{
+	  if(!open){
+		sink.beginClause();
+		open = true;
+	  }
+	  if(value == 0){
+		if(negative)
+		  throw error("Bad literal -0");
+		sink.endClause();
+		open = false;
+	  }
+	  else
+		sink.addLiteral(ClauseArena.literal((int) value - 1, negative));
+	}
+
+	private void header() throws IOException{
+	  String[] fields = header.toString().trim().split("\\s+");
+	  if(fields.length != 4 || !fields[1].equals("cnf"))
+		throw error("Bad header \"" + header.toString().trim() + "\"");
+	  try{
+		sink.ensureVariables(Integer.parseInt(fields[2]));
+		Integer.parseInt(fields[3]);
+	  }
+	  catch(NumberFormatException e){
+		throw error("Bad header \"" + header.toString().trim() + "\"");
+	  }
+	  state = SPACE;
+	}
+
+	private IOException error(String message){
+	  return new IOException("DIMACS parse error at byte " + offset + ": "
+							 + message);
+	}
+  }
+
+}
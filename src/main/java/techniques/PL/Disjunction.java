@@ -15,25 +15,29 @@ public class Disjunction extends Sentence {
   
   /** Returns the list of literals of this Disjunction. NOTE: mutating the
       returned List will mutate this Disjunction!  Be sure you
-      understand what you are doing if you choose to do this. */
+      understand what you are doing if you choose to do this.  To share
+      clauses without copying, see <code>ImmutableClause</code>. */
   public List getClauses(){
 	return clauses;
   }
 
   public Set getVariables(){
-    Set props = new HashSet();
+	return new VariableSet.Builder().addAll(this).build();
+  }
 
-    Iterator i = clauses.iterator();
+  /* the clauses can be changed through getClauses(), so the set is
+   * not cached; it is built in one pass, without a set per clause. */
+  void collectVariables(VariableSet.Builder builder){
+	Iterator i = clauses.iterator();
 	while(i.hasNext())
-	  props.addAll(((Sentence)i.next()).getVariables());
-	return props;
+	  ((Sentence) i.next()).collectVariables(builder);
   }
   
   public Boolean isSatisfied(Interpretation interpretation){
 	boolean undetermined = false;
 	boolean result = false;
     Iterator i = clauses.iterator();
-	while(i.hasNext()){
+	while(i.hasNext() && !result){
 	  Boolean subResult = ((Sentence)i.next()).isSatisfied(interpretation);
 	  if (subResult == null)
 		undetermined |= true;
@@ -0,0 +1,473 @@
+package techniques.PL;
+
+import java.io.*;
+import java.util.*;
+
+/** Checks a DRAT proof of unsatisfiability, in the binary format of
+    <code>DratWriter</code> or the text format of drat-trim, against
+    the clauses it claims to refute.
+
+    <p>The check is a single forward pass over the proof.  Each added
+    clause must be a reverse unit propagation (RUP) consequence of the
+    clauses so far: assigning all its literals false and propagating
+    must lead to a conflict.  Failing that, it must be a resolution
+    asymmetric tautology (RAT) on its first literal.  Propagation uses
+    two watched literals, and the units of the clauses so far stay
+    assigned from one step to the next, so each step only propagates
+    what its own literals add.  As in drat-trim, deleting a unit clause
+    or the reason of a unit is ignored.
+
+    <p>The proof is accepted if every step checks and the empty clause
+    is derived.  Forward checking verifies every lemma, including those
+    a backward checker would skip as unused, so it is simpler but
+    slower than drat-trim; it is meant for regression runs on the
+    proofs of this package. */
+public class DratChecker {
+
+  /* clause header in mem: size, flags */
+  private static final int SIZE = 0;
+  private static final int FLAGS = 1;
+  private static final int HEADER = 2;
+
+  private static final int DELETED = 1;
+
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+  private static final byte UNDEF = 0;
+
+  private static final int NO_REASON = -1;
+
+  /* bytes looked at to tell binary proofs from text */
+  private static final int PEEK = 256;
+
+  private int[] mem = new int[1024];
+  private int memSize = 0;
+
+  /* the clauses of each literal, for RAT and deletion */
+  private IntVec[] occurs = new IntVec[0];
+  private IntVec[] watches = new IntVec[0];
+
+  private int numVars = 0;
+  private byte[] values = new byte[0];
+  private int[] reason = new int[0];
+  private int[] trail = new int[0];
+  private int trailSize = 0;
+  private int qhead = 0;
+  private int[] marks = new int[0];
+  private int stamp = 0;
+
+  /* true once the clauses so far propagate to a conflict */
+  private boolean refuted = false;
+
+  private long lemmas = 0;
+  private long deletions = 0;
+  private long ratChecks = 0;
+  private long failedLemma = -1;
+
+  /** Constructs a checker for the clauses of <code>formula</code>. */
+  public DratChecker(ClauseStore formula){
+	ensureVariables(formula.numVariables());
+	for(int c = 0; c < formula.numClauses(); c++)
+	  addClause(formula.clause(c));
+  }
+
+  /** Returns true if <code>proof</code>, a DRAT file, refutes the
+      formula. */
+  public boolean check(File proof) throws IOException{
+	InputStream in = new BufferedInputStream(new FileInputStream(proof), 1 << 16);
+	try{
+	  return check(in);
+	}
+	finally{
+	  in.close();
+	}
+  }
+
+  /** Returns true if the DRAT proof read from <code>in</code> refutes
+      the formula: every added clause checks and the empty clause is
+      derived.  The stream is not closed.  As in drat-trim, the proof
+      is taken as binary if its first bytes are not all printable, or
+      if it starts with <code>'a'</code>, which text proofs never do. */
+  public boolean check(InputStream in) throws IOException{
+	if(!in.markSupported())
+	  in = new BufferedInputStream(in);
+	boolean binary = isBinary(in);
+	IntVec clause = new IntVec();
+	long step = 0;
+	while(true){
+	  int kind = binary ? readBinary(in, clause) : readText(in, clause);
+	  if(kind < 0)
+		break;
+	  if(kind == 'd'){
+		deletions++;
+		delete(clause.toArray());
+		continue;
+	  }
+	  lemmas++;
+	  step++;
+	  int[] lemma = clause.toArray();
+	  if(!refuted && !implies(lemma) && !isRat(lemma)){
+		failedLemma = step;
+		return false;
+	  }
+	  if(lemma.length == 0)
+		refuted = true;
+	  if(refuted)
+		return true;
+	  addClause(lemma);
+	}
+	return refuted;
+  }
+
+  /** Returns true if the clauses so far imply <code>clause</code> by
+      unit propagation, e.g. the negation of the assumptions a solver
+      found inconsistent after checking its proof. */
+  public boolean implies(int[] clause){
+	if(refuted)
+	  return true;
+	for(int i = 0; i < clause.length; i++)
+	  ensureVariables(ClauseArena.var(clause[i]) + 1);
+	int saved = trailSize;
+	boolean conflict = false;
+	for(int i = 0; i < clause.length && !conflict; i++){
+	  int p = clause[i];
+	  if(values[p] == TRUE)
+		conflict = true;
+	  else if(values[p] == UNDEF)
+		assign(ClauseArena.negate(p), NO_REASON);
+	}
+	if(!conflict)
+	  conflict = !propagate();
+	backtrack(saved);
+	return conflict;
+  }
+
+  /* true if lemma is RAT on its first literal: every resolvent with
+   * a clause containing the negation of that literal is RUP. */
+  private boolean isRat(int[] lemma){
+	if(lemma.length == 0)
+	  return false;
+	ratChecks++;
+	int pivot = lemma[0];
+	int negated = ClauseArena.negate(pivot);
+	IntVec candidates = occurs[negated];
+	int[] resolvent = new int[lemma.length + 16];
+	for(int i = 0; i < candidates.size(); i++){
+	  int cr = candidates.get(i);
+	  if((mem[cr + FLAGS] & DELETED) != 0)
+		continue;
+	  int size = mem[cr + SIZE];
+	  if(resolvent.length < lemma.length + size)
+		resolvent = new int[lemma.length + size];
+	  System.arraycopy(lemma, 0, resolvent, 0, lemma.length);
+	  int n = lemma.length;
+	  for(int k = 0; k < size; k++){
+		int q = mem[cr + HEADER + k];
+		if(q != negated)
+		  resolvent[n++] = q;
+	  }
+	  if(!implies(Arrays.copyOf(resolvent, n)))
+		return false;
+	}
+	return true;
+  }
+
+  /* adds a clause of the formula or a checked lemma.  The clause is
+   * watched on two literals that are not false at the top level, if it
+   * has them; otherwise it propagates, or refutes. */
+  private void addClause(int[] clause){
+	if(refuted)
+	  return;
+	int[] lits = normalize(clause);
+	if(lits == null)
+	  return; // tautology
+	int cr = allocate(lits);
+	for(int i = 0; i < lits.length; i++)
+	  occurs[lits[i]].push(cr);
+
+	/* move two non-false literals to the front */
+	int base = cr + HEADER;
+	int n = 0;
+	for(int i = 0; i < lits.length && n < 2; i++)
+	  if(values[mem[base + i]] != FALSE){
+		int q = mem[base + i];
+		mem[base + i] = mem[base + n];
+		mem[base + n++] = q;
+	  }
+	if(lits.length >= 2){
+	  watches[ClauseArena.negate(mem[base])].push(cr);
+	  watches[ClauseArena.negate(mem[base + 1])].push(cr);
+	}
+	if(n == 0)
+	  refuted = true;
+	else if(n == 1 && values[mem[base]] == UNDEF){
+	  assign(mem[base], cr);
+	  if(!propagate())
+		refuted = true;
+	}
+  }
+
+  /* deletes the clause with the literals of clause, unless it is a
+   * unit or the reason of one. */
+  private void delete(int[] clause){
+	if(refuted)
+	  return;
+	int[] lits = normalize(clause);
+	if(lits == null || lits.length <= 1)
+	  return;
+	stamp++;
+	for(int i = 0; i < lits.length; i++)
+	  marks[lits[i]] = stamp;
+	IntVec candidates = occurs[lits[0]];
+	for(int i = 0; i < candidates.size(); i++){
+	  int cr = candidates.get(i);
+	  if((mem[cr + FLAGS] & DELETED) != 0 || mem[cr + SIZE] != lits.length)
+		continue;
+	  boolean same = true;
+	  for(int k = 0; k < lits.length && same; k++)
+		same = (marks[mem[cr + HEADER + k]] == stamp);
+	  if(!same)
+		continue;
+	  int first = mem[cr + HEADER];
+	  if(values[first] == TRUE && reason[ClauseArena.var(first)] == cr)
+		return; // the reason of a unit: keep it
+	  mem[cr + FLAGS] |= DELETED;
+	  return;
+	}
+  }
+
+  /* returns the distinct literals of clause, sorted, or null for a
+   * tautology. */
+  private int[] normalize(int[] clause){
+	int[] lits = clause.clone();
+	Arrays.sort(lits);
+	int n = 0;
+	for(int i = 0; i < lits.length; i++){
+	  ensureVariables(ClauseArena.var(lits[i]) + 1);
+	  if(n > 0 && lits[i] == lits[n - 1])
+		continue;
+	  if(n > 0 && lits[i] == ClauseArena.negate(lits[n - 1]))
+		return null;
+	  lits[n++] = lits[i];
+	}
+	return Arrays.copyOf(lits, n);
+  }
+
+  /* propagates the trail; returns false on a conflict. */
+  private boolean propagate(){
+	while(qhead < trailSize){
+	  int p = trail[qhead++];
+	  int falseLit = ClauseArena.negate(p);
+	  IntVec ws = watches[p];
+	  int i = 0;
+	  int j = 0;
+	  int n = ws.size();
+	  while(i < n){
+		int cr = ws.get(i++);
+		if((mem[cr + FLAGS] & DELETED) != 0)
+		  continue; // drop the watch
+		int base = cr + HEADER;
+		if(mem[base] == falseLit){
+		  mem[base] = mem[base + 1];
+		  mem[base + 1] = falseLit;
+		}
+		int first = mem[base];
+		if(values[first] == TRUE){
+		  ws.set(j++, cr);
+		  continue;
+		}
+		int size = mem[cr + SIZE];
+		boolean moved = false;
+		for(int k = 2; k < size && !moved; k++){
+		  int q = mem[base + k];
+		  if(values[q] != FALSE){
+			mem[base + 1] = q;
+			mem[base + k] = falseLit;
+			watches[ClauseArena.negate(q)].push(cr);
+			moved = true;
+		  }
+		}
+		if(moved)
+		  continue;
+		ws.set(j++, cr);
+		if(values[first] == FALSE){
+		  while(i < n)
+			ws.set(j++, ws.get(i++));
+		  ws.shrink(j);
+		  qhead = trailSize;
+		  return false;
+		}
+		assign(first, cr);
+	  }
+	  ws.shrink(j);
+	}
+	return true;
+  }
+
+  private void assign(int p, int from){
+	values[p] = TRUE;
+	values[ClauseArena.negate(p)] = FALSE;
+	reason[ClauseArena.var(p)] = from;
+	trail[trailSize++] = p;
+  }
+
+  private void backtrack(int size){
+	for(int i = trailSize - 1; i >= size; i--){
+	  int p = trail[i];
+	  values[p] = UNDEF;
+	  values[ClauseArena.negate(p)] = UNDEF;
+	  reason[ClauseArena.var(p)] = NO_REASON;
+	}
+	trailSize = size;
+	qhead = size;
+  }
+
+  private int allocate(int[] lits){
+	if(memSize + HEADER + lits.length > mem.length)
+	  mem = Arrays.copyOf(mem, Math.max(memSize + HEADER + lits.length, 2 * mem.length));
+	int cr = memSize;
+	mem[cr + SIZE] = lits.length;
+	mem[cr + FLAGS] = 0;
+	System.arraycopy(lits, 0, mem, cr + HEADER, lits.length);
+	memSize += HEADER + lits.length;
+	return cr;
+  }
+
+  private void ensureVariables(int n){
+	if(n <= numVars)
+	  return;
+	int capacity = Math.max(n, 2 * numVars);
+	values = Arrays.copyOf(values, 2 * capacity);
+	marks = Arrays.copyOf(marks, 2 * capacity);
+	reason = Arrays.copyOf(reason, capacity);
+	trail = Arrays.copyOf(trail, capacity);
+	occurs = Arrays.copyOf(occurs, 2 * capacity);
+	watches = Arrays.copyOf(watches, 2 * capacity);
+	for(int p = 2 * numVars; p < 2 * capacity; p++){
+	  occurs[p] = new IntVec(2);
+	  watches[p] = new IntVec(2);
+	}
+	for(int v = numVars; v < capacity; v++)
+	  reason[v] = NO_REASON;
+	numVars = capacity;
+  }
+
+  /* looks at the first bytes of in, without consuming them: every
+   * binary step ends with a 0 byte, and literals from 64 on have bytes
+   * with the high bit set, so a binary proof shows a byte that is not
+   * printable early on. */
+  private static boolean isBinary(InputStream in) throws IOException{
+	in.mark(PEEK);
+	try{
+	  int first = in.read();
+	  if(first == 'a')
+		return true;
+	  /* at most PEEK reads in all, so that reset() stays valid */
+	  for(int i = 1, b = first; b >= 0; i++){
+		if((b < 0x20 || b > 0x7E) && b != '\n' && b != '\r' && b != '\t')
+		  return true;
+		if(i == PEEK)
+		  break;
+		b = in.read();
+	  }
+	  return false;
+	}
+	finally{
+	  in.reset();
+	}
+  }
+
+  /* reads one binary step into clause; returns 'a', 'd' or -1 at the
+   * end. */
+  private static int readBinary(InputStream in, IntVec clause) throws IOException{
+	int kind = in.read();
+	if(kind < 0)
+	  return -1;
+	if(kind != 'a' && kind != 'd')
+	  throw new IOException("Bad binary DRAT step: " + kind);
+	clause.clear();
+	while(true){
+	  int u = 0;
+	  int shift = 0;
+	  int b;
+	  do{
+		b = in.read();
+		if(b < 0)
+		  throw new IOException("Truncated binary DRAT proof");
+		u |= (b & 0x7F) << shift;
+		shift += 7;
+	  } while((b & 0x80) != 0);
+	  if(u == 0)
+		return kind;
+	  if(u < 2)
+		throw new IOException("Bad binary DRAT literal: " + u);
+	  clause.push(u - 2);
+	}
+  }
+
+  /* reads one text step into clause; returns 'a', 'd' or -1 at the
+   * end.  Comment lines are skipped. */
+  private static int readText(InputStream in, IntVec clause) throws IOException{
+	clause.clear();
+	int kind = 'a';
+	boolean started = false;
+	while(true){
+	  int b = in.read();
+	  if(b < 0){
+		if(started)
+		  throw new IOException("Truncated DRAT proof");
+		return -1;
+	  }
+	  if(b == ' ' || b == '\n' || b == '\r' || b == '\t')
+		continue;
+	  if(b == 'c' && !started){
+		while(b >= 0 && b != '\n')
+		  b = in.read();
+		continue;
+	  }
+	  if(b == 'd' && !started){
+		kind = 'd';
+		started = true;
+		continue;
+	  }
+	  boolean negative = (b == '-');
+	  if(negative)
+		b = in.read();
+	  if(b < '0' || b > '9')
+		throw new IOException("Bad DRAT character: '" + (char) b + "'");
+	  long n = 0;
+	  while(b >= '0' && b <= '9'){
+		n = 10 * n + (b - '0');
+		if(n > Integer.MAX_VALUE)
+		  throw new IOException("DRAT variable too large");
+		b = in.read();
+	  }
+	  started = true;
+	  if(n == 0)
+		return kind;
+	  clause.push(Dimacs.fromDimacs(negative ? (int) -n : (int) n));
+	}
+  }
+
+  /** Returns the number of clauses added by the proof so far. */
+  public long getLemmas(){
+	return lemmas;
+  }
+
+  /** Returns the number of deletions read so far. */
+  public long getDeletions(){
+	return deletions;
+  }
+
+  /** Returns the number of lemmas that needed a RAT check. */
+  public long getRatChecks(){
+	return ratChecks;
+  }
+
+  /** Returns the index, from 1, of the added clause that failed the
+      last <code>check()</code>, or -1 if none did. */
+  public long getFailedLemma(){
+	return failedLemma;
+  }
+
+}
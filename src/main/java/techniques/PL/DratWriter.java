@@ -0,0 +1,198 @@
+package techniques.PL;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+/** Writes a clausal proof in binary DRAT format, as understood by
+    drat-trim and by <code>DratChecker</code>: every step is
+    <code>'a'</code> (added) or <code>'d'</code> (deleted), followed by
+    the clause's literals as variable-length numbers and a 0 byte.
+    Literal <code>l</code> of <code>ClauseArena</code> is written as
+    <code>l + 2</code>, which is the binary DRAT number of its DIMACS
+    literal.
+
+    <p>The solver only appends bytes to a block in memory.  Full blocks
+    are handed to a background thread that writes them out, so the
+    solver waits for the disk only when it runs more than a few blocks
+    ahead of it.  An error while writing is reported by
+    <code>close()</code>; the steps after it are lost.
+
+    <p>Not thread safe: one solver writes to one <code>DratWriter</code>.
+    See <code>Solver.setProof()</code>. */
+public class DratWriter implements Closeable {
+
+  private static final int BLOCK = 1 << 16;
+  private static final int BLOCKS = 8;
+
+  /* tells the background thread to stop */
+  private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+  private final WritableByteChannel channel;
+  private final BlockingQueue full = new ArrayBlockingQueue(BLOCKS);
+  private final BlockingQueue free = new ArrayBlockingQueue(BLOCKS);
+  private final Thread thread;
+  private ByteBuffer block = ByteBuffer.allocate(BLOCK);
+  private int allocated = 1;
+  private volatile IOException error;
+  private boolean closed = false;
+
+  private long additions = 0;
+  private long deletions = 0;
+  private long bytes = 0;
+
+  /** Writes the proof to <code>file</code>, replacing it. */
+  public DratWriter(File file) throws IOException{
+	this(new FileOutputStream(file).getChannel());
+  }
+
+  /** Writes the proof to <code>out</code>, which is closed by
+      <code>close()</code>. */
+  public DratWriter(OutputStream out){
+	this(Channels.newChannel(out));
+  }
+
+  private DratWriter(WritableByteChannel channel){
+	this.channel = channel;
+	thread = new Thread(new Runnable(){
+		public void run(){
+		  drain();
+		}
+	  }, "drat-writer");
+	thread.setDaemon(true);
+	thread.start();
+  }
+
+  /** Logs the addition of the clause of the <code>length</code>
+      literals of <code>literals</code> from <code>from</code>. */
+  public void add(int[] literals, int from, int length){
+	step('a', literals, from, length);
+	additions++;
+  }
+
+  public void add(int[] literals){
+	add(literals, 0, literals.length);
+  }
+
+  /** Logs the deletion of the clause of the <code>length</code>
+      literals of <code>literals</code> from <code>from</code>. */
+  public void delete(int[] literals, int from, int length){
+	step('d', literals, from, length);
+	deletions++;
+  }
+
+  public void delete(int[] literals){
+	delete(literals, 0, literals.length);
+  }
+
+  private void step(char kind, int[] literals, int from, int length){
+	if(closed)
+	  throw new IllegalStateException("Proof closed.");
+	put((byte) kind);
+	for(int i = from; i < from + length; i++){
+	  int u = literals[i] + 2;
+	  while((u & ~0x7F) != 0){
+		put((byte) ((u & 0x7F) | 0x80));
+		u >>>= 7;
+	  }
+	  put((byte) u);
+	}
+	put((byte) 0);
+  }
+
+  private void put(byte b){
+	if(!block.hasRemaining())
+	  ship();
+	block.put(b);
+  }
+
+  /* hands the current block to the background thread and takes an
+   * empty one, waiting only when all blocks are in flight. */
+  private void ship(){
+	block.flip();
+	bytes += block.remaining();
+	ByteBuffer next = (ByteBuffer) free.poll();
+	if(next == null && allocated < BLOCKS){
+	  next = ByteBuffer.allocate(BLOCK);
+	  allocated++;
+	}
+	try{
+	  full.put(block);
+	  if(next == null)
+		next = (ByteBuffer) free.take();
+	}
+	catch(InterruptedException e){
+	  Thread.currentThread().interrupt();
+	  throw new IllegalStateException("Interrupted while writing proof", e);
+	}
+	block = next;
+  }
+
+  /* the background thread: writes blocks until END, then returns.
+   * After an error it keeps taking blocks, so that the solver never
+   * waits forever, but writes nothing more. */
+  private void drain(){
+	try{
+	  while(true){
+		ByteBuffer next = (ByteBuffer) full.take();
+		if(next == END)
+		  return;
+		try{
+		  if(error == null)
+			while(next.hasRemaining())
+			  channel.write(next);
+		}
+		catch(IOException e){
+		  error = e;
+		}
+		next.clear();
+		free.put(next);
+	  }
+	}
+	catch(InterruptedException e){
+	  error = new InterruptedIOException("Proof writer interrupted");
+	}
+  }
+
+  /** Writes out everything logged so far and closes the output.
+
+      @throws IOException if any of the proof could not be written */
+  public void close() throws IOException{
+	if(closed)
+	  return;
+	closed = true;
+	try{
+	  if(block.position() > 0)
+		ship();
+	  full.put(END);
+	  thread.join();
+	}
+	catch(InterruptedException e){
+	  Thread.currentThread().interrupt();
+	  throw new InterruptedIOException("Interrupted while closing proof");
+	}
+	finally{
+	  channel.close();
+	}
+	if(error != null)
+	  throw error;
+  }
+
+  /** Returns the number of clauses added so far. */
+  public long getAdditions(){
+	return additions;
+  }
+
+  /** Returns the number of clauses deleted so far. */
+  public long getDeletions(){
+	return deletions;
+  }
+
+  /** Returns the number of bytes handed to the background thread so
+      far. */
+  public long getBytes(){
+	return bytes;
+  }
+
+}
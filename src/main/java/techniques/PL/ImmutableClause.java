@@ -0,0 +1,177 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** An immutable disjunction of literals (<code>Variable</code>s and
+    <code>Negation</code>s).  Unlike a <code>Disjunction</code> it can
+    be shared between threads and formulas without copying:
+    <code>clone()</code> returns the clause itself, and
+    <code>with()</code> and <code>without()</code> return new clauses,
+    in time linear in the size of the clause.
+
+    <p>Clauses are built with a <code>Builder</code>, or from a
+    <code>Disjunction</code> with <code>of()</code>. */
+public final class ImmutableClause extends Sentence {
+
+  private final Sentence[] literals;
+  private int hash; // 0 until computed
+  private VariableSet variables; // null until getVariables()
+
+  private ImmutableClause(Sentence[] literals){
+	this.literals = literals;
+  }
+
+  /** Builds a clause a literal at a time.  A builder can be reused
+      after <code>build()</code>. */
+  public static final class Builder {
+	private Sentence[] literals = new Sentence[4];
+	private int size = 0;
+
+	/** Adds <code>literal</code>, a <code>Variable</code> or a
+		<code>Negation</code>. */
+	public Builder add(Sentence literal){
+	  checkLiteral(literal);
+	  if(size == literals.length)
+		literals = Arrays.copyOf(literals, 2 * size);
+	  literals[size++] = literal;
+	  return this;
+	}
+
+	/** Adds the literal of the variable named <code>name</code>,
+		negated if <code>negated</code>. */
+	public Builder add(String name, boolean negated){
+	  Variable variable = Variable.intern(name);
+	  return add(negated ? (Sentence) new Negation(variable) : variable);
+	}
+
+	public ImmutableClause build(){
+	  return new ImmutableClause(Arrays.copyOf(literals, size));
+	}
+  }
+
+  /** Returns the clause of a <code>Disjunction</code> of literals or
+      of a single literal. */
+  public static ImmutableClause of(Sentence sentence){
+	if(sentence instanceof ImmutableClause)
+	  return (ImmutableClause) sentence;
+	Builder builder = new Builder();
+	if(sentence instanceof Disjunction){
+	  Iterator i = ((Disjunction) sentence).getClauses().iterator();
+	  while(i.hasNext())
+		builder.add((Sentence) i.next());
+	}
+	else
+	  builder.add(sentence);
+	return builder.build();
+  }
+
+  private static void checkLiteral(Sentence literal){
+	if(!(literal instanceof Variable) && !(literal instanceof Negation))
+	  throw new IllegalArgumentException("Not a literal: " + literal);
+  }
+
+  public int size(){
+	return literals.length;
+  }
+
+  /** Returns literal <code>i</code>. */
+  public Sentence get(int i){
+	return literals[i];
+  }
+
+  /** Returns the literals, as a list that cannot be modified. */
+  public List getLiterals(){
+	return Collections.unmodifiableList(Arrays.asList(literals));
+  }
+
+  /** Returns this clause with <code>literal</code> added at the
+      end. */
+  public ImmutableClause with(Sentence literal){
+	checkLiteral(literal);
+	Sentence[] result = Arrays.copyOf(literals, literals.length + 1);
+	result[literals.length] = literal;
+	return new ImmutableClause(result);
+  }
+
+  /** Returns this clause without any occurrence of
+      <code>literal</code>, or this clause if it has none. */
+  public ImmutableClause without(Sentence literal){
+	Sentence[] result = new Sentence[literals.length];
+	int n = 0;
+	for(int i = 0; i < literals.length; i++)
+	  if(!literals[i].equals(literal))
+		result[n++] = literals[i];
+	return (n == literals.length) ? this
+	  : new ImmutableClause(Arrays.copyOf(result, n));
+  }
+
+  /** Returns a new, mutable <code>Disjunction</code> of the same
+      literals. */
+  public Disjunction toDisjunction(){
+	return new Disjunction(Arrays.asList(literals));
+  }
+
+  /** Returns the variables of this clause, computed once. */
+  public Set getVariables(){
+	return getVariableSet();
+  }
+
+  VariableSet getVariableSet(){
+	VariableSet set = variables;
+	if(set == null){
+	  VariableSet.Builder builder = new VariableSet.Builder();
+	  for(int i = 0; i < literals.length; i++)
+		literals[i].collectVariables(builder);
+	  variables = set = builder.build();
+	}
+	return set;
+  }
+
+  void collectVariables(VariableSet.Builder builder){
+	builder.addAll(getVariableSet());
+  }
+
+  public Boolean isSatisfied(Interpretation interpretation){
+	boolean undetermined = false;
+	for(int i = 0; i < literals.length; i++){
+	  Boolean value = literals[i].isSatisfied(interpretation);
+	  if(value == null)
+		undetermined = true;
+	  else if(value.booleanValue())
+		return Boolean.TRUE;
+	}
+	return undetermined ? null : Boolean.FALSE;
+  }
+
+  public boolean equals(Object o){
+	return (o instanceof ImmutableClause)
+	  && hashCode() == o.hashCode()
+	  && Arrays.equals(literals, ((ImmutableClause) o).literals);
+  }
+
+  public int hashCode(){
+	int h = hash;
+	if(h == 0){
+	  h = Arrays.hashCode(literals);
+	  hash = (h == 0) ? 1 : h;
+	}
+	return hash;
+  }
+
+  public String toString(){
+	StringBuilder sb = new StringBuilder("(");
+	for(int i = 0; i < literals.length; i++){
+	  if(i > 0)
+		sb.append(' ').append(CNF.vee).append(' ');
+	  sb.append(literals[i]);
+	}
+	return sb.append(')').toString();
+  }
+
+  /** Returns this clause: it cannot change, so there is nothing to
+      copy. */
+  public Object clone(){
+	return this;
+  }
+
+}
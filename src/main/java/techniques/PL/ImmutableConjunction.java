@@ -0,0 +1,315 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** An immutable conjunction of <code>ImmutableClause</code>s, the
+    persistent counterpart of <code>Conjunction</code>.  It can be
+    shared between threads and caches without copying, and
+    <code>clone()</code> returns the conjunction itself.
+
+    <p>The clauses are kept in a trie of 32-way nodes.  Changing a
+    clause with <code>set()</code>, or adding or removing the last one,
+    copies only the nodes on the path to it, about log32 of the number
+    of clauses, and shares the rest with the original.  Replacing one
+    literal of one clause of a large formula thus costs the size of
+    that clause, not of the formula.
+
+    <p>Large conjunctions are best made with a <code>Builder</code>,
+    which fills the trie bottom up. */
+public final class ImmutableConjunction extends Sentence {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  /** The conjunction of no clauses. */
+  public static final ImmutableConjunction EMPTY =
+	new ImmutableConjunction(new Object[WIDTH], 0, 0);
+
+  /* the leaves, at level 0, hold the clauses; the nodes above hold
+   * their children.  Nodes are never modified once shared. */
+  private final Object[] root;
+  private final int shift;
+  private final int size;
+  private int hash; // 0 until computed
+  private VariableSet variables; // null until getVariables()
+
+  private ImmutableConjunction(Object[] root, int shift, int size){
+	this.root = root;
+	this.shift = shift;
+	this.size = size;
+  }
+
+  /** Collects clauses for an <code>ImmutableConjunction</code>. */
+  public static final class Builder {
+	private final List clauses = new ArrayList();
+
+	/** Adds <code>clause</code>, an <code>ImmutableClause</code>, a
+		<code>Disjunction</code> of literals or a single literal. */
+	public Builder add(Sentence clause){
+	  clauses.add(ImmutableClause.of(clause));
+	  return this;
+	}
+
+	/** Adds every clause of <code>conjunction</code>. */
+	public Builder addAll(Conjunction conjunction){
+	  Iterator i = conjunction.getClauses().iterator();
+	  while(i.hasNext())
+		add((Sentence) i.next());
+	  return this;
+	}
+
+	public int size(){
+	  return clauses.size();
+	}
+
+	public ImmutableConjunction build(){
+	  if(clauses.isEmpty())
+		return EMPTY;
+	  List nodes = chunk(clauses);
+	  int shift = 0;
+	  while(nodes.size() > 1){
+		nodes = chunk(nodes);
+		shift += BITS;
+	  }
+	  return new ImmutableConjunction((Object[]) nodes.get(0), shift, clauses.size());
+	}
+
+	/* groups items into nodes of WIDTH. */
+	private static List chunk(List items){
+	  List nodes = new ArrayList((items.size() + MASK) / WIDTH);
+	  for(int i = 0; i < items.size(); i += WIDTH){
+		Object[] node = new Object[WIDTH];
+		int n = Math.min(WIDTH, items.size() - i);
+		for(int j = 0; j < n; j++)
+		  node[j] = items.get(i + j);
+		nodes.add(node);
+	  }
+	  return nodes;
+	}
+  }
+
+  /** Returns the clauses of <code>conjunction</code>, which must be
+      <code>Disjunction</code>s of literals or single literals, as an
+      <code>ImmutableConjunction</code>. */
+  public static ImmutableConjunction of(Conjunction conjunction){
+	return new Builder().addAll(conjunction).build();
+  }
+
+  public int size(){
+	return size;
+  }
+
+  public boolean isEmpty(){
+	return size == 0;
+  }
+
+  /** Returns clause <code>i</code>. */
+  public ImmutableClause get(int i){
+	return (ImmutableClause) leaf(i)[i & MASK];
+  }
+
+  private Object[] leaf(int i){
+	if(i < 0 || i >= size)
+	  throw new IndexOutOfBoundsException("Clause " + i + " of " + size);
+	Object[] node = root;
+	for(int level = shift; level > 0; level -= BITS)
+	  node = (Object[]) node[(i >>> level) & MASK];
+	return node;
+  }
+
+  /** Returns this conjunction with clause <code>i</code> replaced by
+      <code>clause</code>. */
+  public ImmutableConjunction set(int i, ImmutableClause clause){
+	if(clause == null)
+	  throw new IllegalArgumentException("Null clause");
+	if(i < 0 || i >= size)
+	  throw new IndexOutOfBoundsException("Clause " + i + " of " + size);
+	return new ImmutableConjunction(set(root, shift, i, clause), shift, size);
+  }
+
+  private static Object[] set(Object[] node, int level, int i, Object clause){
+	Object[] copy = (node == null) ? new Object[WIDTH] : node.clone();
+	if(level == 0)
+	  copy[i & MASK] = clause;
+	else{
+	  int slot = (i >>> level) & MASK;
+	  copy[slot] = set((Object[]) copy[slot], level - BITS, i, clause);
+	}
+	return copy;
+  }
+
+  /** Returns this conjunction with <code>clause</code> added at the
+      end. */
+  public ImmutableConjunction add(ImmutableClause clause){
+	if(clause == null)
+	  throw new IllegalArgumentException("Null clause");
+	if(size == (1 << (shift + BITS))){
+	  // the trie is full: grow a level
+	  Object[] newRoot = new Object[WIDTH];
+	  newRoot[0] = root;
+	  return new ImmutableConjunction(set(newRoot, shift + BITS, size, clause),
+									  shift + BITS, size + 1);
+	}
+	return new ImmutableConjunction(set(root, shift, size, clause), shift, size + 1);
+  }
+
+  /** Returns this conjunction without its last clause. */
+  public ImmutableConjunction removeLast(){
+	if(size == 0)
+	  throw new IllegalStateException("Empty conjunction");
+	if(size == 1)
+	  return EMPTY;
+	Object[] newRoot = removeLast(root, shift, size - 1);
+	int newShift = shift;
+	if(newShift > 0 && newRoot[1] == null){
+	  newRoot = (Object[]) newRoot[0];
+	  newShift -= BITS;
+	}
+	return new ImmutableConjunction(newRoot, newShift, size - 1);
+  }
+
+  /* removes clause i, the last one; returns null if the node would be
+   * left empty. */
+  private static Object[] removeLast(Object[] node, int level, int i){
+	int slot = (i >>> level) & MASK;
+	Object child = null;
+	if(level > 0)
+	  child = removeLast((Object[]) node[slot], level - BITS, i);
+	if(child == null && slot == 0)
+	  return null;
+	Object[] copy = node.clone();
+	copy[slot] = child;
+	return copy;
+  }
+
+  /** Returns the clauses, as a list that cannot be modified.  The list
+      is a view: nothing is copied. */
+  public List getClauses(){
+	return new AbstractList(){
+		public Object get(int i){
+		  return ImmutableConjunction.this.get(i);
+		}
+
+		public int size(){
+		  return size;
+		}
+
+		public Iterator iterator(){
+		  return ImmutableConjunction.this.iterator();
+		}
+	  };
+  }
+
+  /** Iterates over the clauses in order, a leaf at a time. */
+  public Iterator iterator(){
+	return new Iterator(){
+		private int next = 0;
+		private Object[] leaf;
+
+		public boolean hasNext(){
+		  return next < size;
+		}
+
+		public Object next(){
+		  if(next >= size)
+			throw new NoSuchElementException();
+		  if((next & MASK) == 0 || leaf == null)
+			leaf = leaf(next);
+		  return leaf[next++ & MASK];
+		}
+
+		public void remove(){
+		  throw new UnsupportedOperationException();
+		}
+	  };
+  }
+
+  /** Returns a <code>Conjunction</code> of the same clauses.  The
+      clauses themselves are shared, not copied. */
+  public Conjunction toConjunction(){
+	return new Conjunction(getClauses());
+  }
+
+  /** Returns the clauses packed into a <code>ClauseArena</code>, ready
+      for a <code>Solver</code>. */
+  public PackedConjunction toPacked(){
+	return PackedConjunction.pack(toConjunction());
+  }
+
+  /** Returns the set of variables used in this conjunction, computed
+      once as the union of the (also cached) sets of its clauses. */
+  public Set getVariables(){
+	VariableSet set = variables;
+	if(set == null){
+	  VariableSet.Builder builder = new VariableSet.Builder();
+	  Iterator i = iterator();
+	  while(i.hasNext())
+		builder.addAll(((ImmutableClause) i.next()).getVariableSet());
+	  variables = set = builder.build();
+	}
+	return set;
+  }
+
+  void collectVariables(VariableSet.Builder builder){
+	builder.addAll((VariableSet) getVariables());
+  }
+
+  public Boolean isSatisfied(Interpretation interpretation){
+	boolean undetermined = false;
+	Iterator i = iterator();
+	while(i.hasNext()){
+	  Boolean value = ((Sentence) i.next()).isSatisfied(interpretation);
+	  if(value == null)
+		undetermined = true;
+	  else if(!value.booleanValue())
+		return Boolean.FALSE;
+	}
+	return undetermined ? null : Boolean.TRUE;
+  }
+
+  public boolean equals(Object o){
+	if(o == this)
+	  return true;
+	if(!(o instanceof ImmutableConjunction))
+	  return false;
+	ImmutableConjunction other = (ImmutableConjunction) o;
+	if(size != other.size || hashCode() != other.hashCode())
+	  return false;
+	Iterator i = iterator();
+	Iterator j = other.iterator();
+	while(i.hasNext())
+	  if(!i.next().equals(j.next()))
+		return false;
+	return true;
+  }
+
+  public int hashCode(){
+	int h = hash;
+	if(h == 0){
+	  h = 1;
+	  Iterator i = iterator();
+	  while(i.hasNext())
+		h = 31 * h + i.next().hashCode();
+	  hash = (h == 0) ? 1 : h;
+	}
+	return hash;
+  }
+
+  public String toString(){
+	StringBuilder sb = new StringBuilder();
+	Iterator i = iterator();
+	if(i.hasNext())
+	  sb.append(i.next());
+	while(i.hasNext())
+	  sb.append(' ').append(CNF.wedge).append(' ').append(i.next());
+	return sb.toString();
+  }
+
+  /** Returns this conjunction: it cannot change, so there is nothing
+      to copy. */
+  public Object clone(){
+	return this;
+  }
+
+}
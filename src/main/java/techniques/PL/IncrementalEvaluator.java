@@ -0,0 +1,317 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** Keeps track of which clauses of a <code>Conjunction</code> are
+    satisfied while the variables are flipped one at a time.
+
+    <p>For every clause the evaluator keeps the number of its true
+    literals, and for every literal the list of clauses it occurs in.
+    Flipping a variable therefore only touches the clauses that
+    variable occurs in, instead of re-evaluating the whole sentence as
+    <code>isSatisfied()</code> does.  The unsatisfied clauses are kept
+    in a list that can be read at any time, and the break and make
+    count of every variable in an array, so local search (see
+    <code>LocalSearch</code>) can score a flip in constant time.
+
+    <p>The assignment is always complete: variables that the initial
+    <code>Interpretation</code> leaves undetermined start out false.
+    Variables and clauses are numbered as in the
+    <code>ClauseArena</code> of the packed conjunction. */
+public class IncrementalEvaluator {
+
+  private final PackedConjunction conjunction;
+  private final ClauseArena arena;
+  private final int numVars;
+  private final boolean[] values;
+
+  /* number of true literals in each clause, and the xor of those
+   * literals, which is the true literal itself when there is one */
+  private final int[] trueCount;
+  private final int[] trueXor;
+
+  /* clauses of literal p are occurs[occursStart[p] .. occursStart[p+1]) */
+  private final int[] occursStart;
+  private final int[] occurs;
+
+  /* distinct literals of clause c are
+   * clauseLiterals[clauseStart[c] .. clauseStart[c+1]), none for
+   * tautologies */
+  private final int[] clauseStart;
+  private final int[] clauseLiterals;
+
+  /* for each variable, the clauses that flipping it would break (those
+   * it is the only true literal of) and make (the unsatisfied ones it
+   * occurs in) */
+  private final int[] breaks;
+  private final int[] makes;
+
+  /* the unsatisfied clauses, and the index of each in that list (-1) */
+  private final int[] unsat;
+  private int numUnsat = 0;
+  private final int[] unsatIndex;
+
+  private long flips = 0;
+
+  /** Constructs an evaluator for <code>conjunction</code>, starting
+      from the values of <code>interpretation</code>. */
+  public IncrementalEvaluator(Conjunction conjunction,
+							  Interpretation interpretation){
+	this(PackedConjunction.pack(conjunction), interpretation);
+  }
+
+  private IncrementalEvaluator(PackedConjunction conjunction,
+							   Interpretation interpretation){
+	this(conjunction, initial(conjunction, interpretation));
+  }
+
+  /** Constructs an evaluator for <code>conjunction</code>, starting
+      from <code>assignment</code>, indexed by arena variable.  The
+      array is copied. */
+  public IncrementalEvaluator(PackedConjunction conjunction,
+							  boolean[] assignment){
+	this.conjunction = conjunction;
+	this.arena = conjunction.getArena();
+	this.numVars = arena.numVariables();
+	this.values = Arrays.copyOf(assignment, numVars);
+
+	int numClauses = arena.numClauses();
+	int[] literals = arena.literals();
+
+	/* build the occurrence lists, counting a literal repeated within
+	 * a clause only once and leaving out tautologies, which are
+	 * always satisfied */
+	int[] stamp = new int[2 * numVars];
+	boolean[] tautology = new boolean[numClauses];
+	occursStart = new int[2 * numVars + 1];
+	for(int c = 0; c < numClauses; c++){
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		stamp[literals[i]] = c + 1;
+		tautology[c] |= (stamp[ClauseArena.negate(literals[i])] == c + 1);
+	  }
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c) && !tautology[c]; i++)
+		if(stamp[literals[i]] == c + 1){
+		  stamp[literals[i]] = -(c + 1);
+		  occursStart[literals[i] + 1]++;
+		}
+	}
+	for(int p = 0; p < 2 * numVars; p++)
+	  occursStart[p + 1] += occursStart[p];
+	occurs = new int[occursStart[2 * numVars]];
+	int[] fill = Arrays.copyOf(occursStart, 2 * numVars);
+	Arrays.fill(stamp, 0);
+	clauseStart = new int[numClauses + 1];
+	clauseLiterals = new int[occurs.length];
+	breaks = new int[numVars];
+	makes = new int[numVars];
+
+	/* and count the true literals */
+	trueCount = new int[numClauses];
+	trueXor = new int[numClauses];
+	unsat = new int[numClauses];
+	unsatIndex = new int[numClauses];
+	int n = 0;
+	for(int c = 0; c < numClauses; c++){
+	  unsatIndex[c] = -1;
+	  clauseStart[c] = n;
+	  if(tautology[c]){
+		trueCount[c] = 1;
+		continue;
+	  }
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		int p = literals[i];
+		if(stamp[p] == c + 1)
+		  continue;
+		stamp[p] = c + 1;
+		occurs[fill[p]++] = c;
+		clauseLiterals[n++] = p;
+		if(isTrue(p)){
+		  trueCount[c]++;
+		  trueXor[c] ^= p;
+		}
+	  }
+	  clauseStart[c + 1] = n;
+	  if(trueCount[c] == 0)
+		addUnsat(c);
+	  else if(trueCount[c] == 1)
+		breaks[ClauseArena.var(trueXor[c])]++;
+	}
+	clauseStart[numClauses] = n;
+  }
+
+  private static boolean[] initial(PackedConjunction packed,
+								   Interpretation interpretation){
+	boolean[] assignment = new boolean[packed.numVariables()];
+	for(int v = 0; v < assignment.length; v++)
+	  assignment[v] = Boolean.TRUE.equals(interpretation.get(packed.getVariable(v)));
+	return assignment;
+  }
+
+  /** Flips variable <code>var</code>, updating the clauses it occurs
+      in. */
+  public void flip(int var){
+	int nowTrue = ClauseArena.literal(var, values[var]);
+	int nowFalse = ClauseArena.negate(nowTrue);
+	values[var] = !values[var];
+	flips++;
+
+	for(int i = occursStart[nowTrue]; i < occursStart[nowTrue + 1]; i++){
+	  int c = occurs[i];
+	  int count = trueCount[c]++;
+	  if(count == 0){
+		removeUnsat(c);
+		breaks[var]++;
+	  }
+	  else if(count == 1)
+		breaks[ClauseArena.var(trueXor[c])]--;
+	  trueXor[c] ^= nowTrue;
+	}
+	for(int i = occursStart[nowFalse]; i < occursStart[nowFalse + 1]; i++){
+	  int c = occurs[i];
+	  trueXor[c] ^= nowFalse;
+	  int count = --trueCount[c];
+	  if(count == 0){
+		addUnsat(c);
+		breaks[var]--;
+	  }
+	  else if(count == 1)
+		breaks[ClauseArena.var(trueXor[c])]++;
+	}
+  }
+
+  /** Sets variable <code>var</code> to <code>value</code>, flipping it
+      if necessary. */
+  public void set(int var, boolean value){
+	if(values[var] != value)
+	  flip(var);
+  }
+
+  /** Sets the variable of <code>variable</code> to
+      <code>value</code>.  Returns false if the variable does not occur
+      in the conjunction. */
+  public boolean set(Variable variable, boolean value){
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < numVars; v++){
+	  if(ids[v] == variable.getId()){
+		set(v, value);
+		return true;
+	  }
+	}
+	return false;
+  }
+
+  /** Returns the current value of variable <code>var</code>. */
+  public boolean value(int var){
+	return values[var];
+  }
+
+  /** Returns true if literal <code>literal</code> is currently
+      true. */
+  public boolean isTrue(int literal){
+	return values[ClauseArena.var(literal)] != ClauseArena.isNegated(literal);
+  }
+
+  /** Returns true if every clause is satisfied. */
+  public boolean isSatisfied(){
+	return numUnsat == 0;
+  }
+
+  /** Returns the number of unsatisfied clauses. */
+  public int numUnsatisfied(){
+	return numUnsat;
+  }
+
+  /** Returns the <code>i</code>th unsatisfied clause, for
+      <code>i &lt; numUnsatisfied()</code>.  The order changes as
+      variables are flipped. */
+  public int unsatisfiedClause(int i){
+	return unsat[i];
+  }
+
+  /** Returns the currently unsatisfied clauses as a new array. */
+  public int[] unsatisfiedClauses(){
+	return Arrays.copyOf(unsat, numUnsat);
+  }
+
+  /** Returns the number of distinct true literals of
+      <code>clause</code>.  Tautologies always count as one. */
+  public int trueCount(int clause){
+	return trueCount[clause];
+  }
+
+  /** Returns the only true literal of <code>clause</code>, which must
+      have exactly one and must not be a tautology. */
+  public int criticalLiteral(int clause){
+	return trueXor[clause];
+  }
+
+  /** Returns the number of clauses that would become unsatisfied if
+      <code>var</code> were flipped. */
+  public int breakCount(int var){
+	return breaks[var];
+  }
+
+  /** Returns the number of clauses that would become satisfied if
+      <code>var</code> were flipped. */
+  public int makeCount(int var){
+	return makes[var];
+  }
+
+  /** Returns the number of distinct literals of <code>clause</code>,
+      or 0 for a tautology. */
+  public int clauseSize(int clause){
+	return clauseStart[clause + 1] - clauseStart[clause];
+  }
+
+  /** Returns literal <code>i</code> of <code>clause</code>, for
+      <code>i &lt; clauseSize(clause)</code>.  Repeated literals are
+      left out. */
+  public int clauseLiteral(int clause, int i){
+	return clauseLiterals[clauseStart[clause] + i];
+  }
+
+  /** Returns the number of variables. */
+  public int numVariables(){
+	return numVars;
+  }
+
+  /** Returns the number of flips so far. */
+  public long getFlips(){
+	return flips;
+  }
+
+  /** Returns the conjunction being evaluated. */
+  public PackedConjunction getConjunction(){
+	return conjunction;
+  }
+
+  /** Returns the current assignment as an
+      <code>Interpretation</code>. */
+  public Interpretation getInterpretation(){
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < numVars; v++)
+	  interpretation.set(ids[v], values[v]);
+	return interpretation;
+  }
+
+  /* the make counts change only when a clause becomes unsatisfied or
+   * satisfied. */
+  private void addUnsat(int c){
+	unsatIndex[c] = numUnsat;
+	unsat[numUnsat++] = c;
+	for(int i = clauseStart[c]; i < clauseStart[c + 1]; i++)
+	  makes[ClauseArena.var(clauseLiterals[i])]++;
+  }
+
+  private void removeUnsat(int c){
+	for(int i = clauseStart[c]; i < clauseStart[c + 1]; i++)
+	  makes[ClauseArena.var(clauseLiterals[i])]--;
+	int last = unsat[--numUnsat];
+	int index = unsatIndex[c];
+	unsat[index] = last;
+	unsatIndex[last] = index;
+	unsatIndex[c] = -1;
+  }
+
+}
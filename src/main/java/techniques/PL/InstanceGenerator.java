@@ -0,0 +1,172 @@
+package techniques.PL;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/** Generates random k-SAT instances: <code>clauses</code> clauses of
+    <code>k</code> literals over <code>variables</code> variables, the
+    literals of a clause having distinct variables and random signs.
+    With <code>setPlanted(true)</code> only clauses satisfied by a
+    hidden random assignment are kept, so the instance is guaranteed
+    to be satisfiable (see <code>getPlantedSolution()</code>).
+
+    <p>The clauses are generated in blocks of <code>BLOCK</code>
+    clauses, in parallel, each block drawing from its own
+    <code>SplittableRandom</code> split off the seed in block order.
+    So the same seed always gives the same instance, whatever the
+    number of processors. */
+public class InstanceGenerator {
+
+  /** The number of clauses generated by one task. */
+  public static final int BLOCK = 1 << 12;
+
+  private final int variables;
+  private final int clauses;
+  private final int k;
+  private final long seed;
+  private boolean planted = false;
+
+  /** Constructs a generator of <code>clauses</code> clauses of
+      <code>k</code> literals over <code>variables</code>
+      variables. */
+  public InstanceGenerator(int variables, int clauses, int k, long seed){
+	if(k < 1 || k > variables)
+	  throw new IllegalArgumentException("Need 1 <= k <= variables, got k = "
+										 + k + ", variables = " + variables);
+	if(clauses < 0 || (long) clauses * k > Integer.MAX_VALUE - 8)
+	  throw new IllegalArgumentException("Bad number of clauses: " + clauses);
+	this.variables = variables;
+	this.clauses = clauses;
+	this.k = k;
+	this.seed = seed;
+  }
+
+  /** Makes the generator keep only clauses satisfied by the planted
+      solution. */
+  public void setPlanted(boolean planted){
+	this.planted = planted;
+  }
+
+  /** Returns the hidden assignment of planted instances, indexed by
+      variable.  It depends only on the seed. */
+  public boolean[] getPlantedSolution(){
+	SplittableRandom random = new SplittableRandom(seed);
+	boolean[] solution = new boolean[variables];
+	for(int v = 0; v < variables; v++)
+	  solution[v] = random.nextBoolean();
+	return solution;
+  }
+
+  /** Generates the instance into a new <code>ClauseArena</code>. */
+  public ClauseArena generate(){
+	final int[] literals = new int[clauses * k];
+	final SplittableRandom[] randoms = blockRandoms();
+	final boolean[] solution = planted ? getPlantedSolution() : null;
+	IntStream.range(0, randoms.length).parallel().forEach(new IntConsumer(){
+		public void accept(int block){
+		  int from = block * BLOCK;
+		  int to = Math.min(clauses, from + BLOCK);
+		  fill(randoms[block], solution, literals, from * k, to - from);
+		}
+	  });
+	return ClauseArena.fixedWidth(literals, k, variables);
+  }
+
+  /** Generates the instance and writes it to <code>out</code> in DIMACS
+      format, without holding all of it in memory.  The stream is not
+      closed. */
+  public void writeDimacs(OutputStream out) throws IOException{
+	final SplittableRandom[] randoms = blockRandoms();
+	final boolean[] solution = planted ? getPlantedSolution() : null;
+	out.write(("p cnf " + variables + " " + clauses + "\n").getBytes("US-ASCII"));
+
+	/* format a few blocks per processor at a time, then write them in
+	 * order */
+	int batch = 4 * Runtime.getRuntime().availableProcessors();
+	final byte[][] text = new byte[batch][];
+	final int[] length = new int[batch];
+	for(int first = 0; first < randoms.length; first += batch){
+	  final int base = first;
+	  int n = Math.min(batch, randoms.length - first);
+	  IntStream.range(0, n).parallel().forEach(new IntConsumer(){
+		  public void accept(int i){
+			int block = base + i;
+			int from = block * BLOCK;
+			int count = Math.min(clauses, from + BLOCK) - from;
+			int[] literals = new int[count * k];
+			fill(randoms[block], solution, literals, 0, count);
+			ByteBuffer buffer = ByteBuffer.wrap(text[i] == null
+												? new byte[BLOCK * (12 * k + 2)]
+												: text[i]);
+			for(int c = 0; c < count; c++){
+			  for(int j = c * k; j < (c + 1) * k; j++){
+				int var = ClauseArena.var(literals[j]) + 1;
+				Dimacs.putInt(buffer, ClauseArena.isNegated(literals[j]) ? -var : var);
+				buffer.put((byte) ' ');
+			  }
+			  buffer.put((byte) '0');
+			  buffer.put((byte) '\n');
+			}
+			text[i] = buffer.array();
+			length[i] = buffer.position();
+		  }
+		});
+	  for(int i = 0; i < n; i++)
+		out.write(text[i], 0, length[i]);
+	}
+	out.flush();
+  }
+
+  /** Writes the instance to <code>file</code> in DIMACS format. */
+  public void writeDimacs(File file) throws IOException{
+	OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+	try{
+	  writeDimacs(out);
+	}
+	finally{
+	  out.close();
+	}
+  }
+
+  /* one generator per block, split off the seed in block order.  The
+   * first split is skipped: getPlantedSolution() uses the seed
+   * itself. */
+  private SplittableRandom[] blockRandoms(){
+	SplittableRandom root = new SplittableRandom(seed);
+	root.split();
+	SplittableRandom[] randoms = new SplittableRandom[(clauses + BLOCK - 1) / BLOCK];
+	for(int i = 0; i < randoms.length; i++)
+	  randoms[i] = root.split();
+	return randoms;
+  }
+
+  /* writes count clauses into literals from offset on. */
+  private void fill(SplittableRandom random, boolean[] solution,
+					int[] literals, int offset, int count){
+	for(int c = 0; c < count; c++){
+	  int start = offset + c * k;
+	  boolean satisfied;
+	  do{
+		satisfied = (solution == null);
+		for(int j = 0; j < k; j++){
+		  int var;
+		  boolean repeated;
+		  do{
+			var = random.nextInt(variables);
+			repeated = false;
+			for(int i = start; i < start + j && !repeated; i++)
+			  repeated = (ClauseArena.var(literals[i]) == var);
+		  } while(repeated);
+		  boolean negated = random.nextBoolean();
+		  literals[start + j] = ClauseArena.literal(var, negated);
+		  if(solution != null && solution[var] != negated)
+			satisfied = true;
+		}
+	  } while(!satisfied);
+	}
+  }
+
+}
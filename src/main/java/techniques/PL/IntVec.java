@@ -0,0 +1,57 @@
+package techniques.PL;
+
+import java.util.*;
+
+/* A growable array of ints, used by the solvers to avoid boxing. */
+final class IntVec {
+
+  int[] data;
+  int size = 0;
+
+  IntVec(){
+	this(8);
+  }
+
+  IntVec(int capacity){
+	data = new int[Math.max(1, capacity)];
+  }
+
+  int size(){
+	return size;
+  }
+
+  int get(int i){
+	return data[i];
+  }
+
+  void set(int i, int value){
+	data[i] = value;
+  }
+
+  void push(int value){
+	if(size == data.length)
+	  data = Arrays.copyOf(data, size * 2);
+	data[size++] = value;
+  }
+
+  int pop(){
+	return data[--size];
+  }
+
+  int last(){
+	return data[size - 1];
+  }
+
+  void shrink(int newSize){
+	size = newSize;
+  }
+
+  void clear(){
+	size = 0;
+  }
+
+  int[] toArray(){
+	return Arrays.copyOf(data, size);
+  }
+
+}
@@ -0,0 +1,347 @@
+package techniques.PL;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Looks for a satisfying assignment by stochastic local search:
+    start from a random assignment and flip one variable of an
+    unsatisfied clause at a time.  It cannot prove that clauses are
+    unsatisfiable, but on large satisfiable instances, such as random
+    3-SAT near the threshold or under-constrained encodings, it is
+    often much faster than <code>Solver</code>.
+
+    <p>Two ways of picking the variable to flip are offered:
+    <ul>
+    <li><code>PROBSAT</code> (the default) picks a variable of the clause
+    with a probability that falls with its break count <i>b</i>, as
+    (1 + <i>b</i>)<sup>-cb</sup> (see
+    <code>setBreakExponent()</code>).
+    <li><code>WALKSAT</code> flips a variable that breaks nothing if
+    there is one, and otherwise, with the probability given by
+    <code>setNoise()</code>, a random variable of the clause, or else
+    one with the fewest breaks.
+    </ul>
+    Both read the break counts that the
+    <code>IncrementalEvaluator</code> keeps up to date, so a step costs
+    the size of one clause plus the flip itself.
+
+    <p>Several independent walkers, each with its own seed and
+    evaluator, run in parallel.  <code>solve()</code> stops at the first
+    satisfying assignment or at the deadline, whichever comes first, and
+    <code>getInterpretation()</code> returns the best assignment any
+    walker found: the one with the fewest unsatisfied clauses. */
+public class LocalSearch {
+
+  /** Pick flips by probSAT. */
+  public static final int PROBSAT = 0;
+  /** Pick flips by WalkSAT/SKC. */
+  public static final int WALKSAT = 1;
+
+  /* the walkers check the deadline and the stop flag this often */
+  private static final int CHECK_INTERVAL = 1024;
+
+  /* break counts up to this use the probSAT table; larger ones are
+   * never picked unless the whole clause is as bad */
+  private static final int MAX_BREAK = 64;
+
+  private final PackedConjunction conjunction;
+  private final int walkers;
+  private int algorithm = PROBSAT;
+  private double breakExponent = 2.38;
+  private double noise = 0.567;
+  private long seed = 0x5DEECE66DL;
+  private volatile boolean stopped = false;
+
+  private boolean[] best;
+  private int bestUnsatisfied = -1;
+  private long flips = 0;
+
+  /** Constructs a search of <code>conjunction</code> with one walker
+      per available processor. */
+  public LocalSearch(Conjunction conjunction){
+	this(conjunction, Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Constructs a search of <code>conjunction</code> with
+      <code>walkers</code> walkers. */
+  public LocalSearch(Conjunction conjunction, int walkers){
+	if(walkers < 1)
+	  throw new IllegalArgumentException("Need at least one walker: " + walkers);
+	this.conjunction = PackedConjunction.pack(conjunction);
+	this.walkers = walkers;
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code> found within <code>timeout</code>, or
+      <code>null</code> if none was found, using one walker per
+      available processor. */
+  public static Interpretation solve(Conjunction conjunction, long timeout, TimeUnit unit){
+	LocalSearch search = new LocalSearch(conjunction);
+	if(search.solve(timeout, unit) != Boolean.TRUE)
+	  return null;
+	return search.getInterpretation();
+  }
+
+  /** Chooses <code>PROBSAT</code> or <code>WALKSAT</code>. */
+  public void setAlgorithm(int algorithm){
+	if(algorithm != PROBSAT && algorithm != WALKSAT)
+	  throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+	this.algorithm = algorithm;
+  }
+
+  /** Sets the exponent <i>cb</i> of probSAT.  The default, 2.38,
+      suits 3-SAT; longer clauses want larger values, e.g. 3.0 for
+      5-SAT. */
+  public void setBreakExponent(double cb){
+	if(!(cb > 0))
+	  throw new IllegalArgumentException("Break exponent must be positive: " + cb);
+	breakExponent = cb;
+  }
+
+  /** Sets the probability that WalkSAT makes a random step when every
+      variable of the clause breaks something. */
+  public void setNoise(double noise){
+	if(!(noise >= 0 && noise <= 1))
+	  throw new IllegalArgumentException("Noise must be within 0..1: " + noise);
+	this.noise = noise;
+  }
+
+  /** Seeds the walkers; walker <code>i</code> gets a seed derived from
+      <code>seed</code> and <code>i</code>. */
+  public void setSeed(long seed){
+	this.seed = seed;
+  }
+
+  /** Runs the walkers until one finds a satisfying assignment or
+      <code>timeout</code> runs out; a timeout of 0 means no limit.
+      Returns <code>Boolean.TRUE</code> if one was found, and
+      <code>null</code> otherwise, since local search never proves
+      unsatisfiability. */
+  public Boolean solve(long timeout, TimeUnit unit){
+	stopped = false;
+	best = null;
+	bestUnsatisfied = -1;
+	flips = 0;
+	final long deadline = (timeout > 0) ? System.nanoTime() + unit.toNanos(timeout)
+	  : Long.MAX_VALUE;
+	final double[] probabilities = probabilities();
+
+	ExecutorService executor = Executors.newFixedThreadPool(walkers, new ThreadFactory(){
+		public Thread newThread(Runnable r){
+		  Thread thread = new Thread(r, "local-search");
+		  thread.setDaemon(true);
+		  return thread;
+		}
+	  });
+	List futures = new ArrayList(walkers);
+	for(int i = 0; i < walkers; i++){
+	  final long walkerSeed = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+	  futures.add(executor.submit(new Callable(){
+		  public Object call(){
+			return new Walker(walkerSeed, probabilities).run(deadline);
+		  }
+		}));
+	}
+	try{
+	  for(int i = 0; i < walkers; i++){
+		Walker walker = (Walker) ((Future) futures.get(i)).get();
+		flips += walker.evaluator.getFlips();
+		if(bestUnsatisfied < 0 || walker.bestUnsatisfied < bestUnsatisfied){
+		  bestUnsatisfied = walker.bestUnsatisfied;
+		  best = walker.best;
+		}
+	  }
+	}
+	catch(InterruptedException e){
+	  Thread.currentThread().interrupt();
+	}
+	catch(ExecutionException e){
+	  throw new RuntimeException("Local search failed", e.getCause());
+	}
+	finally{
+	  interrupt();
+	  executor.shutdown();
+	}
+	return (bestUnsatisfied == 0) ? Boolean.TRUE : null;
+  }
+
+  /* the probSAT weight of each break count, and 0 beyond MAX_BREAK. */
+  private double[] probabilities(){
+	double[] table = new double[MAX_BREAK + 2];
+	for(int b = 0; b <= MAX_BREAK; b++)
+	  table[b] = Math.pow(1 + b, -breakExponent);
+	return table;
+  }
+
+  /** Asks a running <code>solve()</code> to give up as soon as
+      possible.  May be called from any thread. */
+  public void interrupt(){
+	stopped = true;
+  }
+
+  /** Returns the best assignment found by the last
+      <code>solve()</code>, satisfying or not, as an
+      <code>Interpretation</code>. */
+  public Interpretation getInterpretation(){
+	if(best == null)
+	  throw new IllegalStateException("No assignment yet");
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < best.length; v++)
+	  interpretation.set(ids[v], best[v]);
+	return interpretation;
+  }
+
+  /** Returns a copy of the best assignment found by the last
+      <code>solve()</code>, indexed by arena variable. */
+  public boolean[] getModel(){
+	if(best == null)
+	  throw new IllegalStateException("No assignment yet");
+	return best.clone();
+  }
+
+  /** Returns the number of clauses the best assignment leaves
+      unsatisfied, or -1 before <code>solve()</code>. */
+  public int getBestUnsatisfied(){
+	return bestUnsatisfied;
+  }
+
+  /** Returns the number of flips all walkers made in the last
+      <code>solve()</code>. */
+  public long getFlips(){
+	return flips;
+  }
+
+  /** Returns the packed clauses being searched. */
+  public PackedConjunction getConjunction(){
+	return conjunction;
+  }
+
+  /* one walk from a random assignment. */
+  private class Walker {
+	final IncrementalEvaluator evaluator;
+	final double[] probabilities;
+	long state;
+	boolean[] best;
+	int bestUnsatisfied;
+
+	/* the variables whose value differs from best, kept so that saving
+	 * a new best only copies those */
+	final int[] differ;
+	final int[] differIndex;
+	int numDiffer = 0;
+
+	Walker(long seed, double[] probabilities){
+	  this.state = (seed == 0) ? 1 : seed;
+	  this.probabilities = probabilities;
+	  int n = conjunction.numVariables();
+	  best = new boolean[n];
+	  for(int v = 0; v < n; v++)
+		best[v] = (next() & 1) != 0;
+	  evaluator = new IncrementalEvaluator(conjunction, best);
+	  bestUnsatisfied = evaluator.numUnsatisfied();
+	  differ = new int[n];
+	  differIndex = new int[n];
+	  Arrays.fill(differIndex, -1);
+	}
+
+	Walker run(long deadline){
+	  double[] weights = new double[8];
+	  while(bestUnsatisfied > 0){
+		if(evaluator.getFlips() % CHECK_INTERVAL == 0
+		   && (stopped || System.nanoTime() - deadline >= 0))
+		  break;
+		int clause = evaluator.unsatisfiedClause(nextInt(evaluator.numUnsatisfied()));
+		int size = evaluator.clauseSize(clause);
+		if(size == 0)
+		  break; // an empty clause: nothing to flip
+		if(size > weights.length)
+		  weights = new double[Math.max(size, 2 * weights.length)];
+		int var = (algorithm == PROBSAT) ? pickProbSat(clause, size, weights)
+		  : pickWalkSat(clause, size);
+		flip(var);
+		if(evaluator.numUnsatisfied() < bestUnsatisfied)
+		  saveBest();
+	  }
+	  if(bestUnsatisfied == 0)
+		stopped = true;
+	  return this;
+	}
+
+	int pickProbSat(int clause, int size, double[] weights){
+	  double sum = 0;
+	  for(int i = 0; i < size; i++){
+		int b = evaluator.breakCount(ClauseArena.var(evaluator.clauseLiteral(clause, i)));
+		sum += weights[i] = probabilities[Math.min(b, MAX_BREAK + 1)];
+	  }
+	  if(sum == 0)
+		return ClauseArena.var(evaluator.clauseLiteral(clause, nextInt(size)));
+	  double r = nextDouble() * sum;
+	  for(int i = 0; i < size - 1; i++){
+		r -= weights[i];
+		if(r < 0)
+		  return ClauseArena.var(evaluator.clauseLiteral(clause, i));
+	  }
+	  return ClauseArena.var(evaluator.clauseLiteral(clause, size - 1));
+	}
+
+	int pickWalkSat(int clause, int size){
+	  int bestVar = -1, bestBreak = Integer.MAX_VALUE, ties = 0;
+	  for(int i = 0; i < size; i++){
+		int v = ClauseArena.var(evaluator.clauseLiteral(clause, i));
+		int b = evaluator.breakCount(v);
+		if(b < bestBreak){
+		  bestVar = v;
+		  bestBreak = b;
+		  ties = 1;
+		}
+		else if(b == bestBreak && nextInt(++ties) == 0)
+		  bestVar = v;
+	  }
+	  if(bestBreak > 0 && nextDouble() < noise)
+		return ClauseArena.var(evaluator.clauseLiteral(clause, nextInt(size)));
+	  return bestVar;
+	}
+
+	void flip(int var){
+	  evaluator.flip(var);
+	  if(differIndex[var] < 0){
+		differIndex[var] = numDiffer;
+		differ[numDiffer++] = var;
+	  }
+	  else{
+		int last = differ[--numDiffer];
+		differ[differIndex[var]] = last;
+		differIndex[last] = differIndex[var];
+		differIndex[var] = -1;
+	  }
+	}
+
+	void saveBest(){
+	  for(int i = 0; i < numDiffer; i++){
+		int v = differ[i];
+		best[v] = evaluator.value(v);
+		differIndex[v] = -1;
+	  }
+	  numDiffer = 0;
+	  bestUnsatisfied = evaluator.numUnsatisfied();
+	}
+
+	/* xorshift64*, cheaper than java.util.Random and not shared */
+	long next(){
+	  state ^= state >>> 12;
+	  state ^= state << 25;
+	  state ^= state >>> 27;
+	  return state * 0x2545F4914F6CDD1DL;
+	}
+
+	int nextInt(int bound){
+	  return (int) (((next() >>> 33) * bound) >>> 31);
+	}
+
+	double nextDouble(){
+	  return (next() >>> 11) * 0x1.0p-53;
+	}
+  }
+
+}
@@ -0,0 +1,314 @@
+package techniques.PL;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/** Clauses kept in a file and read through a memory mapping, so that
+    clause sets far larger than the Java heap can be stored, shared and
+    reopened.  Nothing but a few buffer objects lives on the heap, and
+    the operating system pages the clauses in and out as they are read.
+
+    <p>The file holds a 32-byte header, then every clause as its size
+    followed by its literals, one little-endian <code>int</code> each,
+    then an index of the byte position of every clause, one
+    <code>long</code> each:
+
+    <pre>
+    int magic 'CLS1', int version, int variables, int clauses,
+    long literals, long position of the index
+    </pre>
+
+    <p>A store is written once with a <code>Writer</code> (or
+    <code>Dimacs.readStore()</code>, or <code>write()</code>) and is
+    read-only afterwards; it may be read by any number of threads at
+    once.  <code>StoredConjunction</code> gives it a
+    <code>Sentence</code> view, and <code>Solver</code> accepts it
+    directly.  The mapping is released only when the store is garbage
+    collected. */
+public final class MappedClauseStore implements ClauseStore {
+
+  private static final int MAGIC = 0x434C5331; // "CLS1"
+  private static final int VERSION = 1;
+  private static final int HEADER = 32;
+
+  /* the file is mapped in segments of this many bytes; being a
+   * multiple of 8, no int or long spans two segments */
+  private static final int SEGMENT_BITS = 30;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+  private final File file;
+  private final ByteBuffer[] segments;
+  private final int numVariables;
+  private final int numClauses;
+  private final long numLiterals;
+  private final long index;
+
+  private MappedClauseStore(File file, ByteBuffer[] segments){
+	this.file = file;
+	this.segments = segments;
+	this.numVariables = getInt(8);
+	this.numClauses = getInt(12);
+	this.numLiterals = getLong(16);
+	this.index = getLong(24);
+  }
+
+  /** Opens the store in <code>file</code>.
+
+      @throws IOException if the file is not a clause store */
+  public static MappedClauseStore open(File file) throws IOException{
+	RandomAccessFile raf = new RandomAccessFile(file, "r");
+	try{
+	  FileChannel channel = raf.getChannel();
+	  long size = channel.size();
+	  if(size < HEADER)
+		throw new IOException("Not a clause store: " + file);
+	  ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+	  for(int i = 0; i < segments.length; i++){
+		long position = (long) i << SEGMENT_BITS;
+		segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+								  Math.min(1L << SEGMENT_BITS, size - position))
+		  .order(ByteOrder.LITTLE_ENDIAN);
+	  }
+	  if(segments[0].getInt(0) != MAGIC)
+		throw new IOException("Not a clause store: " + file);
+	  if(segments[0].getInt(4) != VERSION)
+		throw new IOException("Unsupported clause store version "
+							  + segments[0].getInt(4) + ": " + file);
+	  MappedClauseStore store = new MappedClauseStore(file, segments);
+	  if(store.index < HEADER || store.index + 8L * store.numClauses != size)
+		throw new IOException("Truncated clause store: " + file);
+	  return store;
+	}
+	finally{
+	  // the mapping stays valid after the channel is closed
+	  raf.close();
+	}
+  }
+
+  /** Writes the clauses of <code>store</code>, e.g. a
+      <code>ClauseArena</code>, to <code>file</code> and opens the
+      result. */
+  public static MappedClauseStore write(ClauseStore store, File file) throws IOException{
+	Writer writer = new Writer(file);
+	try{
+	  writer.ensureVariables(store.numVariables());
+	  for(int c = 0; c < store.numClauses(); c++)
+		writer.addClause(store.clause(c));
+	  return writer.finish();
+	}
+	finally{
+	  writer.close();
+	}
+  }
+
+  /** Streams clauses into a new store file.  The clause under
+      construction is the only one held on the heap.  Call
+      <code>finish()</code> to complete the file; <code>close()</code>
+      without it leaves an incomplete file that <code>open()</code>
+      rejects. */
+  public static final class Writer implements ClauseSink, Closeable {
+	private static final int BUFFER = 1 << 16;
+
+	private final File file;
+	private final File indexFile;
+	private final FileChannel data;
+	private final FileChannel positions;
+	private final ByteBuffer dataBuffer =
+	  ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer indexBuffer =
+	  ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+	private final IntVec clause = new IntVec();
+	private boolean open = false;
+	private boolean closed = false;
+
+	private long position = HEADER;
+	private int numVariables = 0;
+	private int numClauses = 0;
+	private long numLiterals = 0;
+
+	/** Creates <code>file</code>, replacing any file of that name. */
+	public Writer(File file) throws IOException{
+	  this.file = file;
+	  this.indexFile = new File(file.getPath() + ".index");
+	  this.data = new RandomAccessFile(file, "rw").getChannel();
+	  this.positions = new RandomAccessFile(indexFile, "rw").getChannel();
+	  data.truncate(0);
+	  positions.truncate(0);
+	  data.position(HEADER);
+	}
+
+	public void beginClause(){
+	  if(open)
+		throw new IllegalStateException("Clause already open.");
+	  open = true;
+	}
+
+	public void addLiteral(int literal){
+	  if(!open)
+		throw new IllegalStateException("No open clause.");
+	  if(literal < 0)
+		throw new IllegalArgumentException("Bad literal: " + literal);
+	  clause.push(literal);
+	  if(ClauseArena.var(literal) >= numVariables)
+		numVariables = ClauseArena.var(literal) + 1;
+	}
+
+	public int endClause() throws IOException{
+	  if(!open)
+		throw new IllegalStateException("No open clause.");
+	  open = false;
+	  if(numClauses == Integer.MAX_VALUE)
+		throw new IllegalStateException("Too many clauses");
+	  if(indexBuffer.remaining() < 8)
+		drain(indexBuffer, positions);
+	  indexBuffer.putLong(position);
+	  putInt(clause.size());
+	  for(int i = 0; i < clause.size(); i++)
+		putInt(clause.get(i));
+	  position += 4L * (clause.size() + 1);
+	  numLiterals += clause.size();
+	  clause.clear();
+	  return numClauses++;
+	}
+
+	/** Appends a clause made of all of <code>literals</code> and
+		returns its index. */
+	public int addClause(int[] literals) throws IOException{
+	  beginClause();
+	  for(int i = 0; i < literals.length; i++)
+		addLiteral(literals[i]);
+	  return endClause();
+	}
+
+	public void ensureVariables(int n){
+	  numVariables = Math.max(numVariables, n);
+	}
+
+	private void putInt(int value) throws IOException{
+	  if(dataBuffer.remaining() < 4)
+		drain(dataBuffer, data);
+	  dataBuffer.putInt(value);
+	}
+
+	/** Completes the file and opens it. */
+	public MappedClauseStore finish() throws IOException{
+	  if(open)
+		throw new IllegalStateException("Clause still open.");
+	  if(closed)
+		throw new IllegalStateException("Writer closed.");
+	  drain(dataBuffer, data);
+	  drain(indexBuffer, positions);
+	  // the index follows the clauses, aligned to 8 bytes
+	  long index = (position + 7) & ~7L;
+	  long length = positions.size();
+	  data.position(index);
+	  for(long done = 0; done < length; )
+		done += positions.transferTo(done, length - done, data);
+	  ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+	  header.putInt(MAGIC).putInt(VERSION).putInt(numVariables).putInt(numClauses)
+		.putLong(numLiterals).putLong(index);
+	  data.position(0);
+	  drain(header, data);
+	  close();
+	  return open(file);
+	}
+
+	/** Closes the files, leaving the store incomplete unless
+		<code>finish()</code> was called. */
+	public void close() throws IOException{
+	  if(closed)
+		return;
+	  closed = true;
+	  try{
+		data.close();
+	  }
+	  finally{
+		positions.close();
+		indexFile.delete();
+	  }
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException{
+	  buffer.flip();
+	  while(buffer.hasRemaining())
+		channel.write(buffer);
+	  buffer.clear();
+	}
+  }
+
+  private int getInt(long position){
+	return segments[(int) (position >>> SEGMENT_BITS)].getInt((int) (position & SEGMENT_MASK));
+  }
+
+  private long getLong(long position){
+	return segments[(int) (position >>> SEGMENT_BITS)].getLong((int) (position & SEGMENT_MASK));
+  }
+
+  /* the byte position of the size of clause c. */
+  private long position(int clause){
+	if(clause < 0 || clause >= numClauses)
+	  throw new IndexOutOfBoundsException("Clause " + clause + " of " + numClauses);
+	return getLong(index + 8L * clause);
+  }
+
+  public int numVariables(){
+	return numVariables;
+  }
+
+  public int numClauses(){
+	return numClauses;
+  }
+
+  /** Returns the total number of literals over all clauses. */
+  public long numLiterals(){
+	return numLiterals;
+  }
+
+  public int clauseSize(int clause){
+	return getInt(position(clause));
+  }
+
+  public int clauseLiteral(int clause, int i){
+	long position = position(clause);
+	if(i < 0 || i >= getInt(position))
+	  throw new IndexOutOfBoundsException("Literal " + i + " of clause " + clause);
+	return getInt(position + 4 + 4L * i);
+  }
+
+  public int[] clause(int clause){
+	long position = position(clause);
+	int[] literals = new int[getInt(position)];
+	for(int i = 0; i < literals.length; i++)
+	  literals[i] = getInt(position + 4 + 4L * i);
+	return literals;
+  }
+
+  /** Returns the size of the file, which is mapped, not on the heap. */
+  public long bytes(){
+	return index + 8L * numClauses;
+  }
+
+  /** Returns the file holding the clauses. */
+  public File getFile(){
+	return file;
+  }
+
+  /** Returns a <code>ClauseArena</code> with the same clauses, on the
+      heap. */
+  public ClauseArena toArena(){
+	if(numLiterals > Integer.MAX_VALUE - 8)
+	  throw new IllegalStateException("Too many literals for an arena: " + numLiterals);
+	ClauseArena arena = new ClauseArena(Math.max(1, numClauses), (int) Math.max(1, numLiterals));
+	arena.ensureVariables(numVariables);
+	for(int c = 0; c < numClauses; c++)
+	  arena.addClause(clause(c));
+	return arena;
+  }
+
+  public String toString(){
+	return "MappedClauseStore[" + file + ", " + numClauses + " clauses, "
+	  + numVariables + " variables]";
+  }
+
+}
@@ -0,0 +1,340 @@
+package techniques.PL;
+
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+import com.sun.net.httpserver.*;
+
+/** Counters and timers for parsing, encoding, preprocessing and
+    solving, shared by all threads of the JVM (see
+    <code>global()</code>).
+
+    <p>The counters are <code>LongAdder</code>s, which are striped over
+    cells, so threads that update them at the same time do not contend.
+    The solvers keep their own counts while they run and add them here
+    once per <code>solve()</code>, so the counters cost nothing in the
+    inner loops.  Only the histogram of learned clause sizes is
+    updated during the search, for one learned clause in
+    <code>getSampling()</code>; a sampling of 0 turns it off.
+
+    <p>A snapshot can be read through the getters, through JMX (see
+    <code>registerMBean()</code>), or as text, one <code>name value</code>
+    line per metric, from <code>dump()</code> or over HTTP from
+    <code>serve()</code>. */
+public class Metrics implements MetricsMBean {
+
+  /** Phases timed by <code>beginPhase()</code> and
+      <code>endPhase()</code>. */
+  public static final int PARSE = 0;
+  public static final int ENCODE = 1;
+  public static final int PREPROCESS = 2;
+  public static final int SOLVE = 3;
+
+  private static final String[] PHASES = { "parse", "encode", "preprocess", "solve" };
+
+  /** Upper bounds of the buckets of the learned clause size
+      histogram; the last bucket takes the rest. */
+  private static final int[] SIZE_BOUNDS = { 1, 2, 4, 8, 16, 32, 64, 128 };
+
+  private static final Metrics GLOBAL = new Metrics();
+
+  private volatile boolean enabled = true;
+  private volatile int sampling = 16;
+
+  private final LongAdder decisions = new LongAdder();
+  private final LongAdder propagations = new LongAdder();
+  private final LongAdder conflicts = new LongAdder();
+  private final LongAdder restarts = new LongAdder();
+  private final LongAdder learnts = new LongAdder();
+  private final LongAdder learntLiterals = new LongAdder();
+  private final LongAdder evaluations = new LongAdder();
+  private final LongAdder solves = new LongAdder();
+  private final LongAdder[] sizes = new LongAdder[SIZE_BOUNDS.length + 1];
+  private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+  private final LongAdder[] phaseCounts = new LongAdder[PHASES.length];
+  private final AtomicLong peakArenaBytes = new AtomicLong();
+  private final AtomicLong peakSolverBytes = new AtomicLong();
+
+  /** Constructs a set of metrics of its own, e.g. for one benchmark
+      run.  The library code reports to <code>global()</code>. */
+  public Metrics(){
+	for(int i = 0; i < sizes.length; i++)
+	  sizes[i] = new LongAdder();
+	for(int i = 0; i < PHASES.length; i++){
+	  phaseNanos[i] = new LongAdder();
+	  phaseCounts[i] = new LongAdder();
+	}
+  }
+
+  /** Returns the metrics the parsers, encoders and solvers report
+      to. */
+  public static Metrics global(){
+	return GLOBAL;
+  }
+
+  /** Turns reporting on or off.  When off, nothing is recorded. */
+  public void setEnabled(boolean enabled){
+	this.enabled = enabled;
+  }
+
+  public boolean isEnabled(){
+	return enabled;
+  }
+
+  /** Records the size of one learned clause in
+      <code>sampling</code>, or none if <code>sampling</code> is 0. */
+  public void setSampling(int sampling){
+	if(sampling < 0)
+	  throw new IllegalArgumentException("Negative sampling: " + sampling);
+	this.sampling = sampling;
+  }
+
+  public int getSampling(){
+	return sampling;
+  }
+
+  /** Returns a start time for <code>endPhase()</code>. */
+  public long beginPhase(){
+	return enabled ? System.nanoTime() : 0;
+  }
+
+  /** Adds the time since <code>start</code> to <code>phase</code>. */
+  public void endPhase(int phase, long start){
+	if(enabled && start != 0){
+	  phaseNanos[phase].add(System.nanoTime() - start);
+	  phaseCounts[phase].increment();
+	}
+  }
+
+  /* adds what a solver did in one solve(). */
+  void addSearch(long decisions, long propagations, long conflicts, long restarts,
+				 long learnts, long learntLiterals){
+	if(!enabled)
+	  return;
+	this.decisions.add(decisions);
+	this.propagations.add(propagations);
+	this.conflicts.add(conflicts);
+	this.restarts.add(restarts);
+	this.learnts.add(learnts);
+	this.learntLiterals.add(learntLiterals);
+	solves.increment();
+  }
+
+  /* records the size of a sampled learned clause. */
+  void sampleLearnt(int size){
+	int bucket = 0;
+	while(bucket < SIZE_BOUNDS.length && size > SIZE_BOUNDS[bucket])
+	  bucket++;
+	sizes[bucket].increment();
+  }
+
+  /** Counts one evaluation of a set of clauses under an
+      interpretation. */
+  public void addEvaluation(){
+	if(enabled)
+	  evaluations.increment();
+  }
+
+  /** Records the memory of a clause arena or store, keeping the
+      peak. */
+  public void recordArena(ClauseStore arena){
+	if(enabled)
+	  accumulateMax(peakArenaBytes, arena.bytes());
+  }
+
+  /* records the clause memory of a solver, keeping the peak. */
+  void recordSolverBytes(long bytes){
+	if(enabled)
+	  accumulateMax(peakSolverBytes, bytes);
+  }
+
+  private static void accumulateMax(AtomicLong peak, long value){
+	long old;
+	while(value > (old = peak.get()) && !peak.compareAndSet(old, value))
+	  ;
+  }
+
+  /** Sets every counter back to zero. */
+  public void reset(){
+	decisions.reset();
+	propagations.reset();
+	conflicts.reset();
+	restarts.reset();
+	learnts.reset();
+	learntLiterals.reset();
+	evaluations.reset();
+	solves.reset();
+	for(int i = 0; i < sizes.length; i++)
+	  sizes[i].reset();
+	for(int i = 0; i < PHASES.length; i++){
+	  phaseNanos[i].reset();
+	  phaseCounts[i].reset();
+	}
+	peakArenaBytes.set(0);
+	peakSolverBytes.set(0);
+  }
+
+  public long getDecisions(){
+	return decisions.sum();
+  }
+
+  public long getPropagations(){
+	return propagations.sum();
+  }
+
+  public long getConflicts(){
+	return conflicts.sum();
+  }
+
+  public long getRestarts(){
+	return restarts.sum();
+  }
+
+  public long getLearntClauses(){
+	return learnts.sum();
+  }
+
+  /** Returns the average size of the learned clauses. */
+  public double getAverageLearntSize(){
+	long n = learnts.sum();
+	return (n == 0) ? 0 : (double) learntLiterals.sum() / n;
+  }
+
+  public long getEvaluations(){
+	return evaluations.sum();
+  }
+
+  public long getSolves(){
+	return solves.sum();
+  }
+
+  /** Returns the number of decisions per second spent solving. */
+  public double getDecisionsPerSecond(){
+	return perSolveSecond(decisions.sum());
+  }
+
+  /** Returns the number of propagations per second spent solving. */
+  public double getPropagationsPerSecond(){
+	return perSolveSecond(propagations.sum());
+  }
+
+  private double perSolveSecond(long count){
+	long nanos = phaseNanos[SOLVE].sum();
+	return (nanos == 0) ? 0 : count * 1e9 / nanos;
+  }
+
+  public long getPeakArenaBytes(){
+	return peakArenaBytes.get();
+  }
+
+  public long getPeakSolverBytes(){
+	return peakSolverBytes.get();
+  }
+
+  public double getParseSeconds(){
+	return phaseNanos[PARSE].sum() / 1e9;
+  }
+
+  public double getEncodeSeconds(){
+	return phaseNanos[ENCODE].sum() / 1e9;
+  }
+
+  public double getPreprocessSeconds(){
+	return phaseNanos[PREPROCESS].sum() / 1e9;
+  }
+
+  public double getSolveSeconds(){
+	return phaseNanos[SOLVE].sum() / 1e9;
+  }
+
+  /** Returns the sampled learned clause sizes, bucket by bucket: size
+      1, 2, 3-4, 5-8, ..., 65-128, and above. */
+  public long[] getLearntSizeHistogram(){
+	long[] result = new long[sizes.length];
+	for(int i = 0; i < sizes.length; i++)
+	  result[i] = sizes[i].sum();
+	return result;
+  }
+
+  /** Returns a snapshot of every metric, one <code>name value</code>
+      line each. */
+  public String dump(){
+	StringBuilder sb = new StringBuilder(1024);
+	line(sb, "solver_solves", getSolves());
+	line(sb, "solver_decisions", getDecisions());
+	line(sb, "solver_propagations", getPropagations());
+	line(sb, "solver_conflicts", getConflicts());
+	line(sb, "solver_restarts", getRestarts());
+	line(sb, "solver_learnt_clauses", getLearntClauses());
+	line(sb, "solver_learnt_size_avg", getAverageLearntSize());
+	line(sb, "solver_decisions_per_second", getDecisionsPerSecond());
+	line(sb, "solver_propagations_per_second", getPropagationsPerSecond());
+	long[] histogram = getLearntSizeHistogram();
+	for(int i = 0; i < histogram.length; i++){
+	  String le = (i < SIZE_BOUNDS.length) ? Integer.toString(SIZE_BOUNDS[i]) : "inf";
+	  line(sb, "solver_learnt_size_sampled{le=\"" + le + "\"}", histogram[i]);
+	}
+	line(sb, "clause_evaluations", getEvaluations());
+	line(sb, "arena_bytes_peak", getPeakArenaBytes());
+	line(sb, "solver_clause_bytes_peak", getPeakSolverBytes());
+	for(int i = 0; i < PHASES.length; i++){
+	  line(sb, "phase_seconds{phase=\"" + PHASES[i] + "\"}", phaseNanos[i].sum() / 1e9);
+	  line(sb, "phase_count{phase=\"" + PHASES[i] + "\"}", phaseCounts[i].sum());
+	}
+	return sb.toString();
+  }
+
+  private static void line(StringBuilder sb, String name, long value){
+	sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  private static void line(StringBuilder sb, String name, double value){
+	sb.append(name).append(' ').append(value).append('\n');
+  }
+
+  /** Registers these metrics with the platform MBean server as
+      <code>techniques.PL:type=Metrics,name=</code><code>name</code>,
+      e.g. for JConsole. */
+  public ObjectName registerMBean(String name){
+	try{
+	  ObjectName objectName = new ObjectName("techniques.PL:type=Metrics,name="
+											 + ObjectName.quote(name));
+	  MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	  if(!server.isRegistered(objectName))
+		server.registerMBean(this, objectName);
+	  return objectName;
+	}
+	catch(JMException e){
+	  throw new IllegalStateException("Could not register metrics " + name, e);
+	}
+  }
+
+  /** Serves <code>dump()</code> over HTTP on the loopback interface,
+      at <code>http://localhost:</code><code>port</code><code>/metrics</code>,
+      until the returned server is <code>stop()</code>ped.  A port of 0
+      picks a free one, given by the server's
+      <code>getAddress()</code>. */
+  public HttpServer serve(int port) throws IOException{
+	HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+	server.createContext("/metrics", new HttpHandler(){
+		public void handle(HttpExchange exchange) throws IOException{
+		  byte[] body = dump().getBytes("UTF-8");
+		  exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		  exchange.sendResponseHeaders(200, body.length);
+		  OutputStream out = exchange.getResponseBody();
+		  try{
+			out.write(body);
+		  }
+		  finally{
+			out.close();
+		  }
+		}
+	  });
+	server.setExecutor(null);
+	server.start();
+	return server;
+  }
+
+}
@@ -0,0 +1,34 @@
+package techniques.PL;
+
+/** The JMX view of <code>Metrics</code>. */
+public interface MetricsMBean {
+
+  long getSolves();
+  long getDecisions();
+  long getPropagations();
+  long getConflicts();
+  long getRestarts();
+  long getLearntClauses();
+  double getAverageLearntSize();
+  double getDecisionsPerSecond();
+  double getPropagationsPerSecond();
+  long[] getLearntSizeHistogram();
+  long getEvaluations();
+  long getPeakArenaBytes();
+  long getPeakSolverBytes();
+  double getParseSeconds();
+  double getEncodeSeconds();
+  double getPreprocessSeconds();
+  double getSolveSeconds();
+
+  boolean isEnabled();
+  void setEnabled(boolean enabled);
+  int getSampling();
+  void setSampling(int sampling);
+
+  /** Sets every counter back to zero. */
+  void reset();
+
+  String dump();
+
+}
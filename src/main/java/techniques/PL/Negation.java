@@ -12,16 +12,25 @@ public class Negation extends Sentence {
 	this.child = variable;
   }
 
+  /* the negated variable. */
+  Variable getChild(){
+	return child;
+  }
+
   public Set getVariables(){
 	return child.getVariables();
   }
 
+  void collectVariables(VariableSet.Builder builder){
+	child.collectVariables(builder);
+  }
+
   public Boolean isSatisfied(Interpretation interpretation){
 	Boolean childSat = child.isSatisfied(interpretation);
 	if(childSat == null)
 	  return null;
 	else
-	  return new Boolean(!childSat.booleanValue());
+	  return Boolean.valueOf(!childSat.booleanValue());
   }
 
   public String toString(){
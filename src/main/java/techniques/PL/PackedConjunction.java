@@ -0,0 +1,258 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** A <code>Conjunction</code> whose clauses live in a
+    <code>ClauseArena</code> instead of a list of
+    <code>Disjunction</code> objects.  Variable <code>i</code> of the
+    arena stands for <code>getVariable(i)</code>.
+
+    <p>It can be used anywhere a <code>Conjunction</code> is expected:
+    <code>isSatisfied</code>, <code>getVariables</code> and
+    <code>toString</code> read the arena directly.  Only
+    <code>getClauses</code> has to build <code>Disjunction</code>
+    objects, and those are a copy. */
+public class PackedConjunction extends Conjunction {
+
+  private ClauseArena arena;
+  private Variable[] variables;
+  /* Variable.getId() of each arena variable, computed on demand */
+  private int[] ids;
+
+  /** Constructs a conjunction over the clauses of <code>arena</code>.
+      <code>variables[i]</code> names variable <code>i</code> of the
+      arena; there must be at least <code>arena.numVariables()</code>
+      of them. */
+  public PackedConjunction(ClauseArena arena, Variable[] variables){
+	super(Collections.EMPTY_LIST);
+	if(variables.length < arena.numVariables())
+	  throw new IllegalArgumentException("Missing variable names: "
+										 + variables.length + " < "
+										 + arena.numVariables());
+	this.arena = arena;
+	this.variables = variables;
+  }
+
+  /** Packs <code>conjunction</code>, whose clauses must be
+      <code>Disjunction</code>s of literals, <code>ImmutableClause</code>s
+      or single literals.  If
+      <code>conjunction</code> is already packed it is returned
+      unchanged. */
+  public static PackedConjunction pack(Conjunction conjunction){
+	if(conjunction instanceof PackedConjunction)
+	  return (PackedConjunction) conjunction;
+	if(conjunction instanceof StoredConjunction)
+	  return ((StoredConjunction) conjunction).toPacked();
+
+	List clauses = conjunction.getClauses();
+	ClauseArena arena = new ClauseArena(clauses.size(), 3 * clauses.size());
+	Map ids = new HashMap();
+	List variables = new ArrayList();
+
+	Iterator i = clauses.iterator();
+	while(i.hasNext()){
+	  Sentence clause = (Sentence) i.next();
+	  arena.beginClause();
+	  if(clause instanceof Disjunction){
+		Iterator j = ((Disjunction) clause).getClauses().iterator();
+		while(j.hasNext())
+		  arena.addLiteral(literal((Sentence) j.next(), ids, variables));
+	  }
+	  else if(clause instanceof ImmutableClause){
+		ImmutableClause literals = (ImmutableClause) clause;
+		for(int j = 0; j < literals.size(); j++)
+		  arena.addLiteral(literal(literals.get(j), ids, variables));
+	  }
+	  else
+		arena.addLiteral(literal(clause, ids, variables));
+	  arena.endClause();
+	}
+	arena.trimToSize();
+
+	return new PackedConjunction(arena, (Variable[])
+								 variables.toArray(new Variable[variables.size()]));
+  }
+
+  /* returns the arena literal of a Variable or Negation, numbering
+   * variables in order of first appearance. */
+  private static int literal(Sentence sentence, Map ids, List variables){
+	boolean negated = (sentence instanceof Negation);
+	Variable variable;
+	if(negated)
+	  variable = ((Negation) sentence).getChild();
+	else if(sentence instanceof Variable)
+	  variable = (Variable) sentence;
+	else
+	  throw new IllegalArgumentException("Not a literal: " + sentence);
+
+	Integer id = (Integer) ids.get(variable);
+	if(id == null){
+	  id = new Integer(variables.size());
+	  ids.put(variable, id);
+	  variables.add(variable);
+	}
+	return ClauseArena.literal(id.intValue(), negated);
+  }
+
+  /** Returns the arena holding the clauses.  NOTE: mutating the arena
+      will mutate this Conjunction! */
+  public ClauseArena getArena(){
+	return arena;
+  }
+
+  /** Returns the <code>Variable</code> that arena variable
+      <code>id</code> stands for. */
+  public Variable getVariable(int id){
+	return variables[id];
+  }
+
+  /** Returns the literal sentence (a <code>Variable</code> or a
+      <code>Negation</code>) for arena literal <code>literal</code>. */
+  public Sentence getLiteral(int literal){
+	Variable v = variables[ClauseArena.var(literal)];
+	return ClauseArena.isNegated(literal) ? (Sentence) new Negation(v) : v;
+  }
+
+  /** Returns the number of variables of the arena. */
+  public int numVariables(){
+	return arena.numVariables();
+  }
+
+  /** Returns the clauses of this Conjunction as a new
+      <code>List</code> of <code>Disjunction</code>s.  Unlike
+      <code>Conjunction.getClauses()</code>, mutating the returned
+      list does not affect this Conjunction. */
+  public List getClauses(){
+	return unpack().getClauses();
+  }
+
+  /** Returns an ordinary <code>Conjunction</code> of
+      <code>Disjunction</code>s with the same clauses. */
+  public Conjunction unpack(){
+	int n = arena.numClauses();
+	List clauses = new ArrayList(n);
+	for(int c = 0; c < n; c++){
+	  List literals = new ArrayList(arena.clauseSize(c));
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++)
+		literals.add(getLiteral(arena.literalAt(i)));
+	  clauses.add(new Disjunction(literals));
+	}
+	return new Conjunction(clauses);
+  }
+
+  public Set getVariables(){
+	return new VariableSet.Builder().addAll(this).build();
+  }
+
+  /* the arena can be changed through getArena(), so the set is not
+   * cached. */
+  void collectVariables(VariableSet.Builder builder){
+	int[] ids = ids();
+	int[] literals = arena.literals();
+	int end = arena.numLiterals();
+	for(int i = 0; i < end; i++)
+	  builder.add(ids[ClauseArena.var(literals[i])]);
+  }
+
+  public Boolean isSatisfied(Interpretation interpretation){
+	Metrics.global().addEvaluation();
+	if(interpretation instanceof DenseInterpretation)
+	  return isSatisfied((DenseInterpretation) interpretation);
+
+	/* each variable is looked up in the interpretation at most once:
+	 * 0 = not looked up yet, 1 = false, 2 = true, 3 = undetermined. */
+	byte[] values = new byte[arena.numVariables()];
+	int[] literals = arena.literals();
+	boolean undetermined = false;
+
+	for(int c = 0; c < arena.numClauses(); c++){
+	  boolean result = false;
+	  boolean clauseUndetermined = false;
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c) && !result; i++){
+		int v = ClauseArena.var(literals[i]);
+		if(values[v] == 0){
+		  Boolean value = variables[v].isSatisfied(interpretation);
+		  values[v] = (value == null) ? (byte) 3
+			: (value.booleanValue() ? (byte) 2 : (byte) 1);
+		}
+		if(values[v] == 3)
+		  clauseUndetermined = true;
+		else
+		  result = ((values[v] == 2) != ClauseArena.isNegated(literals[i]));
+	  }
+	  if(!result && !clauseUndetermined)
+		return Boolean.FALSE;
+	  undetermined |= !result;
+	}
+	return undetermined ? null : Boolean.TRUE;
+  }
+
+  /* the same evaluation as a tight loop over the arena and the
+   * interpretation's value array. */
+  private Boolean isSatisfied(DenseInterpretation interpretation){
+	int[] ids = ids();
+	int[] literals = arena.literals();
+	boolean undetermined = false;
+
+	for(int c = 0; c < arena.numClauses(); c++){
+	  boolean result = false;
+	  boolean clauseUndetermined = false;
+	  int end = arena.clauseEnd(c);
+	  for(int i = arena.clauseStart(c); i < end; i++){
+		int lit = literals[i];
+		byte value = interpretation.value(ids[ClauseArena.var(lit)]);
+		if(value == DenseInterpretation.UNASSIGNED)
+		  clauseUndetermined = true;
+		else if((value == DenseInterpretation.TRUE) != ClauseArena.isNegated(lit)){
+		  result = true;
+		  break;
+		}
+	  }
+	  if(!result && !clauseUndetermined)
+		return Boolean.FALSE;
+	  undetermined |= !result;
+	}
+	return undetermined ? null : Boolean.TRUE;
+  }
+
+  /** Returns the <code>Variable.getId()</code> of every arena
+      variable, indexed by arena variable.  NOTE: the array is shared,
+      do not modify it. */
+  public int[] ids(){
+	int[] result = ids;
+	if(result == null || result.length < arena.numVariables()){
+	  result = new int[arena.numVariables()];
+	  for(int v = 0; v < result.length; v++)
+		result[v] = variables[v].getId();
+	  ids = result;
+	}
+	return result;
+  }
+
+  public String toString(){
+	StringBuffer sb = new StringBuffer();
+	int[] literals = arena.literals();
+	for(int c = 0; c < arena.numClauses(); c++){
+	  if(c > 0)
+		sb.append(" " + CNF.wedge + " ");
+	  sb.append('(');
+	  for(int i = arena.clauseStart(c); i < arena.clauseEnd(c); i++){
+		if(i > arena.clauseStart(c))
+		  sb.append(" " + CNF.vee + " ");
+		if(ClauseArena.isNegated(literals[i]))
+		  sb.append('~');
+		sb.append(variables[ClauseArena.var(literals[i])]);
+	  }
+	  sb.append(')');
+	}
+	return sb.toString();
+  }
+
+  public Object clone(){
+	PackedConjunction newConjunction = (PackedConjunction) super.clone();
+	newConjunction.arena = (ClauseArena) arena.clone();
+	// Variables are immutable, the table can be shared
+	return newConjunction;
+  }
+
+}
@@ -0,0 +1,234 @@
+package techniques.PL;
+
+import java.util.*;
+
+/* A single-pass recursive-descent parser for sentences in CNF, as
+ * accepted by CNF.parse().  The grammar is
+ *
+ *   conjunction := disjunction ('^' disjunction)*
+ *   disjunction := term ('v' term)*
+ *   term        := literal | '(' conjunction ')'
+ *   literal     := name | '~' name | '~' '(' name ')'
+ *
+ * where a parenthesized conjunction inside a disjunction must be a
+ * single clause.  A name is a letter followed by letters, digits and
+ * underscores; the lowercase letter 'v' is always the disjunction
+ * operator and cannot be part of a name.  Whitespace is insignificant.
+ *
+ * Literals are written to a pending clause buffer as they are read and
+ * every character is looked at once, so parsing is linear in the
+ * length of the input.  Names are interned without creating a String
+ * per occurrence. */
+final class Parser {
+
+  private static final int EOF = 0;
+  private static final int NAME = 1;
+  private static final int NOT = 2;
+  private static final int AND = 3;
+  private static final int OR = 4;
+  private static final int OPEN = 5;
+  private static final int CLOSE = 6;
+
+  private final CharSequence input;
+  private final int length;
+
+  /* current token */
+  private int pos = 0;
+  private int token;
+  private int tokenStart;
+  private int tokenEnd;
+
+  /* clauses read so far: literals, and the end offset of each clause */
+  private final IntVec literals = new IntVec(64);
+  private final IntVec ends = new IntVec(16);
+
+  /* names, interned by an open-addressing table of variable ids */
+  private final List variables = new ArrayList();
+  private int[] table = new int[64];
+
+  Parser(CharSequence input){
+	this.input = input;
+	this.length = input.length();
+	Arrays.fill(table, -1);
+	next();
+  }
+
+  /* parses the whole input. */
+  PackedConjunction parse(){
+	parseConjunction();
+	if(token != EOF)
+	  throw error("unexpected " + describe());
+
+	ClauseArena arena = new ClauseArena(ends.size(), literals.size());
+	arena.ensureVariables(variables.size());
+	int start = 0;
+	for(int c = 0; c < ends.size(); c++){
+	  arena.addClause(literals.data, start, ends.get(c) - start);
+	  start = ends.get(c);
+	}
+	return new PackedConjunction(arena, (Variable[])
+								 variables.toArray(new Variable[variables.size()]));
+  }
+
+  private void parseConjunction(){
+	parseDisjunction();
+	while(token == AND){
+	  next();
+	  parseDisjunction();
+	}
+  }
+
+  /* appends the clause(s) of one disjunction to the clause buffer. */
+  private void parseDisjunction(){
+	int first = literals.size();
+	boolean single = true;
+
+	while(true){
+	  if(token == OPEN){
+		int openPos = tokenStart;
+		int clausesBefore = ends.size();
+		int literalsBefore = literals.size();
+		next();
+		parseConjunction();
+		expect(CLOSE, "')'");
+
+		if(ends.size() - clausesBefore == 1)
+		  ends.pop(); // a single clause: its literals join this one
+		else if(literalsBefore == first && token != OR && single)
+		  return; // a parenthesized conjunction, already closed
+		else
+		  throw new RuntimeException("Parse Error: conjunction inside a "
+									 + "disjunction at position " + openPos + ".");
+	  }
+	  else
+		literals.push(parseLiteral());
+
+	  if(token != OR)
+		break;
+	  single = false;
+	  next();
+	}
+	ends.push(literals.size());
+  }
+
+  private int parseLiteral(){
+	boolean negated = false;
+	if(token == NOT){
+	  negated = true;
+	  next();
+	}
+	if(negated && token == OPEN){
+	  next();
+	  int literal = parseLiteral();
+	  expect(CLOSE, "')'");
+	  if(ClauseArena.isNegated(literal))
+		throw error("double negation");
+	  return ClauseArena.negate(literal);
+	}
+	if(token != NAME)
+	  throw error("expected variable but found " + describe());
+	int var = intern(tokenStart, tokenEnd);
+	next();
+	return ClauseArena.literal(var, negated);
+  }
+
+  private void expect(int kind, String what){
+	if(token != kind)
+	  throw error("expected " + what + " but found " + describe());
+	next();
+  }
+
+  /* reads the next token. */
+  private void next(){
+	while(pos < length && Character.isWhitespace(input.charAt(pos)))
+	  pos++;
+	tokenStart = pos;
+	if(pos == length){
+	  token = EOF;
+	  tokenEnd = pos;
+	  return;
+	}
+	char c = input.charAt(pos++);
+	if(c == CNF.wedge)
+	  token = AND;
+	else if(c == CNF.vee)
+	  token = OR;
+	else if(c == CNF.neg)
+	  token = NOT;
+	else if(c == '(')
+	  token = OPEN;
+	else if(c == ')')
+	  token = CLOSE;
+	else if(Character.isLetter(c)){
+	  while(pos < length && isNamePart(input.charAt(pos)))
+		pos++;
+	  token = NAME;
+	}
+	else
+	  throw error("unexpected character '" + c + "'");
+	tokenEnd = pos;
+  }
+
+  private static boolean isNamePart(char c){
+	return c != CNF.vee && (Character.isLetterOrDigit(c) || c == '_');
+  }
+
+  /* returns the id of the name input[start, end), adding it if new. */
+  private int intern(int start, int end){
+	int hash = 0;
+	for(int i = start; i < end; i++)
+	  hash = 31 * hash + input.charAt(i);
+	int mask = table.length - 1;
+	for(int slot = hash & mask; ; slot = (slot + 1) & mask){
+	  int id = table[slot];
+	  if(id == -1)
+		break;
+	  if(sameName(((Variable) variables.get(id)).toString(), start, end))
+		return id;
+	}
+
+	int id = variables.size();
+	variables.add(new Variable(input.subSequence(start, end).toString()));
+	if(2 * variables.size() > table.length)
+	  rehash();
+	else
+	  insert(hash, id);
+	return id;
+  }
+
+  private boolean sameName(String name, int start, int end){
+	if(name.length() != end - start)
+	  return false;
+	for(int i = 0; i < name.length(); i++)
+	  if(name.charAt(i) != input.charAt(start + i))
+		return false;
+	return true;
+  }
+
+  private void insert(int hash, int id){
+	int mask = table.length - 1;
+	int slot = hash & mask;
+	while(table[slot] != -1)
+	  slot = (slot + 1) & mask;
+	table[slot] = id;
+  }
+
+  private void rehash(){
+	table = new int[2 * table.length];
+	Arrays.fill(table, -1);
+	for(int id = 0; id < variables.size(); id++)
+	  insert(variables.get(id).toString().hashCode(), id);
+  }
+
+  private String describe(){
+	if(token == EOF)
+	  return "end of input";
+	return "'" + input.subSequence(tokenStart, tokenEnd) + "'";
+  }
+
+  private RuntimeException error(String message){
+	return new RuntimeException("Parse Error: " + message + " at position "
+								+ tokenStart + ".");
+  }
+
+}
@@ -0,0 +1,206 @@
+package techniques.PL;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/** Solves one set of clauses with several differently configured
+    <code>Solver</code>s running in parallel, and takes the answer of
+    whichever finishes first.  CDCL run times vary wildly with the
+    seed, the restart schedule and the branching polarity, so racing a
+    few configurations is usually faster than running any one of them.
+
+    <p>The solvers share their short learned clauses through a
+    <code>ClauseExchange</code>.  As soon as one of them answers, the
+    others are interrupted. */
+public class PortfolioSolver {
+
+  /** Learned clauses of at most this many literals are shared. */
+  public static final int SHARED_CLAUSE_SIZE = 8;
+
+  private final ClauseArena arena;
+  private final int threads;
+  private final AtomicReferenceArray solvers;
+  private volatile boolean stopped = false;
+
+  private boolean[] model;
+  private int winner = -1;
+
+  /** Constructs a portfolio for the clauses of <code>arena</code>
+      with one solver per available processor. */
+  public PortfolioSolver(ClauseArena arena){
+	this(arena, Runtime.getRuntime().availableProcessors());
+  }
+
+  /** Constructs a portfolio for the clauses of <code>arena</code>
+      with <code>threads</code> solvers.  The arena must not change
+      while <code>solve()</code> runs. */
+  public PortfolioSolver(ClauseArena arena, int threads){
+	if(threads < 1)
+	  throw new IllegalArgumentException("Need at least one thread: " + threads);
+	this.arena = arena;
+	this.threads = threads;
+	this.solvers = new AtomicReferenceArray(threads);
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code>, or <code>null</code> if it is
+      unsatisfiable, using one solver per available processor. */
+  public static Interpretation solve(Conjunction conjunction){
+	PackedConjunction packed = PackedConjunction.pack(conjunction);
+	PortfolioSolver portfolio = new PortfolioSolver(packed.getArena());
+	if(portfolio.solve() != Boolean.TRUE)
+	  return null;
+	return portfolio.getInterpretation(packed);
+  }
+
+  /** Runs the solvers until one of them answers.  Returns
+      <code>Boolean.TRUE</code> if the clauses are satisfiable (see
+      <code>getModel()</code>), <code>Boolean.FALSE</code> if not, and
+      <code>null</code> if interrupted. */
+  public Boolean solve(){
+	return solve(0, TimeUnit.MILLISECONDS);
+  }
+
+  /** Like <code>solve()</code>, but also gives up with
+      <code>null</code> after <code>timeout</code>; a timeout of 0 means
+      no limit. */
+  public Boolean solve(long timeout, TimeUnit unit){
+	model = null;
+	winner = -1;
+	stopped = false;
+	for(int i = 0; i < threads; i++)
+	  solvers.set(i, null);
+	final ClauseExchange exchange = new ClauseExchange(1024 * threads);
+	ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+		public Thread newThread(Runnable r){
+		  Thread thread = new Thread(r, "portfolio-solver");
+		  thread.setDaemon(true);
+		  return thread;
+		}
+	  });
+	CompletionService service = new ExecutorCompletionService(executor);
+	for(int i = 0; i < threads; i++){
+	  final int id = i;
+	  service.submit(new Callable(){
+		  public Object call(){
+			Solver solver = configure(new Solver(arena), id);
+			solver.setExchange(exchange, id, SHARED_CLAUSE_SIZE);
+			solvers.set(id, solver);
+			if(stopped)
+			  return null;
+			Boolean result = solver.solve();
+			return (result == null) ? null : new Object[]{ Integer.valueOf(id), result };
+		  }
+		});
+	}
+
+	long deadline = (timeout > 0) ? System.nanoTime() + unit.toNanos(timeout)
+	  : Long.MAX_VALUE;
+	Boolean status = null;
+	try{
+	  for(int pending = threads; pending > 0 && status == null && !stopped; pending--){
+		Future done;
+		if(deadline == Long.MAX_VALUE)
+		  done = service.take();
+		else
+		  done = service.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		if(done == null)
+		  break; // timed out
+		Object[] answer = (Object[]) done.get();
+		if(answer != null){
+		  winner = ((Integer) answer[0]).intValue();
+		  status = (Boolean) answer[1];
+		  if(status == Boolean.TRUE)
+			model = ((Solver) solvers.get(winner)).getModel();
+		}
+	  }
+	}
+	catch(InterruptedException e){
+	  Thread.currentThread().interrupt();
+	}
+	catch(ExecutionException e){
+	  throw new RuntimeException("Portfolio solver failed", e.getCause());
+	}
+	finally{
+	  interrupt();
+	  executor.shutdown();
+	}
+	return status;
+  }
+
+  /** Asks a running <code>solve()</code> to give up as soon as
+      possible.  May be called from any thread. */
+  public void interrupt(){
+	stopped = true;
+	for(int i = 0; i < threads; i++){
+	  Solver solver = (Solver) solvers.get(i);
+	  if(solver != null)
+		solver.interrupt();
+	}
+  }
+
+  /** Returns a copy of the model found by the last successful
+      <code>solve()</code>, indexed by arena variable. */
+  public boolean[] getModel(){
+	return model.clone();
+  }
+
+  /** Returns the model found by the last successful
+      <code>solve()</code> as an <code>Interpretation</code> over the
+      variables of <code>conjunction</code>, whose arena must be the
+      one this portfolio was built from. */
+  public Interpretation getInterpretation(PackedConjunction conjunction){
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < conjunction.numVariables(); v++)
+	  interpretation.set(ids[v], model[v]);
+	return interpretation;
+  }
+
+  /** Returns the index of the solver that answered last, or -1. */
+  public int getWinner(){
+	return winner;
+  }
+
+  /** Returns solver <code>i</code> of the last <code>solve()</code>,
+      for its statistics, or <code>null</code> if it never started. */
+  public Solver getSolver(int i){
+	return (Solver) solvers.get(i);
+  }
+
+  /** Returns the number of solvers. */
+  public int numThreads(){
+	return threads;
+  }
+
+  /* solver 0 keeps the defaults; the others differ in seed, restart
+   * schedule, polarity, activity decay and randomness. */
+  static Solver configure(Solver solver, int id){
+	if(id == 0)
+	  return solver;
+	solver.setSeed(id * 0x9E3779B97F4A7C15L);
+	switch(id % 4){
+	case 1:
+	  solver.setRestarts(100, 1.5, false);
+	  solver.setPolarity(Solver.POLARITY_POSITIVE);
+	  break;
+	case 2:
+	  solver.setPolarity(Solver.POLARITY_RANDOM);
+	  solver.setRandomFrequency(0.02);
+	  break;
+	case 3:
+	  solver.setRestarts(50, 2, true);
+	  solver.setVarDecay(0.85);
+	  break;
+	default:
+	  solver.setRestarts(200, 1.2, false);
+	  solver.setPolarity(Solver.POLARITY_RANDOM);
+	  solver.setRandomFrequency(0.01);
+	  solver.setVarDecay(0.9 + 0.01 * (id % 8));
+	  break;
+	}
+	return solver;
+  }
+
+}
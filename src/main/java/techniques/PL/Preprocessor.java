@@ -0,0 +1,612 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** Simplifies a set of clauses before they are solved, in the style
+    of SatELite.  It applies unit propagation, pure literal
+    elimination, forward and backward subsumption with self-subsuming
+    resolution, and bounded variable elimination: a variable is
+    resolved away when that does not increase the number of clauses.
+
+    <p>The simplified clauses keep the variable numbering of the
+    original ones and are satisfiable exactly when those are.  A model
+    of the simplified clauses is turned back into a model of the
+    original ones by <code>extend()</code>, which assigns the fixed
+    and eliminated variables from a reconstruction stack.
+
+    <p>Variables the caller wants to constrain later, for instance
+    with assumptions, must be <code>freeze()</code>d first so that they
+    are neither eliminated nor fixed as pure. */
+public class Preprocessor {
+
+  /* literal values, indexed by literal */
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+  private static final byte UNDEF = 0;
+
+  /* results of subsumes() */
+  private static final int NONE = -2;
+  private static final int SUBSUMES = -1;
+
+  /* limits of variable elimination */
+  private int maxResolventSize = 20;
+  private int maxOccurrences = 100;
+
+  private final int numVars;
+  private PackedConjunction conjunction;
+
+  /* clauses, null once deleted, and their variable signatures */
+  private int[][] clauses;
+  private long[] signatures;
+  private int numClauses = 0;
+  private int liveClauses = 0;
+
+  /* clauses of each literal, including deleted ones, and the number of
+   * live ones */
+  private final IntVec[] occurs;
+  private final int[] occurCount;
+
+  private final byte[] values;
+  private final boolean[] eliminated;
+  private final boolean[] frozen;
+
+  /* variables whose clauses changed since elimination last tried them */
+  private final boolean[] touched;
+  private final IntVec units = new IntVec();
+  private boolean ok = true;
+
+  /* clauses to try to subsume others with */
+  private final IntVec queue = new IntVec();
+  private boolean[] queued;
+
+  /* removed clauses, each followed by its size, its first literal
+   * being the one to make true if the clause is not satisfied */
+  private final IntVec stack = new IntVec();
+
+  private final int[] marks;
+  private int stamp = 0;
+
+  /* statistics */
+  private int originalClauses;
+  private int eliminatedVars = 0;
+  private int fixedVars = 0;
+  private int subsumed = 0;
+  private int strengthened = 0;
+
+  /** Constructs a preprocessor for the clauses of <code>arena</code>,
+      which is left unchanged. */
+  public Preprocessor(ClauseArena arena){
+	numVars = arena.numVariables();
+	clauses = new int[Math.max(16, arena.numClauses())][];
+	signatures = new long[clauses.length];
+	queued = new boolean[clauses.length];
+	occurs = new IntVec[2 * numVars];
+	for(int p = 0; p < occurs.length; p++)
+	  occurs[p] = new IntVec(4);
+	occurCount = new int[2 * numVars];
+	values = new byte[2 * numVars];
+	eliminated = new boolean[numVars];
+	frozen = new boolean[numVars];
+	touched = new boolean[numVars];
+	Arrays.fill(touched, true);
+	marks = new int[2 * numVars];
+	originalClauses = arena.numClauses();
+	for(int c = 0; c < arena.numClauses() && ok; c++)
+	  addClause(arena.clause(c));
+  }
+
+  /** Constructs a preprocessor for <code>conjunction</code>, whose
+      clauses must be disjunctions of literals. */
+  public Preprocessor(Conjunction conjunction){
+	this(PackedConjunction.pack(conjunction));
+  }
+
+  private Preprocessor(PackedConjunction conjunction){
+	this(conjunction.getArena());
+	this.conjunction = conjunction;
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code>, or <code>null</code> if it is
+      unsatisfiable, preprocessing it before it is solved. */
+  public static Interpretation solve(Conjunction conjunction){
+	Preprocessor preprocessor = new Preprocessor(conjunction);
+	if(!preprocessor.run())
+	  return null;
+	Solver solver = new Solver(preprocessor.getArena());
+	if(solver.solve() != Boolean.TRUE)
+	  return null;
+	boolean[] model = preprocessor.extend(solver.getModel());
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = preprocessor.conjunction.ids();
+	for(int v = 0; v < model.length; v++)
+	  interpretation.set(ids[v], model[v]);
+	return interpretation;
+  }
+
+  /** Keeps variable <code>var</code> in the simplified clauses. */
+  public void freeze(int var){
+	frozen[var] = true;
+  }
+
+  /** Sets the largest resolvent and the largest number of
+      occurrences of a variable for which variable elimination is
+      tried. */
+  public void setEliminationLimits(int maxResolventSize, int maxOccurrences){
+	this.maxResolventSize = maxResolventSize;
+	this.maxOccurrences = maxOccurrences;
+  }
+
+  /** Simplifies the clauses until nothing changes any more.  Returns
+      false if they turned out to be unsatisfiable. */
+  public boolean run(){
+	long start = Metrics.global().beginPhase();
+	boolean changed = true;
+	while(ok && changed){
+	  changed = false;
+	  ok = propagate();
+	  if(ok)
+		changed |= pureLiterals();
+	  if(ok)
+		changed |= subsume();
+	  if(ok)
+		changed |= eliminate();
+	}
+	Metrics.global().endPhase(Metrics.PREPROCESS, start);
+	return ok;
+  }
+
+  /** Returns the simplified clauses, over the variables of the
+      original ones.  If they are unsatisfiable, the result holds the
+      empty clause. */
+  public ClauseArena getArena(){
+	ClauseArena arena = new ClauseArena(liveClauses + 1, 3 * liveClauses + 1);
+	arena.ensureVariables(numVars);
+	if(!ok){
+	  arena.addClause(new int[0]);
+	  return arena;
+	}
+	for(int c = 0; c < numClauses; c++)
+	  if(clauses[c] != null)
+		arena.addClause(clauses[c]);
+	/* frozen variables keep their units, the caller may assume them */
+	for(int v = 0; v < numVars; v++)
+	  if(frozen[v] && values[2 * v] != UNDEF)
+		arena.addClause(new int[]{ ClauseArena.literal(v, values[2 * v] == FALSE) });
+	return arena;
+  }
+
+  /** Returns the simplified clauses as a conjunction over the
+      <code>Variable</code>s of the original conjunction.  Only for
+      preprocessors constructed from a <code>Conjunction</code>. */
+  public PackedConjunction getConjunction(){
+	Variable[] variables = new Variable[numVars];
+	for(int v = 0; v < numVars; v++)
+	  variables[v] = conjunction.getVariable(v);
+	return new PackedConjunction(getArena(), variables);
+  }
+
+  /** Turns a model of the simplified clauses, indexed by variable,
+      into a model of the original clauses. */
+  public boolean[] extend(boolean[] model){
+	boolean[] result = Arrays.copyOf(model, numVars);
+	for(int v = 0; v < numVars; v++)
+	  if(values[2 * v] != UNDEF)
+		result[v] = (values[2 * v] == TRUE);
+	int i = stack.size() - 1;
+	while(i >= 0){
+	  int size = stack.get(i);
+	  int start = i - size;
+	  boolean satisfied = false;
+	  for(int k = start; k < i && !satisfied; k++){
+		int p = stack.get(k);
+		satisfied = (result[ClauseArena.var(p)] != ClauseArena.isNegated(p));
+	  }
+	  if(!satisfied){
+		int witness = stack.get(start);
+		result[ClauseArena.var(witness)] = !ClauseArena.isNegated(witness);
+	  }
+	  i = start - 1;
+	}
+	return result;
+  }
+
+  /** Turns a model of <code>getConjunction()</code> into one of the
+      original conjunction.  Variables the interpretation leaves
+      undetermined count as false. */
+  public Interpretation extend(Interpretation interpretation){
+	boolean[] model = new boolean[numVars];
+	for(int v = 0; v < numVars; v++)
+	  model[v] = Boolean.TRUE.equals(interpretation.get(conjunction.getVariable(v)));
+	model = extend(model);
+	DenseInterpretation result = new DenseInterpretation();
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < numVars; v++)
+	  result.set(ids[v], model[v]);
+	return result;
+  }
+
+  /** Returns the number of clauses left. */
+  public int numClauses(){
+	return liveClauses;
+  }
+
+  /** Returns the number of clauses before preprocessing. */
+  public int getOriginalClauses(){
+	return originalClauses;
+  }
+
+  public int getEliminatedVariables(){
+	return eliminatedVars;
+  }
+
+  /** Returns the number of variables fixed by units and pure
+      literals. */
+  public int getFixedVariables(){
+	return fixedVars;
+  }
+
+  public int getSubsumedClauses(){
+	return subsumed;
+  }
+
+  public int getStrengthenedClauses(){
+	return strengthened;
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* clause database */
+
+  /* adds a clause, simplified by the current assignment.  Returns its
+   * index, or -1 if no clause was stored. */
+  private int addClause(int[] literals){
+	int[] lits = literals.clone();
+	Arrays.sort(lits);
+	int n = 0;
+	for(int i = 0; i < lits.length; i++){
+	  int p = lits[i];
+	  if(values[p] == TRUE || (n > 0 && p == ClauseArena.negate(lits[n - 1])))
+		return -1; // satisfied or tautology
+	  if(values[p] != FALSE && (n == 0 || p != lits[n - 1]))
+		lits[n++] = p;
+	}
+	if(n == 0){
+	  ok = false;
+	  return -1;
+	}
+	if(n == 1){
+	  assign(lits[0]);
+	  return -1;
+	}
+	return store(Arrays.copyOf(lits, n));
+  }
+
+  private int store(int[] clause){
+	if(numClauses == clauses.length){
+	  clauses = Arrays.copyOf(clauses, 2 * numClauses);
+	  signatures = Arrays.copyOf(signatures, 2 * numClauses);
+	  queued = Arrays.copyOf(queued, 2 * numClauses);
+	}
+	int c = numClauses++;
+	clauses[c] = clause;
+	signatures[c] = signature(clause);
+	for(int i = 0; i < clause.length; i++){
+	  occurs[clause[i]].push(c);
+	  occurCount[clause[i]]++;
+	  touched[ClauseArena.var(clause[i])] = true;
+	}
+	liveClauses++;
+	enqueue(c);
+	return c;
+  }
+
+  private void delete(int c){
+	int[] clause = clauses[c];
+	for(int i = 0; i < clause.length; i++){
+	  occurCount[clause[i]]--;
+	  touched[ClauseArena.var(clause[i])] = true;
+	}
+	clauses[c] = null;
+	liveClauses--;
+  }
+
+  /* removes literal p from clause c. */
+  private void strengthen(int c, int p){
+	int[] clause = clauses[c];
+	int[] shorter = new int[clause.length - 1];
+	for(int i = 0, j = 0; i < clause.length; i++){
+	  touched[ClauseArena.var(clause[i])] = true;
+	  if(clause[i] != p)
+		shorter[j++] = clause[i];
+	}
+	remove(occurs[p], c);
+	occurCount[p]--;
+	strengthened++;
+	if(shorter.length == 1){
+	  clauses[c] = shorter;
+	  delete(c);
+	  if(values[shorter[0]] == FALSE)
+		ok = false;
+	  else if(values[shorter[0]] == UNDEF)
+		assign(shorter[0]);
+	  return;
+	}
+	clauses[c] = shorter;
+	signatures[c] = signature(shorter);
+	enqueue(c);
+  }
+
+  private void assign(int p){
+	if(values[p] != UNDEF){
+	  if(values[p] == FALSE)
+		ok = false;
+	  return;
+	}
+	values[p] = TRUE;
+	values[ClauseArena.negate(p)] = FALSE;
+	units.push(p);
+	fixedVars++;
+  }
+
+  private void enqueue(int c){
+	if(!queued[c]){
+	  queued[c] = true;
+	  queue.push(c);
+	}
+  }
+
+  private static void remove(IntVec list, int c){
+	for(int i = 0; i < list.size(); i++){
+	  if(list.get(i) == c){
+		list.set(i, list.last());
+		list.pop();
+		return;
+	  }
+	}
+  }
+
+  /* drops the deleted clauses from the occurrences of p. */
+  private IntVec live(int p){
+	IntVec list = occurs[p];
+	int j = 0;
+	for(int i = 0; i < list.size(); i++)
+	  if(clauses[list.get(i)] != null)
+		list.set(j++, list.get(i));
+	list.shrink(j);
+	return list;
+  }
+
+  private static long signature(int[] clause){
+	long sig = 0;
+	for(int i = 0; i < clause.length; i++)
+	  sig |= 1L << (ClauseArena.var(clause[i]) & 63);
+	return sig;
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* simplifications */
+
+  private boolean propagate(){
+	while(ok && units.size() > 0){
+	  int p = units.pop();
+	  int q = ClauseArena.negate(p);
+	  IntVec satisfied = live(p);
+	  for(int i = 0; i < satisfied.size(); i++)
+		delete(satisfied.get(i));
+	  satisfied.clear();
+	  IntVec falsified = live(q);
+	  int[] cs = falsified.toArray();
+	  for(int i = 0; i < cs.length && ok; i++)
+		if(clauses[cs[i]] != null)
+		  strengthen(cs[i], q);
+	}
+	return ok;
+  }
+
+  /* fixes the literals whose complement occurs nowhere. */
+  private boolean pureLiterals(){
+	boolean changed = false;
+	boolean again = true;
+	while(again && ok){
+	  again = false;
+	  for(int v = 0; v < numVars; v++){
+		if(frozen[v] || eliminated[v] || values[2 * v] != UNDEF)
+		  continue;
+		int p = ClauseArena.literal(v, false);
+		int q = ClauseArena.negate(p);
+		int pure = -1;
+		if(occurCount[p] > 0 && occurCount[q] == 0)
+		  pure = p;
+		else if(occurCount[q] > 0 && occurCount[p] == 0)
+		  pure = q;
+		if(pure >= 0){
+		  assign(pure);
+		  again = changed = true;
+		}
+	  }
+	  propagate();
+	}
+	return changed;
+  }
+
+  /* backward subsumption and self-subsuming resolution from every
+   * queued clause. */
+  private boolean subsume(){
+	boolean changed = false;
+	while(queue.size() > 0 && ok){
+	  int c = queue.pop();
+	  queued[c] = false;
+	  int[] clause = clauses[c];
+	  if(clause == null)
+		continue;
+
+	  /* the variable of c with the fewest occurrences */
+	  int best = clause[0];
+	  for(int i = 1; i < clause.length; i++)
+		if(occurCount[clause[i]] + occurCount[ClauseArena.negate(clause[i])]
+		   < occurCount[best] + occurCount[ClauseArena.negate(best)])
+		  best = clause[i];
+
+	  for(int side = 0; side < 2 && clauses[c] == clause; side++){
+		int p = (side == 0) ? best : ClauseArena.negate(best);
+		int[] candidates = live(p).toArray();
+		for(int i = 0; i < candidates.length && clauses[c] == clause; i++){
+		  int d = candidates[i];
+		  int[] other = clauses[d];
+		  if(d == c || other == null || other.length < clause.length
+			 || (signatures[c] & ~signatures[d]) != 0)
+			continue;
+		  int result = subsumes(clause, other);
+		  if(result == SUBSUMES){
+			delete(d);
+			subsumed++;
+			changed = true;
+		  }
+		  else if(result != NONE){
+			strengthen(d, ClauseArena.negate(result));
+			changed = true;
+			if(!ok)
+			  return changed;
+		  }
+		}
+	  }
+	  propagate();
+	}
+	return changed;
+  }
+
+  /* SUBSUMES if every literal of c is in d, the literal l of c if
+   * the others are and ~l is, and NONE otherwise. */
+  private int subsumes(int[] c, int[] d){
+	stamp++;
+	for(int i = 0; i < d.length; i++)
+	  marks[d[i]] = stamp;
+	int flipped = SUBSUMES;
+	for(int i = 0; i < c.length; i++){
+	  if(marks[c[i]] == stamp)
+		continue;
+	  if(flipped == SUBSUMES && marks[ClauseArena.negate(c[i])] == stamp)
+		flipped = c[i];
+	  else
+		return NONE;
+	}
+	return flipped;
+  }
+
+  /* true if some live clause is a subset of clause. */
+  private boolean forwardSubsumed(int[] clause){
+	long sig = signature(clause);
+	for(int i = 0; i < clause.length; i++){
+	  IntVec list = live(clause[i]);
+	  for(int j = 0; j < list.size(); j++){
+		int d = list.get(j);
+		if(clauses[d].length <= clause.length
+		   && (signatures[d] & ~sig) == 0
+		   && subsumes(clauses[d], clause) == SUBSUMES)
+		  return true;
+	  }
+	}
+	return false;
+  }
+
+  /* resolves away every variable whose resolvents are no more than
+   * the clauses they replace.  Only variables whose clauses changed
+   * since the last try are tried again. */
+  private boolean eliminate(){
+	Integer[] order = new Integer[numVars];
+	int n = 0;
+	for(int v = 0; v < numVars; v++)
+	  if(touched[v] && !frozen[v] && !eliminated[v] && values[2 * v] == UNDEF)
+		order[n++] = Integer.valueOf(v);
+	Arrays.sort(order, 0, n, new Comparator<Integer>(){
+		public int compare(Integer a, Integer b){
+		  return Long.compare(cost(a.intValue()), cost(b.intValue()));
+		}
+	  });
+
+	boolean changed = false;
+	for(int i = 0; i < n && ok; i++){
+	  int v = order[i].intValue();
+	  touched[v] = false;
+	  if(values[2 * v] == UNDEF && tryEliminate(v)){
+		changed = true;
+		propagate();
+	  }
+	}
+	return changed;
+  }
+
+  private long cost(int v){
+	return (long) occurCount[2 * v] * occurCount[2 * v + 1];
+  }
+
+  private boolean tryEliminate(int v){
+	int p = ClauseArena.literal(v, false);
+	int q = ClauseArena.negate(p);
+	if(occurCount[p] + occurCount[q] == 0
+	   || occurCount[p] + occurCount[q] > maxOccurrences)
+	  return false;
+	int[] pos = live(p).toArray();
+	int[] neg = live(q).toArray();
+
+	/* give up as soon as there are more resolvents than clauses */
+	List resolvents = new ArrayList();
+	int limit = pos.length + neg.length;
+	for(int i = 0; i < pos.length; i++){
+	  for(int j = 0; j < neg.length; j++){
+		int[] resolvent = resolve(clauses[pos[i]], clauses[neg[j]], v);
+		if(resolvent == null)
+		  continue;
+		if(resolvent.length > maxResolventSize || resolvents.size() == limit)
+		  return false;
+		resolvents.add(resolvent);
+	  }
+	}
+
+	/* save the clauses of v for extend(), then replace them */
+	for(int side = 0; side < 2; side++){
+	  int[] cs = (side == 0) ? pos : neg;
+	  int lit = (side == 0) ? p : q;
+	  for(int i = 0; i < cs.length; i++){
+		int[] clause = clauses[cs[i]];
+		stack.push(lit);
+		for(int k = 0; k < clause.length; k++)
+		  if(clause[k] != lit)
+			stack.push(clause[k]);
+		stack.push(clause.length);
+		delete(cs[i]);
+	  }
+	}
+	eliminated[v] = true;
+	eliminatedVars++;
+	for(int i = 0; i < resolvents.size() && ok; i++){
+	  int[] resolvent = (int[]) resolvents.get(i);
+	  if(!forwardSubsumed(resolvent))
+		addClause(resolvent);
+	}
+	return true;
+  }
+
+  /* the resolvent of c and d on v, or null if it is a tautology. */
+  private int[] resolve(int[] c, int[] d, int v){
+	stamp++;
+	int[] result = new int[c.length + d.length - 2];
+	int n = 0;
+	for(int i = 0; i < c.length; i++){
+	  if(ClauseArena.var(c[i]) == v || values[c[i]] == FALSE)
+		continue;
+	  marks[c[i]] = stamp;
+	  result[n++] = c[i];
+	}
+	for(int i = 0; i < d.length; i++){
+	  if(ClauseArena.var(d[i]) == v || values[d[i]] == FALSE
+		 || marks[d[i]] == stamp)
+		continue;
+	  if(marks[ClauseArena.negate(d[i])] == stamp)
+		return null;
+	  result[n++] = d[i];
+	}
+	return Arrays.copyOf(result, n);
+  }
+
+}
@@ -8,8 +8,19 @@ import java.util.*;
 abstract public class Sentence implements Cloneable{
 
   /** Returns the set of all <code>Variable</code>s appearing in this
-      <code>Sentence</code>. */
+      <code>Sentence</code>.  The sentences of this package return a
+      <code>VariableSet</code>, which cannot be modified and may be
+      shared between calls. */
   abstract public Set getVariables();
+
+  /* adds the variables of this sentence to builder.  The connectives
+   * override this to walk their parts without building a set for
+   * each. */
+  void collectVariables(VariableSet.Builder builder){
+	Iterator i = getVariables().iterator();
+	while(i.hasNext())
+	  builder.add((Variable) i.next());
+  }
   
   /** Evaluates the truth value of this <code>Sentence</code> under
 	  <code>interpretation</code>. If the truth value of the sentence
@@ -0,0 +1,1028 @@
+package techniques.PL;
+
+import java.io.*;
+import java.util.*;
+
+/** A conflict-driven clause-learning (CDCL) SAT solver in the style
+    of MiniSat.  It propagates with two watched literals, branches on
+    the variable with the highest VSIDS activity, learns first-UIP
+    clauses, restarts on a Luby schedule and periodically deletes the
+    less useful half of its learned clauses.
+
+    <p>Variables and literals use the encoding of
+    <code>ClauseArena</code>.  The simplest way to use the solver is
+    <code>Solver.solve(Conjunction)</code>, which returns a satisfying
+    <code>Interpretation</code> or <code>null</code> if there is
+    none.
+
+    <p>With <code>setProof()</code>, the solver logs every clause it
+    learns or deletes as a DRAT proof, so that an unsatisfiable answer
+    can be checked independently, e.g. by <code>DratChecker</code>. */
+public class Solver {
+
+  /* literal values, indexed by literal */
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+  private static final byte UNDEF = 0;
+
+  /* clause header layout in mem: size, flags, lbd, activity */
+  private static final int SIZE = 0;
+  private static final int FLAGS = 1;
+  private static final int LBD = 2;
+  private static final int ACTIVITY = 3;
+  private static final int HEADER = 4;
+
+  private static final int LEARNT = 1;
+  private static final int DELETED = 2;
+
+  private static final int NO_REASON = -1;
+
+  /** Initial branching polarities for <code>setPolarity()</code>.
+      Whatever the choice, a variable keeps the polarity it last had
+      once it has been assigned. */
+  public static final int POLARITY_NEGATIVE = 0;
+  public static final int POLARITY_POSITIVE = 1;
+  public static final int POLARITY_RANDOM = 2;
+
+  /* configuration */
+  private double varDecay = 0.95;
+  private double clauseDecay = 0.999;
+  private int restartFirst = 100;
+  private double restartInc = 2;
+  private boolean lubyRestarts = true;
+  private long conflictBudget = -1;
+  private volatile boolean interrupted = false;
+  private int polarityMode = POLARITY_NEGATIVE;
+  private double randomFrequency = 0;
+  private Random random = new Random(91648253);
+
+  /* sharing of learned clauses with other solvers */
+  private ClauseExchange exchange;
+  private int exchangeId;
+  private int exchangeMaxSize;
+  private long exchangeCursor = 0;
+  private List imported = new ArrayList();
+
+  /* where learned and deleted clauses are logged, or null */
+  private DratWriter proof;
+
+  /* literals assumed true by the current solve(), one per level, and
+   * those of them that the last solve() found inconsistent */
+  private int[] assumptions = new int[0];
+  private IntVec conflict = new IntVec();
+
+  /* clause memory */
+  private int[] mem = new int[1024];
+  private int memSize = 0;
+  private int wasted = 0;
+  private IntVec clauses = new IntVec();
+  private IntVec learnts = new IntVec();
+
+  /* watches[p] holds (clause, blocker) pairs of the clauses watching ~p */
+  private int[][] watches = new int[0][];
+  private int[] watchSize = new int[0];
+
+  /* assignment */
+  private int numVars = 0;
+  private byte[] values = new byte[0];
+  private int[] level = new int[0];
+  private int[] reason = new int[0];
+  private boolean[] polarity = new boolean[0];
+  private boolean[] seen = new boolean[0];
+  private int[] trail = new int[0];
+  private int trailSize = 0;
+  private IntVec trailLim = new IntVec();
+  private int qhead = 0;
+  private boolean ok = true;
+
+  /* VSIDS */
+  private double[] activity = new double[0];
+  private double varInc = 1;
+  private double clauseInc = 1;
+  private int[] heap = new int[0];
+  private int heapSize = 0;
+  private int[] heapIndex = new int[0];
+
+  private double maxLearnts;
+  private boolean[] model;
+
+  /* statistics */
+  private long decisions = 0;
+  private long propagations = 0;
+  private long conflicts = 0;
+  private long restarts = 0;
+  private long learntClauses = 0;
+  private long learntLiterals = 0;
+  private int sampling = 0;
+
+  /** Constructs a solver without variables or clauses. */
+  public Solver(){
+  }
+
+  /** Constructs a solver for the clauses of <code>arena</code>. */
+  public Solver(ClauseArena arena){
+	this((ClauseStore) arena);
+  }
+
+  /** Constructs a solver for the clauses of <code>store</code>, read
+      one at a time, e.g. from a <code>MappedClauseStore</code>. */
+  public Solver(ClauseStore store){
+	addClauses(store);
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code>, or <code>null</code> if it is
+      unsatisfiable.  The interpretation assigns every variable of
+      <code>conjunction</code>. */
+  public static Interpretation solve(Conjunction conjunction){
+	PackedConjunction packed = PackedConjunction.pack(conjunction);
+	Solver solver = new Solver(packed.getArena());
+	if(solver.solve() != Boolean.TRUE)
+	  return null;
+	return solver.getInterpretation(packed);
+  }
+
+  /** Like <code>solve(Conjunction)</code>, but also writes a binary
+      DRAT proof to <code>proof</code>.  If the result is
+      <code>null</code>, the proof refutes the clauses of
+      <code>PackedConjunction.pack(conjunction)</code>, numbered as in
+      <code>Dimacs.write(Conjunction, File)</code>. */
+  public static Interpretation solve(Conjunction conjunction, File proof)
+	throws IOException{
+	PackedConjunction packed = PackedConjunction.pack(conjunction);
+	DratWriter writer = new DratWriter(proof);
+	Boolean status;
+	Solver solver = new Solver();
+	try{
+	  solver.setProof(writer);
+	  solver.addClauses(packed.getArena());
+	  status = solver.solve();
+	}
+	finally{
+	  writer.close();
+	}
+	return (status == Boolean.TRUE) ? solver.getInterpretation(packed) : null;
+  }
+
+  /* adds the clauses of store, as the constructor does. */
+  private void addClauses(ClauseStore store){
+	Metrics.global().recordArena(store);
+	ensureVariables(store.numVariables());
+	for(int c = 0; c < store.numClauses() && ok; c++)
+	  addClause(store.clause(c));
+  }
+
+  /** Adds a fresh variable and returns its index. */
+  public int newVariable(){
+	ensureVariables(numVars + 1);
+	return numVars - 1;
+  }
+
+  /** Makes sure that variables <code>0</code> to <code>n-1</code>
+      exist. */
+  public void ensureVariables(int n){
+	if(n <= numVars)
+	  return;
+	int oldVars = numVars;
+	values = Arrays.copyOf(values, 2 * n);
+	watches = Arrays.copyOf(watches, 2 * n);
+	watchSize = Arrays.copyOf(watchSize, 2 * n);
+	level = Arrays.copyOf(level, n);
+	reason = Arrays.copyOf(reason, n);
+	polarity = Arrays.copyOf(polarity, n);
+	seen = Arrays.copyOf(seen, n);
+	trail = Arrays.copyOf(trail, n);
+	activity = Arrays.copyOf(activity, n);
+	heap = Arrays.copyOf(heap, n);
+	heapIndex = Arrays.copyOf(heapIndex, n);
+	numVars = n;
+	for(int v = oldVars; v < n; v++){
+	  watches[2 * v] = new int[4];
+	  watches[2 * v + 1] = new int[4];
+	  reason[v] = NO_REASON;
+	  polarity[v] = initialPolarity();
+	  heapIndex[v] = -1;
+	  heapInsert(v);
+	}
+  }
+
+  /** Returns the number of variables. */
+  public int numVariables(){
+	return numVars;
+  }
+
+  /** Adds a clause.  Must be called between calls to
+      <code>solve()</code>.  Returns false if the solver has become
+      trivially unsatisfiable. */
+  public boolean addClause(int[] literals){
+	if(!ok)
+	  return false;
+	cancelUntil(0);
+
+	int[] lits = literals.clone();
+	Arrays.sort(lits);
+	int n = 0;
+	int previous = -1;
+	for(int i = 0; i < lits.length; i++){
+	  int p = lits[i];
+	  ensureVariables(ClauseArena.var(p) + 1);
+	  if(values[p] == TRUE || p == ClauseArena.negate(previous))
+		return true; // satisfied or tautology
+	  if(values[p] != FALSE && p != previous)
+		lits[n++] = previous = p;
+	}
+
+	if(n == 0)
+	  return refute();
+	if(n == 1){
+	  enqueue(lits[0], NO_REASON);
+	  return (propagate() == NO_REASON) || refute();
+	}
+	clauses.push(allocate(lits, n, false));
+	attach(clauses.last());
+	return true;
+  }
+
+  /** Searches for a satisfying assignment.  Returns
+      <code>Boolean.TRUE</code> if one was found (see
+      <code>modelValue()</code>), <code>Boolean.FALSE</code> if there is
+      none, and <code>null</code> if the search was interrupted or ran
+      out of its conflict budget.  Once <code>interrupt()</code> has
+      been called, <code>solve()</code> returns <code>null</code> at once
+      until <code>clearInterrupt()</code> is called. */
+  public Boolean solve(){
+	return solve(new int[0]);
+  }
+
+  /** Like <code>solve()</code>, but only looks for assignments in
+      which every literal of <code>assumptions</code> is true.
+      <code>Boolean.FALSE</code> then means that there is no such
+      assignment; the clauses themselves may still be satisfiable.
+      Everything learned stays valid for later calls with other
+      assumptions. */
+  public Boolean solve(int[] assumptions){
+	Metrics metrics = Metrics.global();
+	long start = metrics.beginPhase();
+	long decisions0 = decisions, propagations0 = propagations;
+	long conflicts0 = conflicts, restarts0 = restarts;
+	long learnts0 = learntClauses, literals0 = learntLiterals;
+	sampling = metrics.isEnabled() ? metrics.getSampling() : 0;
+	try{
+	  return solveLimited(assumptions);
+	}
+	finally{
+	  metrics.addSearch(decisions - decisions0, propagations - propagations0,
+						conflicts - conflicts0, restarts - restarts0,
+						learntClauses - learnts0, learntLiterals - literals0);
+	  metrics.recordSolverBytes(4L * mem.length);
+	  metrics.endPhase(Metrics.SOLVE, start);
+	}
+  }
+
+  private Boolean solveLimited(int[] assumptions){
+	model = null;
+	conflict.clear();
+	if(!ok)
+	  return Boolean.FALSE;
+	for(int i = 0; i < assumptions.length; i++)
+	  ensureVariables(ClauseArena.var(assumptions[i]) + 1);
+	this.assumptions = assumptions.clone();
+
+	maxLearnts = Math.max(clauses.size() / 3.0, 1000);
+	long budgetEnd = (conflictBudget < 0) ? Long.MAX_VALUE
+	  : conflicts + conflictBudget;
+	Boolean status = null;
+
+	for(int round = 0; status == null; round++){
+	  if(interrupted || conflicts >= budgetEnd)
+		break;
+	  if(exchange != null && proof == null && !importShared())
+		return Boolean.FALSE;
+	  double base = lubyRestarts ? luby(restartInc, round)
+		: Math.pow(restartInc, round);
+	  status = search((long) (base * restartFirst), budgetEnd);
+	  if(status == null)
+		restarts++;
+	}
+
+	cancelUntil(0);
+	return status;
+  }
+
+  /** Returns the assumptions that the last <code>solve(int[])</code>
+      found inconsistent with the clauses, when it returned
+      <code>Boolean.FALSE</code>: no assignment makes all of them true.
+      The set is not necessarily minimal, and is empty if the clauses
+      are unsatisfiable on their own. */
+  public int[] getConflict(){
+	return conflict.toArray();
+  }
+
+  /** Returns the value of variable <code>var</code> in the last model
+      found by <code>solve()</code>. */
+  public boolean modelValue(int var){
+	return model[var];
+  }
+
+  /** Returns a copy of the last model found by <code>solve()</code>,
+      indexed by variable. */
+  public boolean[] getModel(){
+	return model.clone();
+  }
+
+  /** Returns the last model found by <code>solve()</code> as an
+      <code>Interpretation</code> over the variables of
+      <code>conjunction</code>, whose arena must be the one this solver
+      was built from. */
+  public Interpretation getInterpretation(PackedConjunction conjunction){
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = conjunction.ids();
+	for(int v = 0; v < conjunction.numVariables(); v++)
+	  interpretation.set(ids[v], model[v]);
+	return interpretation;
+  }
+
+  /** Asks a running <code>solve()</code> to give up as soon as
+      possible.  May be called from any thread. */
+  public void interrupt(){
+	interrupted = true;
+  }
+
+  /** Undoes <code>interrupt()</code>, so that the next
+      <code>solve()</code> runs again. */
+  public void clearInterrupt(){
+	interrupted = false;
+  }
+
+  /** Limits each call of <code>solve()</code> to
+      <code>conflicts</code> conflicts; a negative value means no
+      limit. */
+  public void setConflictBudget(long conflicts){
+	conflictBudget = conflicts;
+  }
+
+  public long getConflictBudget(){
+	return conflictBudget;
+  }
+
+  /** Sets the restart schedule: the first restart happens after
+      <code>first</code> conflicts, and later intervals grow by
+      <code>inc</code>, either on the Luby sequence or
+      geometrically. */
+  public void setRestarts(int first, double inc, boolean luby){
+	restartFirst = first;
+	restartInc = inc;
+	lubyRestarts = luby;
+  }
+
+  /** Sets the VSIDS decay factor for variable activities. */
+  public void setVarDecay(double decay){
+	varDecay = decay;
+  }
+
+  /** Seeds the random choices of the solver, so that differently
+      seeded solvers search differently. */
+  public void setSeed(long seed){
+	random = new Random(seed);
+  }
+
+  /** Makes the solver branch on a random variable instead of the most
+      active one with probability <code>frequency</code>. */
+  public void setRandomFrequency(double frequency){
+	randomFrequency = frequency;
+  }
+
+  /** Sets the polarity every unassigned variable is first branched
+      on: <code>POLARITY_NEGATIVE</code> (the default),
+      <code>POLARITY_POSITIVE</code> or <code>POLARITY_RANDOM</code>. */
+  public void setPolarity(int mode){
+	if(mode < POLARITY_NEGATIVE || mode > POLARITY_RANDOM)
+	  throw new IllegalArgumentException("Unknown polarity: " + mode);
+	polarityMode = mode;
+	for(int v = 0; v < numVars; v++)
+	  if(values[2 * v] == UNDEF)
+		polarity[v] = initialPolarity();
+  }
+
+  /** Shares learned clauses of at most <code>maxSize</code> literals
+      through <code>exchange</code> under the name <code>id</code>, and
+      adds the clauses other solvers share there at each restart.  All
+      solvers on one exchange must have been given the same clauses
+      over the same variables.  Pass <code>null</code> to stop
+      sharing. */
+  public void setExchange(ClauseExchange exchange, int id, int maxSize){
+	this.exchange = exchange;
+	this.exchangeId = id;
+	this.exchangeMaxSize = maxSize;
+	this.exchangeCursor = 0;
+  }
+
+  /** Logs every clause learned or deleted from now on to
+      <code>proof</code> as a DRAT proof; pass <code>null</code> to
+      stop.  For the proof to be complete, set it before adding any
+      clause.  When <code>solve()</code> returns
+      <code>Boolean.FALSE</code>, the proof ends with the empty clause,
+      or, under assumptions, with the clause of the negations of
+      <code>getConflict()</code>.  While a proof is logged, the clauses
+      of other solvers on the exchange are not imported, as the proof
+      could not justify them. */
+  public void setProof(DratWriter proof){
+	this.proof = proof;
+  }
+
+  public long getDecisions(){
+	return decisions;
+  }
+
+  public long getPropagations(){
+	return propagations;
+  }
+
+  public long getConflicts(){
+	return conflicts;
+  }
+
+  public long getRestarts(){
+	return restarts;
+  }
+
+  /** Returns the number of learned clauses currently kept. */
+  public int numLearnts(){
+	return learnts.size();
+  }
+
+  /* ---------------------------------------------------------------- */
+
+  private Boolean search(long restartConflicts, long budgetEnd){
+	long conflictsHere = 0;
+	IntVec learnt = new IntVec();
+
+	while(true){
+	  int confl = propagate();
+	  if(confl != NO_REASON){
+		conflicts++;
+		conflictsHere++;
+		if(trailLim.size() == 0){
+		  refute(); // even without assumptions
+		  return Boolean.FALSE;
+		}
+
+		learnt.clear();
+		int backtrackLevel = analyze(confl, learnt);
+		cancelUntil(backtrackLevel);
+		learntClauses++;
+		learntLiterals += learnt.size();
+		if(sampling > 0 && learntClauses % sampling == 0)
+		  Metrics.global().sampleLearnt(learnt.size());
+
+		if(proof != null)
+		  proof.add(learnt.data, 0, learnt.size());
+		if(exchange != null && learnt.size() <= exchangeMaxSize)
+		  exchange.publish(exchangeId, learnt.toArray());
+		if(learnt.size() == 1)
+		  enqueue(learnt.get(0), NO_REASON);
+		else{
+		  int cr = allocate(learnt.data, learnt.size(), true);
+		  mem[cr + LBD] = computeLbd(cr);
+		  learnts.push(cr);
+		  attach(cr);
+		  bumpClause(cr);
+		  enqueue(learnt.get(0), cr);
+		}
+		varInc /= varDecay;
+		clauseInc /= clauseDecay;
+		continue;
+	  }
+
+	  if(conflictsHere >= restartConflicts || conflicts >= budgetEnd
+		 || interrupted){
+		cancelUntil(0);
+		return null;
+	  }
+
+	  if(learnts.size() - trailSize >= maxLearnts){
+		reduceDb();
+		maxLearnts *= 1.1;
+	  }
+
+	  /* decide the assumptions first, one level each */
+	  int next = -1;
+	  while(trailLim.size() < assumptions.length){
+		int p = assumptions[trailLim.size()];
+		if(values[p] == TRUE)
+		  trailLim.push(trailSize); // already true: an empty level
+		else if(values[p] == FALSE){
+		  analyzeFinal(p);
+		  if(proof != null)
+			logConflict();
+		  cancelUntil(0);
+		  return Boolean.FALSE;
+		}
+		else{
+		  next = p;
+		  break;
+		}
+	  }
+	  if(next == -1)
+		next = pickBranchLiteral();
+	  if(next == -1){
+		model = new boolean[numVars];
+		for(int v = 0; v < numVars; v++)
+		  model[v] = (values[2 * v] == TRUE);
+		return Boolean.TRUE;
+	  }
+	  decisions++;
+	  trailLim.push(trailSize);
+	  enqueue(next, NO_REASON);
+	}
+  }
+
+  /* returns the conflicting clause, or NO_REASON. */
+  private int propagate(){
+	int confl = NO_REASON;
+	while(qhead < trailSize){
+	  int p = trail[qhead++];
+	  int falseLit = ClauseArena.negate(p);
+	  int[] ws = watches[p];
+	  int n = watchSize[p];
+	  int i = 0;
+	  int j = 0;
+	  propagations++;
+
+	  while(i < n){
+		int cr = ws[i];
+		int blocker = ws[i + 1];
+		i += 2;
+		if(values[blocker] == TRUE){
+		  ws[j++] = cr;
+		  ws[j++] = blocker;
+		  continue;
+		}
+		if((mem[cr + FLAGS] & DELETED) != 0)
+		  continue;
+
+		int base = cr + HEADER;
+		if(mem[base] == falseLit){
+		  mem[base] = mem[base + 1];
+		  mem[base + 1] = falseLit;
+		}
+		int first = mem[base];
+		if(first != blocker && values[first] == TRUE){
+		  ws[j++] = cr;
+		  ws[j++] = first;
+		  continue;
+		}
+
+		int size = mem[cr + SIZE];
+		boolean moved = false;
+		for(int k = 2; k < size; k++){
+		  int q = mem[base + k];
+		  if(values[q] != FALSE){
+			mem[base + 1] = q;
+			mem[base + k] = falseLit;
+			watch(ClauseArena.negate(q), cr, first);
+			moved = true;
+			break;
+		  }
+		}
+		if(moved)
+		  continue;
+
+		ws[j++] = cr;
+		ws[j++] = first;
+		if(values[first] == FALSE){
+		  confl = cr;
+		  qhead = trailSize;
+		  while(i < n)
+			ws[j++] = ws[i++];
+		}
+		else
+		  enqueue(first, cr);
+	  }
+	  watchSize[p] = j;
+	}
+	return confl;
+  }
+
+  /* adds the clauses shared by other solvers since the last call, at
+   * level 0.  Returns false if one of them makes the clauses
+   * unsatisfiable. */
+  private boolean importShared(){
+	imported.clear();
+	exchangeCursor = exchange.collect(exchangeId, exchangeCursor, imported);
+	int[] lits = new int[16];
+	for(int c = 0; c < imported.size(); c++){
+	  int[] clause = (int[]) imported.get(c);
+	  if(lits.length < clause.length)
+		lits = new int[clause.length];
+	  int n = 0;
+	  boolean satisfied = false;
+	  for(int i = 0; i < clause.length && !satisfied; i++){
+		int p = clause[i];
+		if(ClauseArena.var(p) >= numVars)
+		  satisfied = true; // not ours: ignore the clause
+		else if(values[p] == TRUE)
+		  satisfied = true;
+		else if(values[p] == UNDEF)
+		  lits[n++] = p;
+	  }
+	  if(satisfied)
+		continue;
+	  if(n == 0)
+		return ok = false;
+	  if(n == 1){
+		enqueue(lits[0], NO_REASON);
+		if(propagate() != NO_REASON)
+		  return ok = false;
+		continue;
+	  }
+	  int cr = allocate(lits, n, true);
+	  learnts.push(cr);
+	  attach(cr);
+	}
+	return true;
+  }
+
+  /* first-UIP conflict analysis.  Fills learnt with the asserting
+   * literal first and returns the level to backtrack to. */
+  private int analyze(int confl, IntVec learnt){
+	int pathCount = 0;
+	int p = -1;
+	int index = trailSize - 1;
+	learnt.push(-1); // room for the asserting literal
+
+	do{
+	  if((mem[confl + FLAGS] & LEARNT) != 0)
+		bumpClause(confl);
+	  int base = confl + HEADER;
+	  int size = mem[confl + SIZE];
+	  for(int k = (p == -1) ? 0 : 1; k < size; k++){
+		int q = mem[base + k];
+		int v = ClauseArena.var(q);
+		if(!seen[v] && level[v] > 0){
+		  bumpVariable(v);
+		  seen[v] = true;
+		  if(level[v] >= trailLim.size())
+			pathCount++;
+		  else
+			learnt.push(q);
+		}
+	  }
+	  while(!seen[ClauseArena.var(trail[index])])
+		index--;
+	  p = trail[index--];
+	  confl = reason[ClauseArena.var(p)];
+	  seen[ClauseArena.var(p)] = false;
+	  pathCount--;
+	} while(pathCount > 0);
+	learnt.set(0, ClauseArena.negate(p));
+
+	/* drop literals implied by the rest of the clause */
+	int[] toClear = learnt.toArray();
+	int n = 1;
+	for(int i = 1; i < learnt.size(); i++){
+	  int q = learnt.get(i);
+	  int r = reason[ClauseArena.var(q)];
+	  if(r == NO_REASON || !redundant(r))
+		learnt.set(n++, q);
+	}
+	for(int i = 1; i < toClear.length; i++)
+	  seen[ClauseArena.var(toClear[i])] = false;
+	learnt.shrink(n);
+
+	/* put a literal of the highest remaining level second */
+	if(n == 1)
+	  return 0;
+	int max = 1;
+	for(int i = 2; i < n; i++)
+	  if(level[ClauseArena.var(learnt.get(i))]
+		 > level[ClauseArena.var(learnt.get(max))])
+		max = i;
+	int q = learnt.get(max);
+	learnt.set(max, learnt.get(1));
+	learnt.set(1, q);
+	return level[ClauseArena.var(q)];
+  }
+
+  /* collects into conflict the assumptions that imply ~p, p being an
+   * assumption found false.  Every level is an assumption level at
+   * this point, so the decisions met are assumptions. */
+  private void analyzeFinal(int p){
+	conflict.clear();
+	conflict.push(p);
+	if(trailLim.size() == 0)
+	  return;
+	seen[ClauseArena.var(p)] = true;
+	for(int i = trailSize - 1; i >= trailLim.get(0); i--){
+	  int v = ClauseArena.var(trail[i]);
+	  if(!seen[v])
+		continue;
+	  int r = reason[v];
+	  if(r == NO_REASON)
+		conflict.push(trail[i]);
+	  else{
+		int base = r + HEADER;
+		for(int k = 1; k < mem[r + SIZE]; k++)
+		  if(level[ClauseArena.var(mem[base + k])] > 0)
+			seen[ClauseArena.var(mem[base + k])] = true;
+	  }
+	  seen[v] = false;
+	}
+	seen[ClauseArena.var(p)] = false;
+  }
+
+  /* logs the clause refuting the assumptions of conflict. */
+  private void logConflict(){
+	int[] clause = conflict.toArray();
+	for(int i = 0; i < clause.length; i++)
+	  clause[i] = ClauseArena.negate(clause[i]);
+	proof.add(clause);
+  }
+
+  /* marks the clauses unsatisfiable, logging the empty clause, and
+   * returns false. */
+  private boolean refute(){
+	if(ok && proof != null)
+	  proof.add(new int[0]);
+	return ok = false;
+  }
+
+  /* true if all other literals of reason clause r are already in the
+   * learnt clause or fixed at level 0. */
+  private boolean redundant(int r){
+	int base = r + HEADER;
+	for(int k = 1; k < mem[r + SIZE]; k++){
+	  int v = ClauseArena.var(mem[base + k]);
+	  if(!seen[v] && level[v] > 0)
+		return false;
+	}
+	return true;
+  }
+
+  private int computeLbd(int cr){
+	int lbd = 0;
+	int base = cr + HEADER;
+	int size = mem[cr + SIZE];
+	for(int k = 0; k < size; k++){
+	  int l = level[ClauseArena.var(mem[base + k])];
+	  boolean counted = false;
+	  for(int m = 0; m < k && !counted; m++)
+		counted = (level[ClauseArena.var(mem[base + m])] == l);
+	  if(!counted)
+		lbd++;
+	  if(k > 32)
+		return lbd + size - k; // good enough for long clauses
+	}
+	return lbd;
+  }
+
+  private void enqueue(int p, int from){
+	int v = ClauseArena.var(p);
+	values[p] = TRUE;
+	values[ClauseArena.negate(p)] = FALSE;
+	level[v] = trailLim.size();
+	reason[v] = from;
+	trail[trailSize++] = p;
+  }
+
+  private void cancelUntil(int targetLevel){
+	if(trailLim.size() <= targetLevel)
+	  return;
+	int limit = trailLim.get(targetLevel);
+	for(int i = trailSize - 1; i >= limit; i--){
+	  int p = trail[i];
+	  int v = ClauseArena.var(p);
+	  values[p] = UNDEF;
+	  values[ClauseArena.negate(p)] = UNDEF;
+	  reason[v] = NO_REASON;
+	  polarity[v] = ClauseArena.isNegated(p);
+	  if(heapIndex[v] < 0)
+		heapInsert(v);
+	}
+	trailSize = limit;
+	qhead = limit;
+	trailLim.shrink(targetLevel);
+  }
+
+  private int pickBranchLiteral(){
+	if(randomFrequency > 0 && numVars > 0
+	   && random.nextDouble() < randomFrequency){
+	  int v = random.nextInt(numVars);
+	  if(values[2 * v] == UNDEF)
+		return ClauseArena.literal(v, polarity[v]);
+	}
+	while(heapSize > 0){
+	  int v = heapRemoveMax();
+	  if(values[2 * v] == UNDEF)
+		return ClauseArena.literal(v, polarity[v]);
+	}
+	return -1;
+  }
+
+  private boolean initialPolarity(){
+	if(polarityMode == POLARITY_RANDOM)
+	  return random.nextBoolean();
+	return polarityMode == POLARITY_NEGATIVE;
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* clause memory */
+
+  private int allocate(int[] lits, int n, boolean learnt){
+	if(memSize + HEADER + n > mem.length)
+	  mem = Arrays.copyOf(mem, Math.max(memSize + HEADER + n, 2 * mem.length));
+	int cr = memSize;
+	mem[cr + SIZE] = n;
+	mem[cr + FLAGS] = learnt ? LEARNT : 0;
+	mem[cr + LBD] = n;
+	mem[cr + ACTIVITY] = Float.floatToIntBits(0f);
+	System.arraycopy(lits, 0, mem, cr + HEADER, n);
+	memSize += HEADER + n;
+	return cr;
+  }
+
+  private void attach(int cr){
+	int base = cr + HEADER;
+	watch(ClauseArena.negate(mem[base]), cr, mem[base + 1]);
+	watch(ClauseArena.negate(mem[base + 1]), cr, mem[base]);
+  }
+
+  private void watch(int p, int cr, int blocker){
+	int[] ws = watches[p];
+	int n = watchSize[p];
+	if(n + 2 > ws.length)
+	  watches[p] = ws = Arrays.copyOf(ws, 2 * ws.length);
+	ws[n] = cr;
+	ws[n + 1] = blocker;
+	watchSize[p] = n + 2;
+  }
+
+  private boolean locked(int cr){
+	int p = mem[cr + HEADER];
+	return values[p] == TRUE && reason[ClauseArena.var(p)] == cr;
+  }
+
+  private float clauseActivity(int cr){
+	return Float.intBitsToFloat(mem[cr + ACTIVITY]);
+  }
+
+  private void bumpClause(int cr){
+	float a = clauseActivity(cr) + (float) clauseInc;
+	mem[cr + ACTIVITY] = Float.floatToIntBits(a);
+	if(a > 1e20f){
+	  for(int i = 0; i < learnts.size(); i++){
+		int c = learnts.get(i);
+		mem[c + ACTIVITY] = Float.floatToIntBits(clauseActivity(c) * 1e-20f);
+	  }
+	  clauseInc *= 1e-20;
+	}
+  }
+
+  /* removes the less active half of the learned clauses, keeping
+   * binary clauses, glue clauses and reasons. */
+  private void reduceDb(){
+	int n = learnts.size();
+	Integer[] order = new Integer[n];
+	for(int i = 0; i < n; i++)
+	  order[i] = new Integer(learnts.get(i));
+	Arrays.sort(order, new Comparator<Integer>(){
+		public int compare(Integer a, Integer b){
+		  int x = a.intValue();
+		  int y = b.intValue();
+		  if(mem[x + LBD] != mem[y + LBD])
+			return mem[y + LBD] - mem[x + LBD];
+		  return Float.compare(clauseActivity(x), clauseActivity(y));
+		}
+	  });
+
+	learnts.clear();
+	for(int i = 0; i < n; i++){
+	  int cr = order[i].intValue();
+	  if(i < n / 2 && mem[cr + SIZE] > 2 && mem[cr + LBD] > 2 && !locked(cr)){
+		mem[cr + FLAGS] |= DELETED;
+		wasted += HEADER + mem[cr + SIZE];
+		if(proof != null)
+		  proof.delete(mem, cr + HEADER, mem[cr + SIZE]);
+	  }
+	  else
+		learnts.push(cr);
+	}
+	if(wasted > memSize / 2)
+	  collectGarbage();
+  }
+
+  /* compacts clause memory and relocates all references to it. */
+  private void collectGarbage(){
+	int[] newMem = new int[Math.max(1024, 2 * (memSize - wasted))];
+	int newSize = 0;
+	IntVec[] lists = { clauses, learnts };
+	for(int l = 0; l < lists.length; l++){
+	  IntVec list = lists[l];
+	  for(int i = 0; i < list.size(); i++){
+		int cr = list.get(i);
+		int length = HEADER + mem[cr + SIZE];
+		System.arraycopy(mem, cr, newMem, newSize, length);
+		mem[cr + ACTIVITY] = newSize; // forwarding address
+		list.set(i, newSize);
+		newSize += length;
+	  }
+	}
+
+	for(int p = 0; p < 2 * numVars; p++){
+	  int[] ws = watches[p];
+	  int j = 0;
+	  for(int i = 0; i < watchSize[p]; i += 2){
+		if((mem[ws[i] + FLAGS] & DELETED) == 0){
+		  ws[j++] = mem[ws[i] + ACTIVITY];
+		  ws[j++] = ws[i + 1];
+		}
+	  }
+	  watchSize[p] = j;
+	}
+	for(int i = 0; i < trailSize; i++){
+	  int v = ClauseArena.var(trail[i]);
+	  if(reason[v] != NO_REASON)
+		reason[v] = mem[reason[v] + ACTIVITY];
+	}
+
+	mem = newMem;
+	memSize = newSize;
+	wasted = 0;
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* VSIDS heap, ordered by decreasing activity */
+
+  private void bumpVariable(int v){
+	if((activity[v] += varInc) > 1e100){
+	  for(int i = 0; i < numVars; i++)
+		activity[i] *= 1e-100;
+	  varInc *= 1e-100;
+	}
+	if(heapIndex[v] >= 0)
+	  heapUp(heapIndex[v]);
+  }
+
+  private void heapInsert(int v){
+	heapIndex[v] = heapSize;
+	heap[heapSize++] = v;
+	heapUp(heapSize - 1);
+  }
+
+  private int heapRemoveMax(){
+	int v = heap[0];
+	heap[0] = heap[--heapSize];
+	heapIndex[heap[0]] = 0;
+	heapIndex[v] = -1;
+	if(heapSize > 1)
+	  heapDown(0);
+	return v;
+  }
+
+  private void heapUp(int i){
+	int v = heap[i];
+	while(i > 0){
+	  int parent = (i - 1) >> 1;
+	  if(activity[heap[parent]] >= activity[v])
+		break;
+	  heap[i] = heap[parent];
+	  heapIndex[heap[i]] = i;
+	  i = parent;
+	}
+	heap[i] = v;
+	heapIndex[v] = i;
+  }
+
+  private void heapDown(int i){
+	int v = heap[i];
+	while(2 * i + 1 < heapSize){
+	  int child = 2 * i + 1;
+	  if(child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]])
+		child++;
+	  if(activity[heap[child]] <= activity[v])
+		break;
+	  heap[i] = heap[child];
+	  heapIndex[heap[i]] = i;
+	  i = child;
+	}
+	heap[i] = v;
+	heapIndex[v] = i;
+  }
+
+  /* the Luby sequence 1 1 2 1 1 2 4 1 1 2 ..., scaled by y. */
+  private static double luby(double y, int x){
+	int size = 1;
+	int seq = 0;
+	while(size < x + 1){
+	  seq++;
+	  size = 2 * size + 1;
+	}
+	while(size - 1 != x){
+	  size = (size - 1) >> 1;
+	  seq--;
+	  x = x % size;
+	}
+	return Math.pow(y, seq);
+  }
+
+}
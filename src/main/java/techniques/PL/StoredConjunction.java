@@ -0,0 +1,174 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** A <code>Conjunction</code> view of the clauses of a
+    <code>ClauseStore</code>, typically a <code>MappedClauseStore</code>
+    too large for the heap.  Variable <code>i</code> of the store stands
+    for <code>getVariable(i)</code>.
+
+    <p>Nothing is materialized up front: <code>isSatisfied</code>,
+    <code>getVariables</code> and <code>toString</code> read the store
+    directly, and the list returned by <code>getClauses</code> builds a
+    <code>Disjunction</code> only when one of its elements is asked
+    for.  The store must not change while it is viewed. */
+public class StoredConjunction extends Conjunction {
+
+  private final ClauseStore store;
+  /* the Variable of each store variable, named on demand */
+  private final Variable[] variables;
+
+  /** Constructs a view of <code>store</code> whose variable
+      <code>i</code> is named <code>x</code><i>i+1</i>, as in
+      <code>Dimacs</code>. */
+  public StoredConjunction(ClauseStore store){
+	this(store, new Variable[store.numVariables()]);
+  }
+
+  /** Constructs a view of <code>store</code> whose variable
+      <code>i</code> is <code>variables[i]</code>; there must be at
+      least <code>store.numVariables()</code> of them. */
+  public StoredConjunction(ClauseStore store, Variable[] variables){
+	super(Collections.EMPTY_LIST);
+	if(variables.length < store.numVariables())
+	  throw new IllegalArgumentException("Missing variable names: "
+										 + variables.length + " < "
+										 + store.numVariables());
+	this.store = store;
+	this.variables = variables;
+  }
+
+  /** Returns the store holding the clauses. */
+  public ClauseStore getStore(){
+	return store;
+  }
+
+  /** Returns the <code>Variable</code> that store variable
+      <code>id</code> stands for. */
+  public Variable getVariable(int id){
+	Variable variable = variables[id];
+	if(variable == null)
+	  variables[id] = variable = Variable.intern("x" + (id + 1));
+	return variable;
+  }
+
+  /** Returns the literal sentence (a <code>Variable</code> or a
+      <code>Negation</code>) for store literal <code>literal</code>. */
+  public Sentence getLiteral(int literal){
+	Variable v = getVariable(ClauseArena.var(literal));
+	return ClauseArena.isNegated(literal) ? (Sentence) new Negation(v) : v;
+  }
+
+  /** Returns the number of variables of the store. */
+  public int numVariables(){
+	return store.numVariables();
+  }
+
+  /** Returns the clauses as a list that cannot be modified, whose
+      <code>Disjunction</code>s are built as they are read. */
+  public List getClauses(){
+	return new AbstractList(){
+		public Object get(int c){
+		  int size = store.clauseSize(c);
+		  List literals = new ArrayList(size);
+		  for(int i = 0; i < size; i++)
+			literals.add(getLiteral(store.clauseLiteral(c, i)));
+		  return new Disjunction(literals);
+		}
+
+		public int size(){
+		  return store.numClauses();
+		}
+	  };
+  }
+
+  /** Returns the clauses packed into a heap
+      <code>ClauseArena</code>, with the same variables. */
+  public PackedConjunction toPacked(){
+	ClauseArena arena;
+	if(store instanceof ClauseArena)
+	  arena = (ClauseArena) store;
+	else if(store instanceof MappedClauseStore)
+	  arena = ((MappedClauseStore) store).toArena();
+	else{
+	  arena = new ClauseArena(Math.max(1, store.numClauses()), 3 * store.numClauses());
+	  arena.ensureVariables(store.numVariables());
+	  for(int c = 0; c < store.numClauses(); c++)
+		arena.addClause(store.clause(c));
+	}
+	Variable[] names = new Variable[store.numVariables()];
+	for(int v = 0; v < names.length; v++)
+	  names[v] = getVariable(v);
+	return new PackedConjunction(arena, names);
+  }
+
+  public Set getVariables(){
+	return new VariableSet.Builder().addAll(this).build();
+  }
+
+  void collectVariables(VariableSet.Builder builder){
+	boolean[] seen = new boolean[store.numVariables()];
+	for(int c = 0; c < store.numClauses(); c++)
+	  for(int i = store.clauseSize(c) - 1; i >= 0; i--){
+		int v = ClauseArena.var(store.clauseLiteral(c, i));
+		if(!seen[v]){
+		  seen[v] = true;
+		  builder.add(getVariable(v));
+		}
+	  }
+  }
+
+  public Boolean isSatisfied(Interpretation interpretation){
+	Metrics.global().addEvaluation();
+	/* each variable is looked up in the interpretation at most once:
+	 * 0 = not looked up yet, 1 = false, 2 = true, 3 = undetermined. */
+	byte[] values = new byte[store.numVariables()];
+	boolean undetermined = false;
+
+	for(int c = 0; c < store.numClauses(); c++){
+	  boolean result = false;
+	  boolean clauseUndetermined = false;
+	  int size = store.clauseSize(c);
+	  for(int i = 0; i < size && !result; i++){
+		int literal = store.clauseLiteral(c, i);
+		int v = ClauseArena.var(literal);
+		if(values[v] == 0){
+		  Boolean value = getVariable(v).isSatisfied(interpretation);
+		  values[v] = (value == null) ? (byte) 3
+			: (value.booleanValue() ? (byte) 2 : (byte) 1);
+		}
+		if(values[v] == 3)
+		  clauseUndetermined = true;
+		else
+		  result = ((values[v] == 2) != ClauseArena.isNegated(literal));
+	  }
+	  if(!result && !clauseUndetermined)
+		return Boolean.FALSE;
+	  undetermined |= !result;
+	}
+	return undetermined ? null : Boolean.TRUE;
+  }
+
+  public String toString(){
+	StringBuffer sb = new StringBuffer();
+	for(int c = 0; c < store.numClauses(); c++){
+	  if(c > 0)
+		sb.append(" " + CNF.wedge + " ");
+	  sb.append('(');
+	  for(int i = 0; i < store.clauseSize(c); i++){
+		if(i > 0)
+		  sb.append(" " + CNF.vee + " ");
+		sb.append(getLiteral(store.clauseLiteral(c, i)));
+	  }
+	  sb.append(')');
+	}
+	return sb.toString();
+  }
+
+  /** Returns this view: the store does not change, so there is
+      nothing to copy. */
+  public Object clone(){
+	return this;
+  }
+
+}
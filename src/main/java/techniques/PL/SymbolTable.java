@@ -0,0 +1,58 @@
+package techniques.PL;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/* The process-wide table interning variable names to dense int ids.
+ * Ids are handed out in order from 0 and never reused, so they can
+ * index plain arrays such as the one behind DenseInterpretation.
+ * Lookups of known names are lock-free; adding a name takes a lock. */
+final class SymbolTable {
+
+  private static final ConcurrentHashMap ids = new ConcurrentHashMap();
+  private static volatile Variable[] variables = new Variable[256];
+  private static volatile int size = 0;
+
+  private SymbolTable(){
+  }
+
+  /* returns the id of name, adding it if it is new. */
+  static int id(String name){
+	Integer id = (Integer) ids.get(name);
+	return (id != null) ? id.intValue() : add(name).getId();
+  }
+
+  /* returns the canonical Variable named name. */
+  static Variable intern(String name){
+	Integer id = (Integer) ids.get(name);
+	return (id != null) ? variables[id.intValue()] : add(name);
+  }
+
+  /* returns the canonical Variable with the given id. */
+  static Variable variable(int id){
+	if(id < 0 || id >= size)
+	  throw new IndexOutOfBoundsException("No variable with id " + id);
+	return variables[id];
+  }
+
+  /* returns the number of ids handed out so far. */
+  static int size(){
+	return size;
+  }
+
+  private static synchronized Variable add(String name){
+	Integer id = (Integer) ids.get(name);
+	if(id != null)
+	  return variables[id.intValue()];
+	Variable[] table = variables;
+	if(size == table.length)
+	  table = Arrays.copyOf(table, 2 * size);
+	Variable variable = new Variable(name, size);
+	table[size] = variable;
+	variables = table;
+	ids.put(name, Integer.valueOf(size));
+	size++;
+	return variable;
+  }
+
+}
@@ -0,0 +1,630 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** Finds symmetries of a set of clauses and adds symmetry-breaking
+    clauses, so that the solver does not search the many equivalent
+    parts of a symmetric problem (pigeons, holes, the bits of regular
+    circuits) one after the other.
+
+    <p>A symmetry is a permutation of the literals, mapping the negation
+    of each literal to the negation of its image, that maps the set of
+    clauses onto itself.  The symmetries are the automorphisms of the
+    literal-clause graph: one vertex per literal and per clause, an
+    edge between every literal and its negation, and one between every
+    clause and each of its literals.  Generators of the automorphism
+    group are found by partition refinement, as in nauty and saucy:
+    vertices are split into cells by the number of their neighbours in
+    each cell until the partition is equitable, then vertices are
+    individualized one at a time along a first path to a discrete
+    partition.  Every other vertex of each cell of that path is tried
+    in turn, from the deepest cell up; a path from it that refines like
+    the first one to a leaf gives a candidate permutation, which is
+    kept if it is an automorphism.  Vertices in the same orbit as one
+    already tried are skipped.  Unlike nauty the search backtracks only
+    a few nodes deep, so some generators may be missed, but every one
+    returned is checked.
+
+    <p>Each generator <i>g</i> is then broken by a lex-leader
+    constraint: taking the variables in index order, the assignment
+    must be no greater than its image under <i>g</i>.  The constraint
+    is encoded in a chain of clauses with one new variable for each
+    prefix on which the two are equal, limited to the first
+    <code>maxChain</code> variables that <i>g</i> moves.  Every orbit
+    of assignments keeps its least member, so the clauses with the
+    constraints are satisfiable exactly when the original ones are, and
+    a model of them restricted to the original variables is a model of
+    the original clauses.  The constraints are not implied by the
+    clauses, so a DRAT proof of the result does not refute the original
+    ones.
+
+    <p>Variables the caller wants to constrain later, for instance with
+    assumptions, must be <code>freeze()</code>d first: they get their
+    own cells, so that no symmetry moves them. */
+public class SymmetryBreaker {
+
+  /* limits of the search */
+  private int maxGenerators = 64;
+  private int maxChain = 64;
+  private long maxWork = 50000000L;
+  private int maxBacktracks = 64;
+
+  private final ClauseArena arena;
+  private PackedConjunction conjunction;
+  private final int numVars;
+  private final boolean[] frozen;
+
+  /* the literal-clause graph: vertex p < 2 * numVars is literal p,
+   * vertex 2 * numVars + c is clause c */
+  private int numVertices;
+  private int[] adjStart;
+  private int[] adj;
+
+  /* the ordered partition: the cell of position i starts at
+   * cellStart[i] and ends before cellEnd[cellStart[i]] */
+  private int[] elements;
+  private int[] positions;
+  private int[] cellStart;
+  private int[] cellEnd;
+
+  /* refinement: cells to split others with, by start, and the
+   * neighbour counts of the current splitter */
+  private final IntVec splitters = new IntVec();
+  private boolean[] queued;
+  private int[] counts;
+  private final IntVec touched = new IntVec();
+  private final IntVec affected = new IntVec();
+  private int[] hits; // touched vertices of each cell, by start
+  private int[] members;
+  private long[] keys;
+
+  /* the first path: the partition before each individualization, the
+   * cell split there and the vertex individualized */
+  private final List path = new ArrayList();
+  private final IntVec targets = new IntVec();
+  private final IntVec chosen = new IntVec();
+  private int[] leaf;
+
+  private int[] orbits;
+  private int[] marks;
+  private int stamp = 0;
+  private long work = 0;
+  private int backtracks;
+
+  private final List generators = new ArrayList();
+  private ClauseArena breaking;
+  private int numAuxiliary = 0;
+  private boolean done = false;
+
+  /** Constructs a symmetry breaker for the clauses of
+      <code>arena</code>, which is left unchanged. */
+  public SymmetryBreaker(ClauseArena arena){
+	this.arena = arena;
+	this.numVars = arena.numVariables();
+	this.frozen = new boolean[numVars];
+  }
+
+  /** Constructs a symmetry breaker for <code>conjunction</code>, whose
+      clauses must be disjunctions of literals. */
+  public SymmetryBreaker(Conjunction conjunction){
+	this(PackedConjunction.pack(conjunction));
+  }
+
+  private SymmetryBreaker(PackedConjunction conjunction){
+	this(conjunction.getArena());
+	this.conjunction = conjunction;
+  }
+
+  /** Returns a satisfying <code>Interpretation</code> of
+      <code>conjunction</code>, or <code>null</code> if it is
+      unsatisfiable, breaking its symmetries before it is solved. */
+  public static Interpretation solve(Conjunction conjunction){
+	SymmetryBreaker breaker = new SymmetryBreaker(conjunction);
+	breaker.run();
+	Solver solver = new Solver(breaker.getArena());
+	if(solver.solve() != Boolean.TRUE)
+	  return null;
+	boolean[] model = solver.getModel();
+	DenseInterpretation interpretation = new DenseInterpretation();
+	int[] ids = breaker.conjunction.ids();
+	for(int v = 0; v < breaker.numVars; v++)
+	  interpretation.set(ids[v], model[v]);
+	return interpretation;
+  }
+
+  /** Keeps variable <code>var</code> out of every symmetry. */
+  public void freeze(int var){
+	frozen[var] = true;
+  }
+
+  /** Sets the largest number of generators to find, the largest
+      number of variables of a generator to break, and the amount of
+      work, roughly in graph edges visited, after which the search
+      gives up. */
+  public void setLimits(int maxGenerators, int maxChain, long maxWork){
+	this.maxGenerators = maxGenerators;
+	this.maxChain = maxChain;
+	this.maxWork = maxWork;
+  }
+
+  /** Finds the symmetries and their breaking clauses.  Returns the
+      number of generators found. */
+  public int run(){
+	if(done)
+	  return generators.size();
+	done = true;
+	long start = Metrics.global().beginPhase();
+	buildGraph();
+	search();
+	breakGenerators();
+	/* the graph is not needed any more */
+	adj = adjStart = elements = positions = cellStart = cellEnd = counts = null;
+	hits = members = null;
+	orbits = marks = leaf = null;
+	keys = null;
+	path.clear();
+	Metrics.global().endPhase(Metrics.PREPROCESS, start);
+	return generators.size();
+  }
+
+  /** Returns the original clauses followed by the symmetry-breaking
+      ones, over the original variables and
+      <code>getAuxiliaryVariables()</code> new ones numbered after
+      them. */
+  public ClauseArena getArena(){
+	run();
+	ClauseArena result = new ClauseArena(arena.numClauses() + breaking.numClauses() + 1,
+										 arena.numLiterals() + breaking.numLiterals() + 1);
+	result.ensureVariables(numVars + numAuxiliary);
+	for(int c = 0; c < arena.numClauses(); c++)
+	  result.addClause(arena.clause(c));
+	for(int c = 0; c < breaking.numClauses(); c++)
+	  result.addClause(breaking.clause(c));
+	return result;
+  }
+
+  /** Returns the generators found, each as the array of the images of
+      the literals <code>0</code> to <code>2 * numVariables - 1</code>. */
+  public List getGenerators(){
+	return Collections.unmodifiableList(generators);
+  }
+
+  /** Returns the number of symmetry-breaking clauses. */
+  public int getBreakingClauses(){
+	return (breaking == null) ? 0 : breaking.numClauses();
+  }
+
+  /** Returns the number of variables added by the breaking
+      clauses. */
+  public int getAuxiliaryVariables(){
+	return numAuxiliary;
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* graph and partition */
+
+  private void buildGraph(){
+	int numLiterals = 2 * numVars;
+	/* the clauses as sets, each once: duplicates only add symmetries
+	 * among themselves */
+	int[][] clauses = new int[arena.numClauses()][];
+	for(int c = 0; c < clauses.length; c++){
+	  int[] lits = arena.clause(c);
+	  Arrays.sort(lits);
+	  int n = 0;
+	  for(int i = 0; i < lits.length; i++)
+		if(n == 0 || lits[i] != lits[n - 1])
+		  lits[n++] = lits[i];
+	  clauses[c] = (n == lits.length) ? lits : Arrays.copyOf(lits, n);
+	}
+	Arrays.sort(clauses, new Comparator(){
+		public int compare(Object a, Object b){
+		  int[] x = (int[]) a;
+		  int[] y = (int[]) b;
+		  for(int i = 0; i < x.length && i < y.length; i++)
+			if(x[i] != y[i])
+			  return (x[i] < y[i]) ? -1 : 1;
+		  return x.length - y.length;
+		}
+	  });
+	int numClauses = 0;
+	for(int c = 0; c < clauses.length; c++)
+	  if(numClauses == 0 || !Arrays.equals(clauses[c], clauses[numClauses - 1]))
+		clauses[numClauses++] = clauses[c];
+
+	numVertices = numLiterals + numClauses;
+	int[] degree = new int[numVertices];
+	for(int p = 0; p < numLiterals; p++)
+	  degree[p] = 1; // the negation
+	for(int c = 0; c < numClauses; c++){
+	  degree[numLiterals + c] = clauses[c].length;
+	  for(int i = 0; i < clauses[c].length; i++)
+		degree[clauses[c][i]]++;
+	}
+	adjStart = new int[numVertices + 1];
+	for(int v = 0; v < numVertices; v++)
+	  adjStart[v + 1] = adjStart[v] + degree[v];
+	adj = new int[adjStart[numVertices]];
+	int[] fill = Arrays.copyOf(adjStart, numVertices);
+	for(int p = 0; p < numLiterals; p++)
+	  adj[fill[p]++] = ClauseArena.negate(p);
+	for(int c = 0; c < numClauses; c++)
+	  for(int i = 0; i < clauses[c].length; i++){
+		int p = clauses[c][i];
+		adj[fill[p]++] = numLiterals + c;
+		adj[fill[numLiterals + c]++] = p;
+	  }
+
+	elements = new int[numVertices];
+	positions = new int[numVertices];
+	cellStart = new int[numVertices];
+	cellEnd = new int[numVertices];
+	queued = new boolean[numVertices];
+	counts = new int[numVertices];
+	hits = new int[numVertices];
+	members = new int[numVertices];
+	keys = new long[numVertices];
+	marks = new int[numVertices];
+	orbits = new int[numVertices];
+	for(int v = 0; v < numVertices; v++)
+	  orbits[v] = v;
+
+	/* the first cells: the literals that may move, then each literal
+	 * of a frozen variable alone, then the clauses */
+	int n = 0;
+	for(int p = 0; p < numLiterals; p++)
+	  if(!frozen[ClauseArena.var(p)])
+		elements[n++] = p;
+	newCell(0, n);
+	for(int p = 0; p < numLiterals; p++)
+	  if(frozen[ClauseArena.var(p)]){
+		elements[n] = p;
+		newCell(n, ++n);
+	  }
+	for(int c = 0; c < numClauses; c++)
+	  elements[n++] = numLiterals + c;
+	newCell(numLiterals, n);
+	for(int i = 0; i < numVertices; i++)
+	  positions[elements[i]] = i;
+  }
+
+  /* makes positions start to end a cell and queues it as a splitter. */
+  private void newCell(int start, int end){
+	if(start == end)
+	  return;
+	cellEnd[start] = end;
+	for(int i = start; i < end; i++)
+	  cellStart[i] = start;
+	queued[start] = true;
+	splitters.push(start);
+  }
+
+  /* refines the partition until it is equitable, or the work runs
+   * out. */
+  private void refine(){
+	while(splitters.size() > 0){
+	  int splitter = splitters.pop();
+	  queued[splitter] = false;
+	  /* a copy, as touched vertices move within their cells */
+	  int size = cellEnd[splitter] - splitter;
+	  System.arraycopy(elements, splitter, members, 0, size);
+	  for(int i = 0; i < size; i++){
+		int v = members[i];
+		for(int k = adjStart[v]; k < adjStart[v + 1]; k++){
+		  int u = adj[k];
+		  if(counts[u]++ == 0)
+			touch(u);
+		}
+		work += adjStart[v + 1] - adjStart[v];
+	  }
+	  /* split in order of position, so that equivalent paths split
+	   * alike */
+	  Arrays.sort(affected.data, 0, affected.size());
+	  for(int i = 0; i < affected.size(); i++)
+		split(affected.get(i));
+	  affected.clear();
+	  for(int i = 0; i < touched.size(); i++)
+		counts[touched.get(i)] = 0;
+	  touched.clear();
+	}
+  }
+
+  /* moves u, a neighbour of the splitter, to the end of its cell,
+   * with the others touched before it. */
+  private void touch(int u){
+	touched.push(u);
+	int cell = cellStart[positions[u]];
+	if(hits[cell]++ == 0)
+	  affected.push(cell);
+	int to = cellEnd[cell] - hits[cell];
+	int from = positions[u];
+	int other = elements[to];
+	elements[from] = other;
+	positions[other] = from;
+	elements[to] = u;
+	positions[u] = to;
+  }
+
+  /* splits the cell at start by the counts of its vertices, in
+   * increasing order of count, and queues the new cells; when the
+   * cell was not queued, its largest part need not be.  Only the
+   * touched vertices, at the end of the cell, are looked at. */
+  private void split(int start){
+	int end = cellEnd[start];
+	int mid = end - hits[start];
+	hits[start] = 0;
+	if(end - start == 1)
+	  return;
+	if(mid == start && counts[elements[start]] == counts[elements[end - 1]]){
+	  /* all touched: split only if the counts differ */
+	  boolean same = true;
+	  int count = counts[elements[start]];
+	  for(int i = start + 1; i < end && same; i++)
+		same = (counts[elements[i]] == count);
+	  if(same)
+		return;
+	}
+	work += end - mid;
+	for(int i = mid; i < end; i++)
+	  keys[i] = ((long) counts[elements[i]] << 32) | elements[i];
+	Arrays.sort(keys, mid, end);
+	for(int i = mid; i < end; i++){
+	  elements[i] = (int) keys[i];
+	  positions[elements[i]] = i;
+	}
+
+	boolean wasQueued = queued[start];
+	int largest = start;
+	int largestSize = mid - start;
+	if(mid > start)
+	  cellEnd[start] = mid; // the untouched vertices, count 0
+	int from = mid;
+	while(from < end){
+	  int count = counts[elements[from]];
+	  int to = from + 1;
+	  while(to < end && counts[elements[to]] == count)
+		to++;
+	  cellEnd[from] = to;
+	  for(int i = from; i < to; i++)
+		cellStart[i] = from;
+	  if(to - from > largestSize){
+		largestSize = to - from;
+		largest = from;
+	  }
+	  from = to;
+	}
+	for(from = start; from < end; from = cellEnd[from])
+	  if(!queued[from] && (wasQueued || from != largest)){
+		queued[from] = true;
+		splitters.push(from);
+	  }
+  }
+
+  /* makes v a cell of its own at the end of its cell. */
+  private void individualize(int v){
+	int start = cellStart[positions[v]];
+	int end = cellEnd[start];
+	int last = end - 1;
+	int other = elements[last];
+	elements[positions[v]] = other;
+	positions[other] = positions[v];
+	elements[last] = v;
+	positions[v] = last;
+	cellEnd[start] = last;
+	cellStart[last] = last;
+	cellEnd[last] = end;
+	queued[last] = true;
+	splitters.push(last);
+  }
+
+  /* returns the start of the first cell of more than one vertex, or -1
+   * if the partition is discrete. */
+  private int firstNonSingleton(){
+	for(int i = 0; i < numVertices; i = cellEnd[i])
+	  if(cellEnd[i] - i > 1)
+		return i;
+	return -1;
+  }
+
+  private int[][] snapshot(){
+	work += numVertices;
+	return new int[][]{ elements.clone(), cellStart.clone(), cellEnd.clone() };
+  }
+
+  private void restore(int[][] saved){
+	work += numVertices;
+	System.arraycopy(saved[0], 0, elements, 0, numVertices);
+	System.arraycopy(saved[1], 0, cellStart, 0, numVertices);
+	System.arraycopy(saved[2], 0, cellEnd, 0, numVertices);
+	for(int i = 0; i < numVertices; i++)
+	  positions[elements[i]] = i;
+  }
+
+  /* true if the cells are those of the first path at level. */
+  private boolean matches(int level){
+	if(level == path.size())
+	  return firstNonSingleton() < 0;
+	return Arrays.equals(cellStart, ((int[][]) path.get(level))[1]);
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* search */
+
+  private void search(){
+	refine();
+	/* the first path */
+	while(work <= maxWork){
+	  int cell = firstNonSingleton();
+	  if(cell < 0)
+		break;
+	  path.add(snapshot());
+	  targets.push(cell);
+	  int[] members = cell(cell);
+	  chosen.push(members[0]);
+	  individualize(members[0]);
+	  refine();
+	}
+	if(work > maxWork)
+	  return; // no leaf to compare with
+	leaf = elements.clone();
+
+	for(int level = path.size() - 1; level >= 0; level--){
+	  int[][] saved = (int[][]) path.get(level);
+	  int cell = targets.get(level);
+	  int first = chosen.get(level);
+	  int[] candidates = Arrays.copyOfRange(saved[0], cell, saved[2][cell]);
+	  Arrays.sort(candidates);
+	  for(int i = 1; i < candidates.length; i++){
+		if(work > maxWork || generators.size() >= maxGenerators)
+		  return;
+		int w = candidates[i];
+		if(find(w) == find(first))
+		  continue;
+		restore(saved);
+		individualize(w);
+		refine();
+		if(!matches(level + 1))
+		  continue;
+		backtracks = maxBacktracks;
+		int[] gamma = descend(level + 1);
+		if(gamma != null)
+		  addGenerator(gamma);
+	  }
+	}
+  }
+
+  /* continues from the current partition, which matches the first path
+   * at level, to a leaf matching it too, backtracking a few times at
+   * most.  Returns the automorphism from the first leaf to that leaf,
+   * or null if none was found. */
+  private int[] descend(int level){
+	if(level == path.size()){
+	  int[] gamma = new int[numVertices];
+	  for(int i = 0; i < numVertices; i++)
+		gamma[leaf[i]] = elements[i];
+	  return isAutomorphism(gamma) ? gamma : null;
+	}
+	int[] candidates = cell(targets.get(level));
+	int[][] saved = snapshot();
+	for(int i = 0; i < candidates.length; i++){
+	  if(i > 0){
+		if(--backtracks < 0 || work > maxWork)
+		  return null;
+		restore(saved);
+	  }
+	  individualize(candidates[i]);
+	  refine();
+	  if(matches(level + 1)){
+		int[] gamma = descend(level + 1);
+		if(gamma != null)
+		  return gamma;
+	  }
+	}
+	return null;
+  }
+
+  /* returns the vertices of the cell at start, in increasing order:
+   * trying them in that order, the first generators found tend to be
+   * transpositions of neighbouring rows and columns, which break best. */
+  private int[] cell(int start){
+	int[] members = Arrays.copyOfRange(elements, start, cellEnd[start]);
+	Arrays.sort(members);
+	return members;
+  }
+
+  private boolean isAutomorphism(int[] gamma){
+	work += adj.length;
+	for(int v = 0; v < numVertices; v++){
+	  int image = gamma[v];
+	  if(adjStart[v + 1] - adjStart[v] != adjStart[image + 1] - adjStart[image])
+		return false;
+	  stamp++;
+	  for(int k = adjStart[image]; k < adjStart[image + 1]; k++)
+		marks[adj[k]] = stamp;
+	  for(int k = adjStart[v]; k < adjStart[v + 1]; k++)
+		if(marks[gamma[adj[k]]] != stamp)
+		  return false;
+	}
+	return true;
+  }
+
+  private void addGenerator(int[] gamma){
+	for(int v = 0; v < numVertices; v++)
+	  union(v, gamma[v]);
+	int[] literals = Arrays.copyOf(gamma, 2 * numVars);
+	for(int p = 0; p < literals.length; p++)
+	  if(literals[p] != p){
+		generators.add(literals);
+		return;
+	  }
+	// only duplicate clauses move: nothing to break
+  }
+
+  private int find(int v){
+	while(orbits[v] != v)
+	  v = orbits[v] = orbits[orbits[v]];
+	return v;
+  }
+
+  private void union(int u, int v){
+	u = find(u);
+	v = find(v);
+	if(u != v)
+	  orbits[Math.max(u, v)] = Math.min(u, v);
+  }
+
+  /* ---------------------------------------------------------------- */
+  /* lex-leader constraints */
+
+  /* adds, for each generator g, the clauses of x <= g(x) over the
+   * first maxChain variables that g moves, in index order.  Variable
+   * e_i is forced true when x and g(x) agree on the first i of them,
+   * and then the next one must not be greater. */
+  private void breakGenerators(){
+	breaking = new ClauseArena();
+	for(int k = 0; k < generators.size(); k++){
+	  int[] g = (int[]) generators.get(k);
+	  int moved = 0;
+	  for(int v = 0; v < numVars; v++)
+		if(g[ClauseArena.literal(v, false)] != ClauseArena.literal(v, false))
+		  moved++;
+	  int chain = Math.min(moved, maxChain);
+	  int equal = -1; // literal of e_i, none for the empty prefix
+	  int length = 0;
+	  for(int v = 0; v < numVars && length < chain; v++){
+		int a = ClauseArena.literal(v, false);
+		int b = g[a];
+		if(b == a)
+		  continue;
+		length++;
+		/* e_i implies a <= b */
+		addBreaking(equal, ClauseArena.negate(a), b);
+		if(b == ClauseArena.negate(a) || length == chain)
+		  break; // a = b is impossible, or the chain is long enough
+		/* e_i and a = b imply e_{i+1} */
+		int next = ClauseArena.literal(numVars + numAuxiliary++, false);
+		addBreaking(equal, ClauseArena.negate(a), ClauseArena.negate(b), next);
+		addBreaking(equal, a, b, next);
+		equal = next;
+	  }
+	}
+	breaking.ensureVariables(numVars + numAuxiliary);
+  }
+
+  /* adds the clause of the literals, preceded by not e_i unless
+   * equal is -1. */
+  private void addBreaking(int equal, int p, int q){
+	if(equal < 0)
+	  breaking.addClause(new int[]{ p, q });
+	else
+	  breaking.addClause(new int[]{ ClauseArena.negate(equal), p, q });
+  }
+
+  private void addBreaking(int equal, int p, int q, int r){
+	if(equal < 0)
+	  breaking.addClause(new int[]{ p, q, r });
+	else
+	  breaking.addClause(new int[]{ ClauseArena.negate(equal), p, q, r });
+  }
+
+}
@@ -2,22 +2,65 @@ package techniques.PL;
 
 import java.util.*;
 
-/** Represents an atomic variable.  Variables are named with single
-    characters. */
+/** Represents an atomic variable.  Variables parsed by
+    <code>CNF</code> are named with single characters; generated
+    variables may have longer names.
+
+    <p>Every name is interned to a dense integer id, shared by all
+    <code>Variable</code>s of that name, which arrays such as
+    <code>DenseInterpretation</code> are indexed by. */
 public class Variable extends Sentence {
 
   private String symbol;
+  private int id;
+  private VariableSet variables; // null until getVariables()
 
   /** Constructs a <code>Variable</code> with name <code>symbol</code>. */
   public Variable(char symbol){
-	this.symbol = "" + symbol;
+	this("" + symbol);
+  }
+
+  /** Constructs a <code>Variable</code> with name <code>symbol</code>. */
+  public Variable(String symbol){
+	this.symbol = symbol;
+	this.id = SymbolTable.id(symbol);
+  }
+
+  /* constructs the canonical Variable of the symbol table. */
+  Variable(String symbol, int id){
+	this.symbol = symbol;
+	this.id = id;
+  }
+
+  /** Returns the shared <code>Variable</code> named
+      <code>symbol</code>, without creating a new one if the name has
+      been seen before. */
+  public static Variable intern(String symbol){
+	return SymbolTable.intern(symbol);
+  }
+
+  /** Returns the shared <code>Variable</code> with id
+      <code>id</code>. */
+  public static Variable forId(int id){
+	return SymbolTable.variable(id);
+  }
+
+  /** Returns the number of variable ids handed out so far; all ids
+      are below this number. */
+  public static int numIds(){
+	return SymbolTable.size();
+  }
+
+  /** Returns the interned id of this Variable's name. */
+  public int getId(){
+	return id;
   }
 
   /** Variables are considered equal if they were constructed with
      the same name. */
   public boolean equals(Object o){
 	return (o instanceof Variable)
-	  ? symbol.equals(((Variable) o).symbol)
+	  ? id == ((Variable) o).id
 	  : false;
   }
 
@@ -26,15 +69,19 @@ public class Variable extends Sentence {
   }
 
   public Set getVariables(){
-	Set set = new HashSet();
-	set.add(this);
+	VariableSet set = variables;
+	if(set == null)
+	  variables = set = VariableSet.of(this);
 	return set;
   }
 
+  void collectVariables(VariableSet.Builder builder){
+	builder.add(id);
+  }
+
   public Boolean isSatisfied(Interpretation interpretation){
-	return (!interpretation.containsKey(this))
-	  ? null
-	  : (Boolean) interpretation.get(this);
+	// a missing key and a key mapped to null both mean undetermined
+	return (Boolean) interpretation.get(this);
   }
   
   public String toString(){
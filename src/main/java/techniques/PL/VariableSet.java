@@ -0,0 +1,208 @@
+package techniques.PL;
+
+import java.util.*;
+
+/** An immutable set of <code>Variable</code>s, kept as a bitset over
+    their interned ids (see <code>Variable.getId()</code>): one bit per
+    id, 64 to a word.  It is what <code>getVariables()</code> returns,
+    and since it cannot change, a sentence that cannot change either
+    computes it once and hands out the same set every time.
+
+    <p>Unions are word-wise ORs (see <code>union()</code> and
+    <code>Builder.addAll()</code>).  The ids can be walked without
+    creating any objects:
+
+    <pre>
+    for(int id = set.nextId(0); id &gt;= 0; id = set.nextId(id + 1))
+      ...
+    </pre>
+
+    The <code>Set</code> methods that would modify the set throw
+    <code>UnsupportedOperationException</code>. */
+public final class VariableSet extends AbstractSet {
+
+  /** The set of no variables. */
+  public static final VariableSet EMPTY = new VariableSet(new long[0], 0);
+
+  private final long[] words;
+  private final int size;
+  private int hash; // 0 until computed
+
+  /* takes words, which must not be modified afterwards. */
+  private VariableSet(long[] words, int size){
+	this.words = words;
+	this.size = size;
+  }
+
+  /** Collects variables for a <code>VariableSet</code>.  A builder can
+      be reused after <code>build()</code>. */
+  public static final class Builder {
+	private long[] words = new long[1];
+
+	/** Adds the variable with id <code>id</code>. */
+	public Builder add(int id){
+	  if(id < 0)
+		throw new IllegalArgumentException("Negative id: " + id);
+	  int word = id >>> 6;
+	  if(word >= words.length)
+		words = Arrays.copyOf(words, Math.max(word + 1, 2 * words.length));
+	  words[word] |= 1L << id;
+	  return this;
+	}
+
+	public Builder add(Variable variable){
+	  return add(variable.getId());
+	}
+
+	/** Adds every variable of <code>set</code>, a word at a time. */
+	public Builder addAll(VariableSet set){
+	  long[] other = set.words;
+	  if(other.length > words.length)
+		words = Arrays.copyOf(words, Math.max(other.length, 2 * words.length));
+	  for(int i = 0; i < other.length; i++)
+		words[i] |= other[i];
+	  return this;
+	}
+
+	/** Adds the variables of <code>sentence</code>, without building
+		a set for each of its parts. */
+	public Builder addAll(Sentence sentence){
+	  sentence.collectVariables(this);
+	  return this;
+	}
+
+	public VariableSet build(){
+	  return VariableSet.of(words, words.length);
+	}
+  }
+
+  /* returns the set of the first n words, copied. */
+  private static VariableSet of(long[] words, int n){
+	while(n > 0 && words[n - 1] == 0)
+	  n--;
+	if(n == 0)
+	  return EMPTY;
+	int size = 0;
+	for(int i = 0; i < n; i++)
+	  size += Long.bitCount(words[i]);
+	return new VariableSet(Arrays.copyOf(words, n), size);
+  }
+
+  /** Returns the set of <code>variable</code> alone. */
+  public static VariableSet of(Variable variable){
+	int id = variable.getId();
+	long[] words = new long[(id >>> 6) + 1];
+	words[id >>> 6] = 1L << id;
+	return new VariableSet(words, 1);
+  }
+
+  /** Returns the union of this set and <code>other</code>: this set or
+      <code>other</code> if one holds the other, and a new set
+      otherwise. */
+  public VariableSet union(VariableSet other){
+	long[] big = words, small = other.words;
+	if(big.length < small.length){
+	  big = other.words;
+	  small = words;
+	}
+	long[] result = null;
+	for(int i = 0; i < small.length; i++){
+	  long word = big[i] | small[i];
+	  if(word != big[i]){
+		if(result == null)
+		  result = big.clone();
+		result[i] = word;
+	  }
+	}
+	if(result == null)
+	  return (big == words) ? this : other;
+	return of(result, result.length);
+  }
+
+  /** Returns true if the variable with id <code>id</code> is in this
+      set. */
+  public boolean containsId(int id){
+	int word = id >>> 6;
+	return id >= 0 && word < words.length && (words[word] & (1L << id)) != 0;
+  }
+
+  public boolean contains(Object o){
+	return (o instanceof Variable) && containsId(((Variable) o).getId());
+  }
+
+  /** Returns the smallest id in this set that is at least
+      <code>from</code>, or -1 if there is none. */
+  public int nextId(int from){
+	if(from < 0)
+	  from = 0;
+	int word = from >>> 6;
+	if(word >= words.length)
+	  return -1;
+	long bits = words[word] & (-1L << from);
+	while(bits == 0){
+	  if(++word == words.length)
+		return -1;
+	  bits = words[word];
+	}
+	return (word << 6) + Long.numberOfTrailingZeros(bits);
+  }
+
+  /** Returns the ids of this set, in increasing order. */
+  public int[] toIds(){
+	int[] ids = new int[size];
+	int n = 0;
+	for(int id = nextId(0); id >= 0; id = nextId(id + 1))
+	  ids[n++] = id;
+	return ids;
+  }
+
+  public int size(){
+	return size;
+  }
+
+  public boolean isEmpty(){
+	return size == 0;
+  }
+
+  /** Iterates over the variables in order of their ids. */
+  public Iterator iterator(){
+	return new Iterator(){
+		private int next = nextId(0);
+
+		public boolean hasNext(){
+		  return next >= 0;
+		}
+
+		public Object next(){
+		  if(next < 0)
+			throw new NoSuchElementException();
+		  Variable variable = Variable.forId(next);
+		  next = nextId(next + 1);
+		  return variable;
+		}
+
+		public void remove(){
+		  throw new UnsupportedOperationException();
+		}
+	  };
+  }
+
+  public boolean equals(Object o){
+	if(o instanceof VariableSet)
+	  return size == ((VariableSet) o).size
+		&& Arrays.equals(words, ((VariableSet) o).words);
+	return super.equals(o);
+  }
+
+  /* the sum of the hash codes of the variables, as for any Set. */
+  public int hashCode(){
+	int h = hash;
+	if(h == 0 && size > 0){
+	  for(int id = nextId(0); id >= 0; id = nextId(id + 1))
+		h += Variable.forId(id).hashCode();
+	  hash = h;
+	}
+	return h;
+  }
+
+}